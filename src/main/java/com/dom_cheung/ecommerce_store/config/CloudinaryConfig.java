@@ -2,10 +2,13 @@ package com.dom_cheung.ecommerce_store.config;
 
 import com.cloudinary.Cloudinary;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+// Only needed for Cloudinary image storage; the local storage runs without CLOUDINARY_URL
+@ConditionalOnProperty(name = "store.image-storage.type", havingValue = "cloudinary", matchIfMissing = true)
 public class CloudinaryConfig {
     @Value("${CLOUDINARY_URL}") // read from railway
     private String cloudinaryUrl;
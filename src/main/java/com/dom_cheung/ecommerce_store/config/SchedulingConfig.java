@@ -0,0 +1,9 @@
+package com.dom_cheung.ecommerce_store.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling // Enable @Scheduled background jobs (JWT key reload, ...)
+public class SchedulingConfig {
+}
@@ -0,0 +1,107 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.service.SalesRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping("/admin/analytics")
+public class AdminAnalyticsController {
+
+    private static final Logger LOGGER = Logger.getLogger(AdminAnalyticsController.class.getName());
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    /**
+     * Get orders, revenue and units sold per day, read from the sales rollups
+     * e.g. /admin/analytics/sales?from=2025-01-01&to=2025-01-31
+     *
+     * @param from First day (inclusive), optional; defaults to 30 days before "to"
+     * @param to Last day (inclusive), optional; defaults to today
+     * @return Map with "from", "to", the per-day sales ("days") and their sum ("totals")
+     */
+    @GetMapping("/sales")
+    public ResponseEntity<?> getDailySales(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(salesRollupService.getDailySales(from, to));
+        } catch (IllegalArgumentException e) {
+            // Reversed or oversized range
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Get the best selling products of a range of days by revenue, read from the sales rollups
+     * e.g. /admin/analytics/sales/products?from=2025-01-01&to=2025-01-31&limit=10
+     *
+     * @param from First day (inclusive), optional; defaults to 30 days before "to"
+     * @param to Last day (inclusive), optional; defaults to today
+     * @param limit Number of products (capped at SalesRollupService.MAX_TOP_PRODUCTS)
+     * @return Map with "from", "to", "limit" and the products ("products")
+     */
+    @GetMapping("/sales/products")
+    public ResponseEntity<?> getTopProducts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(salesRollupService.getTopProducts(from, to, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Get orders, revenue and units sold of one product per day, read from the sales rollups
+     *
+     * @param productId Product ID
+     * @param from First day (inclusive), optional; defaults to 30 days before "to"
+     * @param to Last day (inclusive), optional; defaults to today
+     * @return Map with "productId", "from", "to", the per-day sales ("days") and their sum ("totals")
+     */
+    @GetMapping("/sales/products/{productId}")
+    public ResponseEntity<?> getProductDailySales(
+            @PathVariable long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(salesRollupService.getProductDailySales(productId, from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Regenerate the sales rollups from the order history, e.g. after restoring a backup
+     *
+     * @return Map with the number of days and chunks rebuilt and the duration
+     */
+    @PostMapping("/sales/rebuild")
+    public ResponseEntity<?> rebuildSalesRollups() {
+        try {
+            return ResponseEntity.ok(salesRollupService.rebuild());
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error rebuilding sales rollups", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    Map.of("message", "An error occurred while rebuilding the sales rollups. Please try again later.")
+            );
+        }
+    }
+}
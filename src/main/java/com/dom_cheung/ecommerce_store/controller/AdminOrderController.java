@@ -0,0 +1,175 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.service.OrderSearchCriteria;
+import com.dom_cheung.ecommerce_store.service.OrderSearchService;
+import com.dom_cheung.ecommerce_store.service.OrderSearchService.ExportFormat;
+import com.dom_cheung.ecommerce_store.service.OrderService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping("/admin/orders")
+public class AdminOrderController {
+
+    private static final Logger LOGGER = Logger.getLogger(AdminOrderController.class.getName());
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderSearchService orderSearchService;
+
+    /**
+     * Search orders of all users, newest first, one keyset page at a time
+     * e.g. /admin/orders?status=PENDING&from=2025-01-01T00:00:00&limit=100, then &before={nextCursor}
+     *
+     * @param status Order status, optional
+     * @param from Earliest order date (inclusive), optional
+     * @param to Latest order date (exclusive), optional
+     * @param userId Owner of the orders, optional
+     * @param minTotal Smallest order total, optional
+     * @param maxTotal Largest order total, optional
+     * @param limit Page size (capped at OrderSearchService.MAX_PAGE_SIZE)
+     * @param before Cursor of the previous page's last order (nextCursor), omitted for the first page
+     * @return Map with the orders ("items"), "limit" and "nextCursor" (null on the last page)
+     */
+    @GetMapping
+    public ResponseEntity<?> searchOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Double minTotal,
+            @RequestParam(required = false) Double maxTotal,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before) {
+        try {
+            OrderSearchCriteria criteria = new OrderSearchCriteria(parseStatus(status), from, to, userId, minTotal, maxTotal);
+            return ResponseEntity.ok(orderSearchService.search(criteria, before, limit));
+        } catch (IllegalArgumentException e) {
+            // Unknown status or malformed cursor
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Export all orders matching the filters as CSV or NDJSON, streamed oldest first
+     * e.g. /admin/orders/export?format=csv&from=2025-01-01T00:00:00&to=2025-02-01T00:00:00
+     *
+     * @param format "csv" (default) or "ndjson"
+     * @return Streaming download of the matching orders
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportOrders(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Double minTotal,
+            @RequestParam(required = false) Double maxTotal) {
+        ExportFormat exportFormat;
+        OrderSearchCriteria criteria;
+        try {
+            exportFormat = ExportFormat.valueOf(format.toUpperCase());
+            criteria = new OrderSearchCriteria(parseStatus(status), from, to, userId, minTotal, maxTotal);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", "Invalid export request: " + e.getMessage())
+            );
+        }
+
+        StreamingResponseBody body = outputStream -> orderSearchService.export(criteria, exportFormat, outputStream);
+        MediaType contentType = exportFormat == ExportFormat.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : new MediaType("application", "x-ndjson");
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"orders." + exportFormat.name().toLowerCase() + "\"")
+                .body(body);
+    }
+
+    /**
+     * Move many orders to the same status in one call, e.g. {orderNumbers: [...], status: "SHIPPED"}
+     * Orders whose transition is not allowed are reported individually and do not stop the others.
+     *
+     * @param request Map containing "orderNumbers" and the new "status"
+     * @return Per-order results and the updated/unchanged/failed counts
+     */
+    @PostMapping("/status")
+    public ResponseEntity<?> updateOrderStatuses(@RequestBody Map<String, Object> request) {
+        try {
+            // Get the requested status
+            Object statusValue = request.get("status");
+            if (!(statusValue instanceof String statusString) || statusString.isBlank()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                        Map.of("message", "Status is required")
+                );
+            }
+
+            // Convert string to enum
+            OrderStatus newStatus;
+            try {
+                newStatus = OrderStatus.valueOf(statusString.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                        Map.of("message", "Invalid status: " + statusString)
+                );
+            }
+
+            if (!(request.get("orderNumbers") instanceof List<?> numbers)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                        Map.of("message", "Order numbers are required")
+                );
+            }
+            List<String> orderNumbers = numbers.stream().map(String::valueOf).toList();
+
+            return ResponseEntity.ok(orderService.updateOrderStatuses(orderNumbers, newStatus));
+
+        } catch (OptimisticLockingFailureException e) {
+            // The orders kept changing under us; the client can try again
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                    Map.of("message", "Some orders were updated at the same time. Please try again.")
+            );
+        } catch (IllegalArgumentException e) {
+            // Handle validation errors (empty or oversized list)
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", e.getMessage())
+            );
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error in bulk order status update", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    Map.of("message", "An error occurred while updating order statuses. Please try again later.")
+            );
+        }
+    }
+
+    private static OrderStatus parseStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return OrderStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid status: " + status);
+        }
+    }
+}
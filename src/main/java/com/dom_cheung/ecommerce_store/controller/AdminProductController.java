@@ -1,16 +1,22 @@
 package com.dom_cheung.ecommerce_store.controller;
 
+import com.dom_cheung.ecommerce_store.model.ImageStatus;
 import com.dom_cheung.ecommerce_store.model.Product;
 import com.dom_cheung.ecommerce_store.repository.ProductRepository;
-import com.dom_cheung.ecommerce_store.service.CloudinaryService;
+import com.dom_cheung.ecommerce_store.service.ImageAssetService;
+import com.dom_cheung.ecommerce_store.service.ImageUploadQueueFullException;
+import com.dom_cheung.ecommerce_store.service.ProductImageService;
+import com.dom_cheung.ecommerce_store.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
@@ -26,13 +32,33 @@ public class AdminProductController {
     private ProductRepository productRepository;
 
     @Autowired
-    private CloudinaryService cloudinaryService;
+    private ImageAssetService imageAssetService;
 
-    // Get all products (for admin panel)
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductImageService productImageService;
+
+    // Get all products (for admin panel), streamed as a JSON array
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
-        List<Product> products = productRepository.findAll();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<StreamingResponseBody> getAllProducts() {
+        StreamingResponseBody body = productService::writeAllProducts;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Get one keyset page of products (for admin panel), ordered by id
+    @GetMapping(params = "limit")
+    public ResponseEntity<Map<String, Object>> getProductPage(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long after) {
+        return ResponseEntity.ok(productService.getProductPage(after, limit));
+    }
+
+    // A cursor alone gets a page of the default size, not the whole catalog
+    @GetMapping(params = {"after", "!limit"})
+    public ResponseEntity<Map<String, Object>> getProductPageAfter(@RequestParam Long after) {
+        return ResponseEntity.ok(productService.getProductPage(after, null));
     }
 
     // Get a single product by ID (for admin panel)
@@ -43,16 +69,45 @@ public class AdminProductController {
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    /**
+     * Get the state of a product's image upload
+     *
+     * @param id Product ID
+     * @return Map with "imageStatus" (PENDING, READY, FAILED or null if the image was set directly),
+     *         the image fields and, while uploading on this instance, the attempts made so far
+     */
+    @GetMapping("/{id}/image-status")
+    public ResponseEntity<Map<String, Object>> getImageStatus(@PathVariable long id) {
+        return productImageService.getStatus(id).map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Get product cache hit/miss/eviction counters
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(productService.getCacheStats());
+    }
+
     // Create a new product
     @PostMapping(consumes = {"multipart/form-data"})
     public ResponseEntity<Product> createProduct(
             @RequestPart("product") Product product,
             @RequestPart(value = "imageFile", required = false) MultipartFile imageFile) {
+        ProductImageService.StagedImage stagedImage = null;
+        // Reference taken on a stored image, given back if the product is not saved
+        String storedPublicId = null;
         try {
             product.setId(0); // Ensure ID is not set for creation
 
-            if (imageFile != null && !imageFile.isEmpty()) {
-                Map<String, String> uploadResult = cloudinaryService.uploadFile(imageFile, "ecommerce_products");
+            if (imageFile != null && !imageFile.isEmpty() && productImageService.isAsync()) {
+                // Saved straight away; the image is uploaded in the background and filled in when done
+                stagedImage = productImageService.stage(imageFile);
+                product.setImageUrl(null);
+                product.setImagePublicId(null);
+                product.setImageStatus(ImageStatus.PENDING);
+            } else if (imageFile != null && !imageFile.isEmpty()) {
+                Map<String, String> uploadResult = imageAssetService.store(imageFile, "ecommerce_products");
+                storedPublicId = uploadResult.get("public_id");
                 product.setImageUrl(uploadResult.get("secure_url"));
                 product.setImagePublicId(uploadResult.get("public_id"));
             } else {
@@ -66,9 +121,17 @@ public class AdminProductController {
                 LOGGER.info("No new image file provided for product creation. Using imageUrl from JSON if present, otherwise null.");
             }
 
-            Product savedProduct = productRepository.save(product);
+            Product savedProduct = productService.saveProduct(product);
+            storedPublicId = null;
+            if (stagedImage != null) {
+                productImageService.submit(savedProduct.getId(), stagedImage);
+                stagedImage = null;
+            }
             LOGGER.info("Product created successfully with ID: " + savedProduct.getId());
             return new ResponseEntity<>(savedProduct, HttpStatus.CREATED);
+        } catch (ImageUploadQueueFullException e) {
+            LOGGER.warning("Product creation rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").body(null);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "File upload error during product creation: " + e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -78,6 +141,11 @@ public class AdminProductController {
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error creating product: " + e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        } finally {
+            if (stagedImage != null) {
+                productImageService.discard(stagedImage);
+            }
+            imageAssetService.release(storedPublicId);
         }
     }
 
@@ -94,52 +162,80 @@ public class AdminProductController {
             return ResponseEntity.notFound().build();
         }
 
+        ProductImageService.StagedImage stagedImage = null;
+        // Reference taken on a stored image, given back if the product is not saved
+        String storedPublicId = null;
         try {
             Product existingProduct = existingProductOptional.get();
+            // Image this product lets go of once the update is saved
+            String replacedPublicId = null;
 
             existingProduct.setName(productDetails.getName());
             existingProduct.setDescription(productDetails.getDescription());
             existingProduct.setPrice(productDetails.getPrice());
+            // Stock is written separately, and only when it was changed: the value read above may
+            // already be stale by the time the product is saved
+            Integer newStock = productDetails.getStock() != null
+                    && !productDetails.getStock().equals(existingProduct.getStock()) ? productDetails.getStock() : null;
             // Add any other fields that can be updated
 
             if (imageFile != null && !imageFile.isEmpty()) {
-                if (existingProduct.getImagePublicId() != null && !existingProduct.getImagePublicId().isBlank()) {
-                    LOGGER.info("Placeholder: Old image (public_id: " + existingProduct.getImagePublicId() +
-                            ") would be deleted here before uploading new one.");
-                    // cloudinaryService.deleteFile(existingProduct.getImagePublicId()); // Temporarily commented out
+                if (productImageService.isAsync()) {
+                    // The current image stays until the new one has been uploaded in the background,
+                    // which then releases the old one
+                    stagedImage = productImageService.stage(imageFile);
+                    existingProduct.setImageStatus(ImageStatus.PENDING);
+                    existingProduct.setImageError(null);
+                } else {
+                    Map<String, String> uploadResult = imageAssetService.store(imageFile, "ecommerce_products");
+                    storedPublicId = uploadResult.get("public_id");
+                    productImageService.cancel(id);
+                    replacedPublicId = existingProduct.getImagePublicId();
+                    existingProduct.setImageUrl(uploadResult.get("secure_url"));
+                    existingProduct.setImagePublicId(uploadResult.get("public_id"));
+                    existingProduct.setImageStatus(null);
+                    existingProduct.setImageError(null);
                 }
-
-                Map<String, String> uploadResult = cloudinaryService.uploadFile(imageFile, "ecommerce_products");
-                existingProduct.setImageUrl(uploadResult.get("secure_url"));
-                existingProduct.setImagePublicId(uploadResult.get("public_id"));
             } else if (productDetails.getImageUrl() != null) {
                 // Handle if imageUrl is explicitly provided in the JSON (e.g., to clear it or change to another existing URL)
                 if (productDetails.getImageUrl().isBlank()) { // User wants to remove the image
-                    if (existingProduct.getImagePublicId() != null && !existingProduct.getImagePublicId().isBlank()) {
-                        LOGGER.info("Placeholder: Old image (public_id: " + existingProduct.getImagePublicId() +
-                                ") would be deleted here as imageUrl is being cleared.");
-                        // cloudinaryService.deleteFile(existingProduct.getImagePublicId()); // Temporarily commented out
-                    }
+                    productImageService.cancel(id);
+                    replacedPublicId = existingProduct.getImagePublicId();
                     existingProduct.setImageUrl(null);
                     existingProduct.setImagePublicId(null);
+                    existingProduct.setImageStatus(null);
+                    existingProduct.setImageError(null);
                 } else if (!productDetails.getImageUrl().equals(existingProduct.getImageUrl())) {
                     // User changed the imageUrl manually to a new URL.
-                    // The old image (if managed by us) should ideally be deleted.
-                    if (existingProduct.getImagePublicId() != null && !existingProduct.getImagePublicId().isBlank()) {
-                        LOGGER.info("Placeholder: Old image (public_id: " + existingProduct.getImagePublicId() +
-                                ") would be deleted here as imageUrl is being manually changed.");
-                        // cloudinaryService.deleteFile(existingProduct.getImagePublicId()); // Temporarily commented out
-                    }
+                    // The old image (if managed by us) is released.
+                    productImageService.cancel(id);
+                    replacedPublicId = existingProduct.getImagePublicId();
                     existingProduct.setImageUrl(productDetails.getImageUrl());
                     existingProduct.setImagePublicId(null); // New URL is not from our upload, so no public_id known to us
+                    existingProduct.setImageStatus(null);
+                    existingProduct.setImageError(null);
                 }
             }
             // If no new imageFile and productDetails.imageUrl is null or same as existing, image fields remain unchanged.
 
 
-            Product updatedProduct = productRepository.save(existingProduct);
+            Product updatedProduct = productService.saveProduct(existingProduct);
+            storedPublicId = null;
+            if (newStock != null) {
+                productService.setStock(id, newStock);
+                updatedProduct.setStock(newStock);
+            }
+            // Also when the new upload is the same image: the upload took a reference of its own
+            imageAssetService.release(replacedPublicId);
+            if (stagedImage != null) {
+                productImageService.submit(id, stagedImage);
+                stagedImage = null;
+            }
             LOGGER.info("Product updated successfully with ID: " + updatedProduct.getId());
             return ResponseEntity.ok(updatedProduct);
+        } catch (ImageUploadQueueFullException e) {
+            LOGGER.warning("Product update rejected for ID " + id + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").body(null);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "File upload error during product update for ID " + id + ": " + e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -149,6 +245,11 @@ public class AdminProductController {
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error updating product for ID " + id + ": " + e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        } finally {
+            if (stagedImage != null) {
+                productImageService.discard(stagedImage);
+            }
+            imageAssetService.release(storedPublicId);
         }
     }
 
@@ -163,16 +264,11 @@ public class AdminProductController {
 
         Product productToDelete = productOptional.get();
 
-        // Placeholder for deleting image from Cloudinary.
-        // Actual deletion logic is currently commented out for simplification.
-        if (productToDelete.getImagePublicId() != null && !productToDelete.getImagePublicId().isBlank()) {
-            LOGGER.info("Placeholder: Image (public_id: " + productToDelete.getImagePublicId() +
-                    ") would be deleted from Cloudinary here.");
-            // cloudinaryService.deleteFile(productToDelete.getImagePublicId()); // Temporarily commented out
-        }
-
         try {
-            productRepository.deleteById(id);
+            productImageService.cancel(id);
+            productService.deleteProduct(id);
+            // The image is deleted from the image storage in the background, unless other products use it
+            imageAssetService.release(productToDelete.getImagePublicId());
             LOGGER.info("Product deleted successfully from database with ID: " + id);
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
@@ -0,0 +1,124 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.security.VerifiedTokenCache;
+import com.dom_cheung.ecommerce_store.service.CartService;
+import com.dom_cheung.ecommerce_store.service.IdempotencyStore;
+import com.dom_cheung.ecommerce_store.service.ImageAssetService;
+import com.dom_cheung.ecommerce_store.service.ImageDeletionService;
+import com.dom_cheung.ecommerce_store.service.InventoryService;
+import com.dom_cheung.ecommerce_store.service.OrderEventService;
+import com.dom_cheung.ecommerce_store.service.OrderIngestionService;
+import com.dom_cheung.ecommerce_store.service.PendingOrderSweeper;
+import com.dom_cheung.ecommerce_store.service.ProductImageService;
+import com.dom_cheung.ecommerce_store.service.SalesRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin/stats")
+public class AdminStatsController {
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private OrderIngestionService orderIngestionService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private PendingOrderSweeper pendingOrderSweeper;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private ProductImageService productImageService;
+
+    @Autowired
+    private ImageDeletionService imageDeletionService;
+
+    @Autowired
+    private ImageAssetService imageAssetService;
+
+    // Get verified JWT cache hit/miss/eviction counters
+    @GetMapping("/token-cache")
+    public ResponseEntity<Map<String, Object>> getTokenCacheStats() {
+        return ResponseEntity.ok(verifiedTokenCache.getStats());
+    }
+
+    // Get cart write-behind counters
+    @GetMapping("/cart")
+    public ResponseEntity<Map<String, Object>> getCartStats() {
+        return ResponseEntity.ok(cartService.getStats());
+    }
+
+    // Get stock reservation counters
+    @GetMapping("/inventory")
+    public ResponseEntity<Map<String, Object>> getInventoryStats() {
+        return ResponseEntity.ok(inventoryService.getStats());
+    }
+
+    // Get order ingestion queue, batch size and commit latency metrics
+    @GetMapping("/order-ingestion")
+    public ResponseEntity<Map<String, Object>> getOrderIngestionStats() {
+        return ResponseEntity.ok(orderIngestionService.getStats());
+    }
+
+    // Get Idempotency-Key counters for order creation
+    @GetMapping("/idempotency")
+    public ResponseEntity<Map<String, Object>> getIdempotencyStats() {
+        return ResponseEntity.ok(idempotencyStore.getStats());
+    }
+
+    // Get stale PENDING order sweep counters
+    @GetMapping("/order-sweeper")
+    public ResponseEntity<Map<String, Object>> getOrderSweeperStats() {
+        return ResponseEntity.ok(pendingOrderSweeper.getStats());
+    }
+
+    // Get sales rollup counters (changes waiting to be written, flushes, rebuilds)
+    @GetMapping("/sales-rollup")
+    public ResponseEntity<Map<String, Object>> getSalesRollupStats() {
+        return ResponseEntity.ok(salesRollupService.getStats());
+    }
+
+    // Get order event stream counters (open streams, events sent, rejected connections)
+    @GetMapping("/order-events")
+    public ResponseEntity<Map<String, Object>> getOrderEventStats() {
+        return ResponseEntity.ok(orderEventService.getStats());
+    }
+
+    // Get background image upload counters (uploads in progress, retries, failures)
+    @GetMapping("/image-uploads")
+    public ResponseEntity<Map<String, Object>> getImageUploadStats() {
+        return ResponseEntity.ok(productImageService.getStats());
+    }
+
+    // Get image deletion queue counters (queued and abandoned deletions, images deleted, rate-limit pauses)
+    @GetMapping("/image-deletions")
+    public ResponseEntity<Map<String, Object>> getImageDeletionStats() {
+        return ResponseEntity.ok(imageDeletionService.getStats());
+    }
+
+    // Get image deduplication counters (indexed images, uploads skipped, bytes not uploaded again)
+    @GetMapping("/image-assets")
+    public ResponseEntity<Map<String, Object>> getImageAssetStats() {
+        return ResponseEntity.ok(imageAssetService.getStats());
+    }
+}
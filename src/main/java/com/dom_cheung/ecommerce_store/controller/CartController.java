@@ -0,0 +1,164 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.model.CartItem;
+import com.dom_cheung.ecommerce_store.model.User;
+import com.dom_cheung.ecommerce_store.repository.UserRepository;
+import com.dom_cheung.ecommerce_store.security.AuthenticatedUser;
+import com.dom_cheung.ecommerce_store.service.CartService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping("/api/users/cart")
+public class CartController {
+
+    private static final Logger LOGGER = Logger.getLogger(CartController.class.getName());
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Get the current user's cart
+     *
+     * @return Cart items
+     */
+    @GetMapping
+    public ResponseEntity<?> getCart() {
+        return handle("retrieving your cart", cartService::getCart);
+    }
+
+    /**
+     * Replace the current user's cart with the client's copy
+     *
+     * @param cartRequest Map containing "items", each with product "id" and "quantity"
+     * @return The saved cart
+     */
+    @PostMapping
+    public ResponseEntity<?> replaceCart(@RequestBody Map<String, Object> cartRequest) {
+        List<Map<String, Object>> items = (List<Map<String, Object>>) cartRequest.get("items");
+        return handle("saving your cart", userId -> cartService.replaceCart(userId, items));
+    }
+
+    /**
+     * Merge a guest cart into the current user's cart (called after login)
+     *
+     * @param cartRequest Map containing "items", each with product "id" and "quantity"
+     * @return The merged cart
+     */
+    @PostMapping("/merge")
+    public ResponseEntity<?> mergeCart(@RequestBody Map<String, Object> cartRequest) {
+        List<Map<String, Object>> items = (List<Map<String, Object>>) cartRequest.get("items");
+        return handle("merging your cart", userId -> cartService.mergeCart(userId, items));
+    }
+
+    /**
+     * Add a product to the cart
+     *
+     * @param itemRequest Map containing product "id" and "quantity" (defaults to 1)
+     * @return The updated cart
+     */
+    @PostMapping("/items")
+    public ResponseEntity<?> addItem(@RequestBody Map<String, Object> itemRequest) {
+        if (itemRequest.get("id") == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", "Product id is required"));
+        }
+        return handle("updating your cart", userId -> cartService.addItem(userId,
+                Long.valueOf(itemRequest.get("id").toString()),
+                Integer.parseInt(itemRequest.getOrDefault("quantity", 1).toString())));
+    }
+
+    /**
+     * Set the quantity of a cart line (0 removes it)
+     *
+     * @param productId Product of the line
+     * @param itemRequest Map containing the new "quantity"
+     * @return The updated cart
+     */
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<?> updateItem(@PathVariable Long productId, @RequestBody Map<String, Object> itemRequest) {
+        if (itemRequest.get("quantity") == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", "Quantity is required"));
+        }
+        return handle("updating your cart", userId -> cartService.updateItem(userId, productId,
+                Integer.parseInt(itemRequest.get("quantity").toString())));
+    }
+
+    /**
+     * Remove a line from the cart
+     *
+     * @param productId Product of the line to remove
+     * @return The updated cart
+     */
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<?> removeItem(@PathVariable Long productId) {
+        return handle("updating your cart", userId -> cartService.removeItem(userId, productId));
+    }
+
+    // Resolve the user, run the cart operation and map the result or error to a response
+    private ResponseEntity<?> handle(String action, Function<Long, List<CartItem>> operation) {
+        try {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            Long userId = getCurrentUserId(auth);
+            if (userId == null) {
+                LOGGER.warning("Unauthorized cart access attempt for username: " + auth.getName());
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                        Map.of("message", "Unauthorized access")
+                );
+            }
+
+            return ResponseEntity.ok(toResponse(operation.apply(userId)));
+
+        } catch (IllegalArgumentException e) {
+            // Handle validation errors (NumberFormatException included)
+            LOGGER.warning("Validation error " + action + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", e.getMessage())
+            );
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error " + action, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    Map.of("message", "An error occurred while " + action + ". Please try again later.")
+            );
+        }
+    }
+
+    // Same shape as the cart items kept in localStorage by the front end
+    private Map<String, Object> toResponse(List<CartItem> cart) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (CartItem line : cart) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", line.getProductId());
+            item.put("name", line.getName());
+            item.put("price", line.getPrice());
+            item.put("imageUrl", line.getImageUrl());
+            item.put("quantity", line.getQuantity());
+            items.add(item);
+        }
+        return Map.of("items", items);
+    }
+
+    // Same lookup as OrderController: the id comes from the token principal when available
+    private Long getCurrentUserId(Authentication auth) {
+        if (auth.getPrincipal() instanceof AuthenticatedUser principal && principal.getId() != null) {
+            return principal.getId();
+        }
+        return userRepository.findByUsername(auth.getName())
+                .map(User::getId)
+                .orElse(null);
+    }
+}
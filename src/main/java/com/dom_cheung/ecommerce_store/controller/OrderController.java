@@ -4,14 +4,23 @@ import com.dom_cheung.ecommerce_store.model.Order;
 import com.dom_cheung.ecommerce_store.model.OrderStatus;
 import com.dom_cheung.ecommerce_store.model.User;
 import com.dom_cheung.ecommerce_store.repository.UserRepository;
+import com.dom_cheung.ecommerce_store.security.AuthenticatedUser;
+import com.dom_cheung.ecommerce_store.service.CheckoutQueueFullException;
+import com.dom_cheung.ecommerce_store.service.IdempotencyStore;
+import com.dom_cheung.ecommerce_store.service.OrderEventService;
+import com.dom_cheung.ecommerce_store.service.OrderEventStreamsFullException;
+import com.dom_cheung.ecommerce_store.service.OrderIngestionService;
 import com.dom_cheung.ecommerce_store.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -32,14 +41,39 @@ public class OrderController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private OrderIngestionService orderIngestionService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
     /**
      * Create a new order
+     * With an Idempotency-Key header, a retry of the same request returns the original response
+     * instead of placing a second order.
      *
      * @param orderRequest Order data from request body
+     * @param idempotencyKey Client-generated key identifying this checkout, optional
      * @return Order confirmation with order number
      */
     @PostMapping
-    public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> orderRequest) {
+    public ResponseEntity<?> createOrder(
+            @RequestBody Map<String, Object> orderRequest,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return placeOrder(orderRequest);
+        }
+        Long userId = getCurrentUserId(SecurityContextHolder.getContext().getAuthentication());
+        if (userId == null) {
+            return placeOrder(orderRequest);
+        }
+        return idempotencyStore.execute(userId, idempotencyKey, orderRequest, () -> placeOrder(orderRequest));
+    }
+
+    private ResponseEntity<?> placeOrder(Map<String, Object> orderRequest) {
         try {
             // Get the current authenticated user
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -47,17 +81,15 @@ public class OrderController {
 
             LOGGER.info("Create order request received from user: " + username);
 
-            // Validate user exists
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            // Resolve the user id from the token
+            Long userId = getCurrentUserId(auth);
+            if (userId == null) {
                 LOGGER.warning("Unauthorized access attempt for username: " + username);
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         Map.of("message", "Unauthorized access")
                 );
             }
 
-            User user = userOpt.get();
-
             // Validate required fields
             if (!orderRequest.containsKey("items")) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
@@ -71,8 +103,10 @@ public class OrderController {
             // Get cart items from request
             List<Map<String, Object>> cartItems = (List<Map<String, Object>>) orderRequest.get("items");
 
-            // Create the order
-            Order createdOrder = orderService.createOrder(user.getId(), cartItems, shippingAddress);
+            // Create the order, through the group-commit queue when it is enabled
+            Order createdOrder = orderIngestionService.isEnabled()
+                    ? orderIngestionService.createOrder(userId, cartItems, shippingAddress)
+                    : orderService.createOrder(userId, cartItems, shippingAddress);
 
             // Prepare response
             Map<String, Object> response = new HashMap<>();
@@ -84,6 +118,12 @@ public class OrderController {
             LOGGER.info("Order created successfully: " + createdOrder.getOrderNumber());
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
 
+        } catch (CheckoutQueueFullException e) {
+            // Backpressure: the order queue is full or too slow, nothing was placed; the client should retry shortly
+            LOGGER.warning("Rejecting checkout: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", e.getMessage()));
         } catch (IllegalArgumentException e) {
             // Handle validation errors
             LOGGER.warning("Validation error creating order: " + e.getMessage());
@@ -113,19 +153,17 @@ public class OrderController {
 
             LOGGER.info("Get orders request received from user: " + username);
 
-            // Validate user exists
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            // Resolve the user id from the token
+            Long userId = getCurrentUserId(auth);
+            if (userId == null) {
                 LOGGER.warning("Unauthorized access attempt for username: " + username);
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         Map.of("message", "Unauthorized access")
                 );
             }
 
-            User user = userOpt.get();
-
             // Get the user's orders
-            List<Order> orders = orderService.getUserOrders(user.getId());
+            List<Order> orders = orderService.getUserOrders(userId);
 
             LOGGER.info("Successfully retrieved " + orders.size() + " orders for user: " + username);
             return ResponseEntity.ok(orders);
@@ -138,6 +176,131 @@ public class OrderController {
         }
     }
 
+    /**
+     * Get one page of the current user's orders, newest first
+     * e.g. /api/orders?limit=20, then /api/orders?limit=20&before={nextCursor}
+     *
+     * @param limit Page size (capped at OrderService.MAX_PAGE_SIZE)
+     * @param before Cursor of the previous page's last order (nextCursor), omitted for the first page
+     * @return Map with the orders ("items"), "limit" and "nextCursor" (null on the last page)
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<?> getUserOrderPage(
+            @RequestParam Integer limit,
+            @RequestParam(required = false) String before) {
+        try {
+            // Get the current authenticated user
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            String username = auth.getName();
+
+            // Resolve the user id from the token
+            Long userId = getCurrentUserId(auth);
+            if (userId == null) {
+                LOGGER.warning("Unauthorized access attempt for username: " + username);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                        Map.of("message", "Unauthorized access")
+                );
+            }
+
+            return ResponseEntity.ok(orderService.getUserOrderPage(userId, before, limit));
+
+        } catch (IllegalArgumentException e) {
+            // Malformed cursor
+            LOGGER.warning("Validation error retrieving order page: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", e.getMessage())
+            );
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving user order page", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    Map.of("message", "An error occurred while retrieving your orders. Please try again later.")
+            );
+        }
+    }
+
+    /**
+     * Get one page of order summaries (number, date, status, total, item count) for the orders list
+     * e.g. /api/orders/summary?limit=20, then /api/orders/summary?limit=20&before={nextCursor}
+     *
+     * @param limit Page size (capped at OrderService.MAX_PAGE_SIZE, defaults to OrderService.DEFAULT_PAGE_SIZE)
+     * @param before Cursor of the previous page's last order (nextCursor), omitted for the first page
+     * @return Map with the summaries ("items"), "limit" and "nextCursor" (null on the last page)
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<?> getUserOrderSummaries(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before) {
+        try {
+            // Get the current authenticated user
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            String username = auth.getName();
+
+            // Resolve the user id from the token
+            Long userId = getCurrentUserId(auth);
+            if (userId == null) {
+                LOGGER.warning("Unauthorized access attempt for username: " + username);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                        Map.of("message", "Unauthorized access")
+                );
+            }
+
+            return ResponseEntity.ok(orderService.getUserOrderSummaryPage(userId, before, limit));
+
+        } catch (IllegalArgumentException e) {
+            // Malformed cursor
+            LOGGER.warning("Validation error retrieving order summaries: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", e.getMessage())
+            );
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving user order summaries", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    Map.of("message", "An error occurred while retrieving your orders. Please try again later.")
+            );
+        }
+    }
+
+    /**
+     * Open a Server-Sent Events stream of status changes to the current user's orders
+     * Each change is an "order-status" event whose data is an OrderStatusEvent. The stream ends after
+     * store.order-events.stream-timeout and the client reconnects. Errors have no body, since stream
+     * clients do not read one.
+     *
+     * @return The event stream, or 503 if this instance holds too many streams already
+     */
+    @GetMapping("/events")
+    public ResponseEntity<SseEmitter> streamOrderEvents() {
+        try {
+            // Get the current authenticated user
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            String username = auth.getName();
+
+            // Resolve the user id from the token
+            Long userId = getCurrentUserId(auth);
+            if (userId == null) {
+                LOGGER.warning("Unauthorized access attempt for username: " + username);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            SseEmitter emitter = orderEventService.subscribe(userId);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    // Stops nginx-style proxies from buffering the stream
+                    .header("X-Accel-Buffering", "no")
+                    .body(emitter);
+
+        } catch (OrderEventStreamsFullException e) {
+            // The client keeps its current page and reconnects later
+            LOGGER.warning(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error opening order event stream", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Get details of a specific order
      *
@@ -153,17 +316,15 @@ public class OrderController {
 
             LOGGER.info("Get order details request received from user: " + username + " for order: " + orderNumber);
 
-            // Validate user exists
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            // Resolve the user id from the token
+            Long userId = getCurrentUserId(auth);
+            if (userId == null) {
                 LOGGER.warning("Unauthorized access attempt for username: " + username);
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         Map.of("message", "Unauthorized access")
                 );
             }
 
-            User user = userOpt.get();
-
             // Get the order
             Optional<Order> orderOpt = orderService.getOrderByNumber(orderNumber);
             if (orderOpt.isEmpty()) {
@@ -176,7 +337,7 @@ public class OrderController {
             Order order = orderOpt.get();
 
             // Security check: ensure users can only view their own orders
-            if (!order.getUserId().equals(user.getId())) {
+            if (!order.getUserId().equals(userId)) {
                 LOGGER.warning("User " + username + " attempted to access order " + orderNumber + " which belongs to another user");
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(
                         Map.of("message", "You don't have permission to view this order")
@@ -209,17 +370,15 @@ public class OrderController {
 
             LOGGER.info("Cancel order request received from user: " + username + " for order: " + orderNumber);
 
-            // Validate user exists
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            // Resolve the user id from the token
+            Long userId = getCurrentUserId(auth);
+            if (userId == null) {
                 LOGGER.warning("Unauthorized access attempt for username: " + username);
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         Map.of("message", "Unauthorized access")
                 );
             }
 
-            User user = userOpt.get();
-
             // Get the order
             Optional<Order> orderOpt = orderService.getOrderByNumber(orderNumber);
             if (orderOpt.isEmpty()) {
@@ -232,7 +391,7 @@ public class OrderController {
             Order order = orderOpt.get();
 
             // Security check: ensure users can only cancel their own orders
-            if (!order.getUserId().equals(user.getId())) {
+            if (!order.getUserId().equals(userId)) {
                 LOGGER.warning("User " + username + " attempted to cancel order " + orderNumber
                         + " which belongs to another user");
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(
@@ -260,6 +419,12 @@ public class OrderController {
             LOGGER.info("Successfully cancelled order: " + orderNumber);
             return ResponseEntity.ok(response);
 
+        } catch (OptimisticLockingFailureException e) {
+            // The order kept changing under us; the client can reload it and try again
+            LOGGER.warning("Concurrent updates prevented cancelling order: " + orderNumber);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                    Map.of("message", "The order was updated at the same time. Please try again.")
+            );
         } catch (IllegalArgumentException e) {
             // Handle validation errors (e.g., invalid status transition)
             LOGGER.warning("Validation error cancelling order: " + e.getMessage());
@@ -326,6 +491,11 @@ public class OrderController {
 
             return ResponseEntity.ok(response);
 
+        } catch (OptimisticLockingFailureException e) {
+            // The order kept changing under us; the client can reload it and try again
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                    Map.of("message", "The order was updated at the same time. Please try again.")
+            );
         } catch (IllegalArgumentException e) {
             // Handle validation errors
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
@@ -338,4 +508,21 @@ public class OrderController {
             );
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the ID of the authenticated user.
+     * Token-authenticated requests carry it in the principal; the users table is only
+     * queried for other authentication types or tokens issued without an id claim.
+     *
+     * @param auth Current authentication
+     * @return User ID, or null if the user does not exist
+     */
+    private Long getCurrentUserId(Authentication auth) {
+        if (auth.getPrincipal() instanceof AuthenticatedUser principal && principal.getId() != null) {
+            return principal.getId();
+        }
+        return userRepository.findByUsername(auth.getName())
+                .map(User::getId)
+                .orElse(null);
+    }
+}
@@ -3,8 +3,10 @@ package com.dom_cheung.ecommerce_store.controller;
 import java.util.*;
 import com.dom_cheung.ecommerce_store.model.Product;
 import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import com.dom_cheung.ecommerce_store.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;//get web
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.*;
 
 
@@ -15,9 +17,27 @@ public class ProductController {
     @Autowired // generate entities of productRepository
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductService productService;
+
     @GetMapping //deal with HTTP getting
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();//return all the products in the productRepo
+    public ResponseEntity<StreamingResponseBody> getAllProducts() {
+        // stream all the products as a JSON array straight from the database cursor
+        StreamingResponseBody body = productService::writeAllProducts;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping(params = "limit") // e.g. /api/products?limit=20&after=120
+    public ResponseEntity<Map<String, Object>> getProductPage(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long after) {
+        // keyset page ordered by id, pass nextCursor back as "after" to get the next page
+        return ResponseEntity.ok(productService.getProductPage(after, limit));
+    }
+
+    @GetMapping(params = {"after", "!limit"}) // a cursor alone gets a page of the default size, not the whole catalog
+    public ResponseEntity<Map<String, Object>> getProductPageAfter(@RequestParam Long after) {
+        return ResponseEntity.ok(productService.getProductPage(after, null));
     }
 
 //    @PostMapping //<<< Annotation for handling HTTP POST requests to /api/products
@@ -46,7 +66,7 @@ public class ProductController {
         System.out.println("====== METHOD CALLED: getProductById, ID: " + id + " ======");
         // Use the repository's findById() method. This returns an Optional<Product>.
         // Using Optional because the product might not exist.
-        Optional<Product> productOp = productRepository.findById(id);
+        Optional<Product> productOp = productService.getProductById(id); // cached read-through
 
         //check the productOp
         if (productOp.isPresent()) {
@@ -0,0 +1,16 @@
+package com.dom_cheung.ecommerce_store.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of the admin order search and export: the order columns only, read straight from JDBC
+ * without loading Order entities or their items.
+ */
+public record AdminOrderRow(Long id,
+                            String orderNumber,
+                            Long userId,
+                            LocalDateTime orderDate,
+                            OrderStatus status,
+                            double totalAmount,
+                            String shippingAddress) {
+}
@@ -0,0 +1,13 @@
+package com.dom_cheung.ecommerce_store.model;
+
+import java.time.LocalDate;
+
+/**
+ * Sales of one day, overall or for one product, as read from the sales rollups.
+ * Orders that were cancelled are not counted.
+ */
+public record DailySales(LocalDate date,
+                         long orderCount,
+                         double revenue,
+                         long unitsSold) {
+}
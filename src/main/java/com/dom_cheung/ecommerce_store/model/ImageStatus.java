@@ -0,0 +1,7 @@
+package com.dom_cheung.ecommerce_store.model;
+
+public enum ImageStatus {
+    PENDING,  // Image has been received and is being uploaded in the background
+    READY,    // Image has been uploaded and the product's imageUrl points to it
+    FAILED    // Upload gave up after its retries; the product keeps its previous image
+}
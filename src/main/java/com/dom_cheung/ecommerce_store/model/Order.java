@@ -3,18 +3,22 @@ package com.dom_cheung.ecommerce_store.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+// Indexes for order history and the stale order sweep are created by db/migration/V2__add_query_indexes.sql
 @Table(name = "orders")
 @Data
 @NoArgsConstructor
 public class Order {
+    // Pooled sequence ids let Hibernate batch inserts (IDENTITY forces one INSERT round trip per row)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -33,12 +37,16 @@ public class Order {
 
     private double totalAmount;
 
+    // Optimistic locking: concurrent status changes to the same order cannot overwrite each other.
+    // The column and its default 0 for orders placed before it existed come from V1__create_schema.sql;
+    // @ColumnDefault only documents that default on the entity.
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    // Non-nullable join column: order_id is written in the item INSERT instead of a follow-up UPDATE per item
     @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
-    @JoinColumn(name = "order_id")
+    @JoinColumn(name = "order_id", nullable = false, updatable = false)
     private List<OrderItem> items = new ArrayList<>();
-
-    // Generate a unique order number
-    public static String generateOrderNumber() {
-        return "ORD-" + System.currentTimeMillis();
-    }
 }
\ No newline at end of file
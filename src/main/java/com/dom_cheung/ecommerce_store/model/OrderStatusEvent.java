@@ -0,0 +1,14 @@
+package com.dom_cheung.ecommerce_store.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Status change of an order as pushed to its owner's event stream.
+ * Events can arrive out of order; the one with the highest version is the current status.
+ */
+public record OrderStatusEvent(String orderNumber,
+                               OrderStatus status,
+                               OrderStatus previousStatus,
+                               Long version,
+                               LocalDateTime changedAt) {
+}
@@ -0,0 +1,17 @@
+package com.dom_cheung.ecommerce_store.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of the orders list page: the order columns plus the number of items, counted in SQL.
+ * Built by a constructor expression in OrderRepository, so no OrderItem entity is loaded.
+ *
+ * @param itemCount Total quantity over all lines of the order
+ */
+public record OrderSummary(Long id,
+                           String orderNumber,
+                           LocalDateTime orderDate,
+                           OrderStatus status,
+                           double totalAmount,
+                           long itemCount) {
+}
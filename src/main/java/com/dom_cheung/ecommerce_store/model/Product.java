@@ -1,5 +1,6 @@
 package com.dom_cheung.ecommerce_store.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*; // using jakarta.persistence for Spring Boot 3+
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -30,4 +31,20 @@ public class Product {
 
     @Column(length = 255)
     private String imagePublicId;
+
+    // Background upload of the image; null when the image was set directly. Not accepted from clients.
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private ImageStatus imageStatus;
+
+    // Why the last background upload failed
+    @Column(length = 512)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String imageError;
+
+    // Units on hand; null means stock is not tracked for this product and it can always be ordered.
+    // Only written on insert: afterwards by InventoryService's relative and absolute updates, never by a product save
+    @Column(updatable = false)
+    private Integer stock;
 }
\ No newline at end of file
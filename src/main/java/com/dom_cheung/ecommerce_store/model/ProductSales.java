@@ -0,0 +1,11 @@
+package com.dom_cheung.ecommerce_store.model;
+
+/**
+ * Sales of one product over a range of days, as read from the sales rollups.
+ * orderCount is the number of orders that contained the product.
+ */
+public record ProductSales(Long productId,
+                           long orderCount,
+                           double revenue,
+                           long unitsSold) {
+}
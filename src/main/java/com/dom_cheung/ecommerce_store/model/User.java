@@ -30,7 +30,8 @@ public class User {
     @Column(name = "role")
     private Set<String> roles = new HashSet<>();
 
-    @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
-    @JoinColumn(name = "user_id")
+    // Read-only view: cart rows are written by CartService through CartItem.userId
+    @OneToMany
+    @JoinColumn(name = "user_id", insertable = false, updatable = false)
     private List<CartItem> cartItems = new ArrayList<>();
 }
\ No newline at end of file
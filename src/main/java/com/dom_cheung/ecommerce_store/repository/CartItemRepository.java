@@ -0,0 +1,39 @@
+package com.dom_cheung.ecommerce_store.repository;
+
+import com.dom_cheung.ecommerce_store.model.CartItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+    // Find all cart lines of a user, in the order they were added
+    List<CartItem> findByUserIdOrderByIdAsc(Long userId);
+
+    // Delete the cart lines of several users in one statement
+    @Modifying
+    @Query("delete from CartItem c where c.userId in :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    // Version of a user's saved cart, null if it was never written
+    @Query(value = "select version from cart_versions where user_id = :userId", nativeQuery = true)
+    Long findCartVersion(@Param("userId") Long userId);
+
+    // Fails with a DataIntegrityViolationException if the row already exists
+    @Transactional
+    @Modifying
+    @Query(value = "insert into cart_versions (user_id, version) values (:userId, 0)", nativeQuery = true)
+    int createCartVersion(@Param("userId") Long userId);
+
+    // Returns 0 if the cart was written since the given version was read
+    @Modifying
+    @Query(value = "update cart_versions set version = version + 1 where user_id = :userId and version = :version",
+            nativeQuery = true)
+    int bumpCartVersion(@Param("userId") Long userId, @Param("version") long version);
+}
@@ -1,17 +1,77 @@
 package com.dom_cheung.ecommerce_store.repository;
 
 import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.model.OrderSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    // Find all orders for a specific user, sorted by order date (newest first)
+    // Find all orders for a specific user, sorted by order date (newest first), items fetched in the same query
+    @EntityGraph(attributePaths = "items")
     List<Order> findByUserIdOrderByOrderDateDesc(Long userId);
 
     // Find an order by its order number
     Optional<Order> findByOrderNumber(String orderNumber);
-}
\ No newline at end of file
+
+    // Oldest orders in a status placed before the cutoff (stale order sweep, served by idx_orders_status_date)
+    @Query("select o.orderNumber from Order o where o.status = :status and o.orderDate < :cutoff order by o.orderDate")
+    List<String> findOrderNumbersByStatusBefore(@Param("status") OrderStatus status,
+                                                @Param("cutoff") LocalDateTime cutoff,
+                                                Pageable pageable);
+
+    // Find many orders by order number in one query (bulk status updates)
+    List<Order> findByOrderNumberIn(Collection<String> orderNumbers);
+
+    // Same, with items fetched in the same query (bulk cancellations release the items' stock)
+    @EntityGraph(attributePaths = "items")
+    @Query("select o from Order o where o.orderNumber in :orderNumbers")
+    List<Order> findWithItemsByOrderNumberIn(@Param("orderNumbers") Collection<String> orderNumbers);
+
+    // Keyset paging of a user's order history (newest first). Only ids are paged here: a fetch join
+    // combined with a limit would make Hibernate page in memory.
+    @Query("select o.id from Order o where o.userId = :userId order by o.orderDate desc, o.id desc")
+    List<Long> findOrderIdsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("select o.id from Order o where o.userId = :userId"
+            + " and (o.orderDate < :beforeDate or (o.orderDate = :beforeDate and o.id < :beforeId))"
+            + " order by o.orderDate desc, o.id desc")
+    List<Long> findOrderIdsByUserIdBefore(@Param("userId") Long userId,
+                                          @Param("beforeDate") LocalDateTime beforeDate,
+                                          @Param("beforeId") Long beforeId,
+                                          Pageable pageable);
+
+    // Keyset-paged order summaries for the orders list; the item count is computed by the database
+    @Query("select new com.dom_cheung.ecommerce_store.model.OrderSummary("
+            + "o.id, o.orderNumber, o.orderDate, o.status, o.totalAmount, coalesce(sum(i.quantity), 0))"
+            + " from Order o left join o.items i where o.userId = :userId"
+            + " group by o.id, o.orderNumber, o.orderDate, o.status, o.totalAmount"
+            + " order by o.orderDate desc, o.id desc")
+    List<OrderSummary> findSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("select new com.dom_cheung.ecommerce_store.model.OrderSummary("
+            + "o.id, o.orderNumber, o.orderDate, o.status, o.totalAmount, coalesce(sum(i.quantity), 0))"
+            + " from Order o left join o.items i where o.userId = :userId"
+            + " and (o.orderDate < :beforeDate or (o.orderDate = :beforeDate and o.id < :beforeId))"
+            + " group by o.id, o.orderNumber, o.orderDate, o.status, o.totalAmount"
+            + " order by o.orderDate desc, o.id desc")
+    List<OrderSummary> findSummariesByUserIdBefore(@Param("userId") Long userId,
+                                                   @Param("beforeDate") LocalDateTime beforeDate,
+                                                   @Param("beforeId") Long beforeId,
+                                                   Pageable pageable);
+
+    // Load one page of orders together with their items in a single query
+    @EntityGraph(attributePaths = "items")
+    @Query("select o from Order o where o.id in :ids order by o.orderDate desc, o.id desc")
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -1,11 +1,64 @@
 package com.dom_cheung.ecommerce_store.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import com.dom_cheung.ecommerce_store.model.ImageStatus;
 import com.dom_cheung.ecommerce_store.model.Product;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 @Repository
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
     // JpaRepository<EntityType, PrimaryKeyType>
     // now got CRUD method such as (findAll, findById, save, deleteById etc)
+
+    // Keyset page: products with id greater than the cursor, ordered by id
+    Slice<Product> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+    // Forward-only cursor over the whole catalog, must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "200"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAllByOrderByIdAsc();
+
+    // Takes the quantity only if that much is on hand; 0 rows when it is not (or stock is not tracked)
+    @Modifying
+    @Query("update Product p set p.stock = p.stock - :quantity where p.id = :id and p.stock >= :quantity")
+    int reserveStock(@Param("id") long id, @Param("quantity") int quantity);
+
+    // Relative update, so writes from several instances add up instead of overwriting each other
+    @Modifying
+    @Query("update Product p set p.stock = p.stock - :quantity where p.id = :id and p.stock is not null")
+    int decrementStock(@Param("id") long id, @Param("quantity") int quantity);
+
+    // Absolute update for the admin page; product saves leave the stock column alone
+    @Modifying
+    @Query("update Product p set p.stock = :stock where p.id = :id")
+    int setStock(@Param("id") long id, @Param("stock") int stock);
+
+    // Image columns only, written when a background upload finishes; returns 0 if the product is gone
+    @Transactional
+    @Modifying
+    @Query("update Product p set p.imageUrl = :imageUrl, p.imagePublicId = :imagePublicId, p.imageStatus = :status, "
+            + "p.imageError = null where p.id = :id")
+    int updateImage(@Param("id") long id, @Param("imageUrl") String imageUrl,
+                    @Param("imagePublicId") String imagePublicId, @Param("status") ImageStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("update Product p set p.imageStatus = :status, p.imageError = :error where p.id = :id")
+    int updateImageStatus(@Param("id") long id, @Param("status") ImageStatus status, @Param("error") String error);
 }
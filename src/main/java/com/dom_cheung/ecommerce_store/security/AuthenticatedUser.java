@@ -0,0 +1,33 @@
+package com.dom_cheung.ecommerce_store.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Principal built from a verified JWT, so controllers can get the user id and roles
+ * without loading the user from the database.
+ */
+@Getter
+@AllArgsConstructor
+public class AuthenticatedUser implements Principal {
+
+    // User ID from the token's "id" claim (null for tokens issued without one)
+    private final Long id;
+
+    private final String username;
+
+    private final List<String> roles;
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
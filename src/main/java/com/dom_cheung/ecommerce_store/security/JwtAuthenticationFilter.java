@@ -23,9 +23,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final AuthService authService;
 
+    private final VerifiedTokenCache verifiedTokenCache;
+
     @Autowired
-    public JwtAuthenticationFilter(@Lazy AuthService authService) {
+    public JwtAuthenticationFilter(@Lazy AuthService authService, VerifiedTokenCache verifiedTokenCache) {
         this.authService = authService;
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
     @Override
@@ -45,11 +48,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String token = authHeader.substring(7);
 
         try {
-            // Validate the token
-            Map<String, Object> claims = authService.validateToken(token);
+            // Validate the token, reusing the claims if this token was already verified
+            Map<String, Object> claims = verifiedTokenCache.getClaims(token, authService::validateToken);
 
-            // Get username and roles
+            // Get user id, username and roles
             String username = claims.get("sub").toString();
+            Object idClaim = claims.get("id");
+            Long userId = idClaim instanceof Number ? ((Number) idClaim).longValue() : null;
             List<String> roles = (List<String>) claims.get("roles");
 
             // Create GrantedAuthority objects
@@ -57,9 +62,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     .map(SimpleGrantedAuthority::new)
                     .collect(Collectors.toList());
 
-            // Create and set authentication object
+            // Create and set authentication object, carrying the user id so no users-table lookup is needed
+            AuthenticatedUser principal = new AuthenticatedUser(userId, username, roles);
             UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(username, null, authorities);
+                    new UsernamePasswordAuthenticationToken(principal, null, authorities);
 
             // Set authentication context
             SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -0,0 +1,200 @@
+package com.dom_cheung.ecommerce_store.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Set of HS256 keys shared by every instance, so a token signed on one node verifies on all of them.
+ *
+ * Keys come from the store.jwt.keys property and/or the file named by store.jwt.keys-file, one entry
+ * per line (or comma separated in the property) in the form {@code kid:base64secret[@activate-at]}.
+ * Tokens are signed with the key that was activated most recently, and carry its kid in the header;
+ * every key in the ring is accepted for verification. The file is re-read on a schedule, so a key
+ * can be rotated without downtime:
+ * <ol>
+ *   <li>add the new key with a future activate-at time, so every node learns it before it is used</li>
+ *   <li>at activate-at all nodes start signing with it, while older tokens still verify</li>
+ *   <li>remove the old key once the tokens signed with it have expired</li>
+ * </ol>
+ * A removed key stops verifying at the next reload: cached verifications of tokens signed with it
+ * are dropped from the VerifiedTokenCache at the same time.
+ * Without any configured key a random one is generated, which only works for a single instance.
+ */
+@Component
+public class JwtKeyRing {
+
+    private static final Logger LOGGER = Logger.getLogger(JwtKeyRing.class.getName());
+
+    private static final String RANDOM_KEY_ID = "local";
+
+    @Getter
+    @AllArgsConstructor
+    public static class SigningKey {
+        private final String kid;
+        private final SecretKey key;
+        private final Instant activateAt;
+    }
+
+    private final String inlineKeys;
+
+    private final String keysFile;
+
+    @Autowired(required = false)
+    private VerifiedTokenCache verifiedTokenCache;
+
+    // kid -> key, replaced as a whole on reload
+    private volatile Map<String, SigningKey> keys;
+
+    public JwtKeyRing(@Value("${store.jwt.keys:}") String inlineKeys,
+                      @Value("${store.jwt.keys-file:}") String keysFile) {
+        this.inlineKeys = inlineKeys;
+        this.keysFile = keysFile;
+        try {
+            this.keys = loadKeys();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read JWT keys file: " + keysFile, e);
+        }
+
+        if (keys.isEmpty()) {
+            LOGGER.warning("No JWT keys configured (store.jwt.keys / store.jwt.keys-file). Using a random key: "
+                    + "tokens will not be accepted by other instances and will not survive a restart.");
+            SecretKey randomKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+            this.keys = Map.of(RANDOM_KEY_ID, new SigningKey(RANDOM_KEY_ID, randomKey, Instant.EPOCH));
+        }
+        LOGGER.info("JWT key ring loaded with key ids " + keys.keySet());
+    }
+
+    /**
+     * Get the key new tokens are signed with
+     *
+     * @return The most recently activated key
+     */
+    public SigningKey getSigningKey() {
+        return getSigningKey(Instant.now());
+    }
+
+    SigningKey getSigningKey(Instant now) {
+        SigningKey active = null;
+        for (SigningKey candidate : keys.values()) {
+            if (candidate.getActivateAt().isAfter(now)) {
+                continue;
+            }
+            if (active == null || candidate.getActivateAt().isAfter(active.getActivateAt())) {
+                active = candidate;
+            }
+        }
+        if (active == null) {
+            throw new IllegalStateException("No JWT key is active yet, check the activate-at times");
+        }
+        return active;
+    }
+
+    /**
+     * Get a key to verify a token with
+     *
+     * @param kid Key id from the token header (null for tokens without one)
+     * @return The key with that id, or the current signing key if the token has no kid; null if unknown
+     */
+    public SecretKey getVerificationKey(String kid) {
+        if (kid == null) {
+            return getSigningKey().getKey();
+        }
+        SigningKey key = keys.get(kid);
+        return key != null ? key.getKey() : null;
+    }
+
+    public List<String> getKeyIds() {
+        return new ArrayList<>(keys.keySet());
+    }
+
+    /**
+     * Re-read the configured keys so keys added to or removed from the keys file take effect.
+     * A file that cannot be read or parsed leaves the current ring in place.
+     */
+    @Scheduled(fixedDelayString = "${store.jwt.reload-interval:60000}")
+    public void reload() {
+        if (keysFile == null || keysFile.isBlank()) {
+            return;
+        }
+        try {
+            Map<String, SigningKey> reloaded = loadKeys();
+            if (reloaded.isEmpty()) {
+                LOGGER.warning("JWT keys file " + keysFile + " has no keys, keeping the current key ring");
+                return;
+            }
+            if (!reloaded.keySet().equals(keys.keySet())) {
+                LOGGER.info("JWT key ring reloaded with key ids " + reloaded.keySet());
+            }
+            boolean keyRemoved = !reloaded.keySet().containsAll(keys.keySet());
+            keys = reloaded;
+            if (keyRemoved && verifiedTokenCache != null) {
+                verifiedTokenCache.retainKeys(reloaded.keySet());
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not reload JWT keys file " + keysFile + ", keeping the current key ring", e);
+        }
+    }
+
+    private Map<String, SigningKey> loadKeys() throws IOException {
+        Map<String, SigningKey> loaded = new LinkedHashMap<>();
+        if (inlineKeys != null && !inlineKeys.isBlank()) {
+            for (String entry : inlineKeys.split(",")) {
+                addEntry(loaded, entry);
+            }
+        }
+        if (keysFile != null && !keysFile.isBlank()) {
+            for (String line : Files.readAllLines(Path.of(keysFile))) {
+                addEntry(loaded, line);
+            }
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
+
+    // Parse one "kid:base64secret[@activate-at]" entry, skipping blank lines and # comments
+    private static void addEntry(Map<String, SigningKey> keys, String entry) {
+        String trimmed = entry.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return;
+        }
+
+        int colon = trimmed.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("JWT key entry must look like kid:base64secret[@activate-at]");
+        }
+        String kid = trimmed.substring(0, colon);
+        String secret = trimmed.substring(colon + 1);
+
+        Instant activateAt = Instant.EPOCH;
+        int at = secret.indexOf('@');
+        if (at >= 0) {
+            activateAt = Instant.parse(secret.substring(at + 1).trim());
+            secret = secret.substring(0, at);
+        }
+
+        // hmacShaKeyFor rejects secrets shorter than 256 bits
+        SecretKey key = Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret.trim()));
+        if (keys.put(kid, new SigningKey(kid, key, activateAt)) != null) {
+            throw new IllegalArgumentException("Duplicate JWT key id: " + kid);
+        }
+    }
+}
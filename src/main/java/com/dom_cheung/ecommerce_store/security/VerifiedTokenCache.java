@@ -0,0 +1,157 @@
+package com.dom_cheung.ecommerce_store.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of the claims of JWTs whose signature has already been verified.
+ * Entries are keyed by a SHA-256 digest of the token (the raw token is never kept) and
+ * expire at the token's "exp" claim, or earlier if the configured max TTL is shorter.
+ * Tokens that fail validation are never cached. Each entry remembers the kid of the key that signed
+ * the token, so entries can be dropped when their key is removed from the JwtKeyRing.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final Logger LOGGER = Logger.getLogger(VerifiedTokenCache.class.getName());
+
+    private final boolean enabled;
+
+    private static final ObjectMapper HEADER_READER = new ObjectMapper();
+
+    // Verified claims and the kid header of the token they came from (null if it had none)
+    private record Entry(String kid, Map<String, Object> claims) {
+    }
+
+    private final Cache<String, Entry> cache;
+
+    public VerifiedTokenCache(@Value("${store.jwt-cache.enabled:true}") boolean enabled,
+                              @Value("${store.jwt-cache.max-size:10000}") long maxSize,
+                              @Value("${store.jwt-cache.max-ttl:15m}") Duration maxTtl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ExpireAtTokenExpiry(maxTtl))
+                .recordStats()
+                .build();
+        LOGGER.info("Verified JWT cache " + (enabled ? "enabled" : "disabled")
+                + " (max-size=" + maxSize + ", max-ttl=" + maxTtl + ")");
+    }
+
+    /**
+     * Get the verified claims of a token, validating it on a miss
+     *
+     * @param token Raw JWT
+     * @param validator Verifies the token and returns its claims, throwing if it is invalid
+     * @return Claims of the token
+     */
+    public Map<String, Object> getClaims(String token, Function<String, Map<String, Object>> validator) {
+        if (!enabled) {
+            return validator.apply(token);
+        }
+        return cache.get(digest(token), key -> {
+            Map<String, Object> claims = Map.copyOf(validator.apply(token));
+            return new Entry(keyId(token), claims);
+        }).claims();
+    }
+
+    /**
+     * Forget the tokens signed with a key that is no longer in the key ring, and those without a kid,
+     * so they are verified again (and rejected) on their next use
+     *
+     * @param keyIds Key ids still in the ring
+     */
+    public void retainKeys(Collection<String> keyIds) {
+        cache.asMap().values().removeIf(entry -> entry.kid() == null || !keyIds.contains(entry.kid()));
+    }
+
+    /**
+     * Get the cache counters
+     *
+     * @return Map of hit, miss and eviction counts plus the current size
+     */
+    public Map<String, Object> getStats() {
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // kid from the token's header, read once the validator has checked the signature
+    private static String keyId(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        try {
+            JsonNode kid = HEADER_READER.readTree(Base64.getUrlDecoder().decode(token.substring(0, dot))).get("kid");
+            return kid != null && kid.isTextual() ? kid.asText() : null;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Expires each entry at the token's "exp" claim, capped by the max TTL
+    private static class ExpireAtTokenExpiry implements Expiry<String, Entry> {
+
+        private final long maxTtlNanos;
+
+        ExpireAtTokenExpiry(Duration maxTtl) {
+            this.maxTtlNanos = maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            Object exp = entry.claims().get("exp");
+            if (!(exp instanceof Number)) {
+                return maxTtlNanos;
+            }
+            long millisLeft = ((Number) exp).longValue() * 1000 - System.currentTimeMillis();
+            return Math.max(0, Math.min(maxTtlNanos, Duration.ofMillis(millisLeft).toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -2,9 +2,13 @@ package com.dom_cheung.ecommerce_store.service;
 
 import com.dom_cheung.ecommerce_store.model.User;
 import com.dom_cheung.ecommerce_store.repository.UserRepository;
+import com.dom_cheung.ecommerce_store.security.JwtKeyRing;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.SignatureException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -24,8 +28,24 @@ public class AuthService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
-    // Generate a key for signing JWT
-    private final Key jwtSecretKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    // Keys shared by all instances for signing and verifying JWT
+    @Autowired
+    private JwtKeyRing jwtKeyRing;
+
+    // Parsers are immutable and thread-safe, so build one and reuse it for every request.
+    // The verification key is picked from the key ring by the token's kid header.
+    private final JwtParser jwtParser = Jwts.parserBuilder()
+            .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                @Override
+                public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                    Key key = jwtKeyRing.getVerificationKey(header.getKeyId());
+                    if (key == null) {
+                        throw new SignatureException("Unknown JWT key id: " + header.getKeyId());
+                    }
+                    return key;
+                }
+            })
+            .build();
 
     // User authentication method
     public Map<String, Object> authenticateUser(String username, String password) {
@@ -55,23 +75,23 @@ public class AuthService {
         long nowMillis = System.currentTimeMillis();
         Date now = new Date(nowMillis);
         Date expiration = new Date(nowMillis + 86400000); // 24 hours expiration
+        JwtKeyRing.SigningKey signingKey = jwtKeyRing.getSigningKey();
 
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
                 .setSubject(user.getUsername())
                 .claim("id", user.getId())
                 .claim("roles", user.getRoles()) // Ensure roles are included in JWT
                 .setIssuedAt(now)
                 .setExpiration(expiration)
-                .signWith(jwtSecretKey)
+                .signWith(signingKey.getKey())
                 .compact();
     }
 
     // Parse and validate JWT token
     public Map<String, Object> validateToken(String token) {
         try {
-            Map<String, Object> claims = Jwts.parserBuilder()
-                    .setSigningKey(jwtSecretKey)
-                    .build()
+            Map<String, Object> claims = jwtParser
                     .parseClaimsJws(token)
                     .getBody();
 
@@ -0,0 +1,478 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.CartItem;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.CartItemRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server-side shopping carts with write-behind persistence.
+ *
+ * Mutations only change the in-memory cart of the user and mark it dirty. A scheduled job (and
+ * shutdown) writes the dirty carts to cart_items in batches, one transaction per batch, so a burst
+ * of quantity clicks becomes a single write of the final cart. Carts are loaded from the database
+ * on first access and dropped from memory once they are clean and idle.
+ *
+ * Every write of a cart bumps its version in cart_versions with a conditional update. When a clean
+ * cart in memory is used, its version is compared with the saved one (at most once per version check
+ * interval) and the cart is reloaded if another instance wrote it since, so another instance sees a
+ * change after at most one flush interval plus one check interval. A dirty cart is checked when it is flushed: if another instance wrote the cart in the
+ * meantime, that write is kept and the changes made here are dropped. So when the same cart is
+ * changed on two instances within one flush interval, only one of them survives.
+ */
+@Service
+public class CartService {
+
+    private static final Logger LOGGER = Logger.getLogger(CartService.class.getName());
+
+    public static final int MAX_LINES = 100;
+    public static final int MAX_QUANTITY = 999;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${store.cart.flush-batch-size:200}")
+    private int flushBatchSize = 200;
+
+    @Value("${store.cart.idle-eviction-ms:120000}")
+    private long idleEvictionMillis = 120000;
+
+    @Value("${store.cart.version-check-interval-ms:1000}")
+    private long versionCheckIntervalMillis = 1000;
+
+    // In-memory cart of one user; guarded by its own monitor
+    private static class UserCart {
+        final Map<Long, CartItem> lines = new LinkedHashMap<>(); // productId -> line
+        boolean dirty;
+        boolean evicted;
+        // Saved version this copy is based on, and when it was last compared with the saved one
+        long version;
+        long versionCheckedAt = System.currentTimeMillis();
+        long lastAccess = System.currentTimeMillis();
+    }
+
+    private final Map<Long, UserCart> carts = new ConcurrentHashMap<>();
+
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong mutations = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong cartsWritten = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong staleReloads = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+
+    /**
+     * Get the cart of a user
+     *
+     * @param userId User ID
+     * @return Cart lines in the order they were added
+     */
+    public List<CartItem> getCart(Long userId) {
+        return withCart(userId, false, cart -> snapshot(cart));
+    }
+
+    /**
+     * Add a quantity of a product to the cart, creating the line if needed
+     *
+     * @param userId User ID
+     * @param productId Product to add
+     * @param quantity Quantity to add (must be positive)
+     * @return The updated cart
+     * @throws IllegalArgumentException if the product does not exist or the quantity is invalid
+     */
+    public List<CartItem> addItem(Long userId, Long productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+        Product product = findProduct(productId);
+        return withCart(userId, true, cart -> {
+            CartItem existing = cart.lines.get(productId);
+            int newQuantity = existing != null ? existing.getQuantity() + quantity : quantity;
+            putLine(cart, product, newQuantity);
+            return snapshot(cart);
+        });
+    }
+
+    /**
+     * Set the quantity of a cart line; zero removes the line
+     *
+     * @param userId User ID
+     * @param productId Product of the line
+     * @param quantity New quantity
+     * @return The updated cart
+     * @throws IllegalArgumentException if the product does not exist or the quantity is invalid
+     */
+    public List<CartItem> updateItem(Long userId, Long productId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        if (quantity == 0) {
+            return removeItem(userId, productId);
+        }
+        Product product = findProduct(productId);
+        return withCart(userId, true, cart -> {
+            putLine(cart, product, quantity);
+            return snapshot(cart);
+        });
+    }
+
+    /**
+     * Remove a line from the cart
+     *
+     * @param userId User ID
+     * @param productId Product of the line to remove
+     * @return The updated cart
+     */
+    public List<CartItem> removeItem(Long userId, Long productId) {
+        return withCart(userId, true, cart -> {
+            cart.lines.remove(productId);
+            return snapshot(cart);
+        });
+    }
+
+    /**
+     * Replace the whole cart with the given lines (the client's copy of the cart)
+     *
+     * @param userId User ID
+     * @param items Lines with product "id" and "quantity"
+     * @return The updated cart
+     */
+    public List<CartItem> replaceCart(Long userId, List<Map<String, Object>> items) {
+        Map<Long, Integer> quantities = parseItems(items);
+        Map<Long, Product> products = findProducts(quantities);
+        return withCart(userId, true, cart -> {
+            cart.lines.clear();
+            products.forEach((productId, product) -> putLine(cart, product, quantities.get(productId)));
+            return snapshot(cart);
+        });
+    }
+
+    /**
+     * Merge a guest cart into the user's saved cart, e.g. on login.
+     * For products in both carts the larger quantity wins, so merging the same cart twice changes nothing.
+     *
+     * @param userId User ID
+     * @param items Lines with product "id" and "quantity"
+     * @return The merged cart
+     */
+    public List<CartItem> mergeCart(Long userId, List<Map<String, Object>> items) {
+        Map<Long, Integer> quantities = parseItems(items);
+        Map<Long, Product> products = findProducts(quantities);
+        return withCart(userId, true, cart -> {
+            // Check the merged size before changing anything
+            long newLines = products.keySet().stream().filter(id -> !cart.lines.containsKey(id)).count();
+            if (cart.lines.size() + newLines > MAX_LINES) {
+                throw new IllegalArgumentException("A cart cannot have more than " + MAX_LINES + " products");
+            }
+            products.forEach((productId, product) -> {
+                CartItem existing = cart.lines.get(productId);
+                int quantity = quantities.get(productId);
+                putLine(cart, product, existing != null ? Math.max(existing.getQuantity(), quantity) : quantity);
+            });
+            return snapshot(cart);
+        });
+    }
+
+    /**
+     * Write all dirty carts to the database in batches, then drop idle clean carts from memory.
+     * A batch that fails is marked dirty again and retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${store.cart.flush-interval-ms:5000}")
+    public void flushDirtyCarts() {
+        List<Long> pending = new ArrayList<>(dirtyUsers);
+        for (int start = 0; start < pending.size(); start += flushBatchSize) {
+            List<Long> batchUsers = pending.subList(start, Math.min(start + flushBatchSize, pending.size()));
+            flushBatch(batchUsers);
+        }
+        evictIdleCarts();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        LOGGER.info("Flushing " + dirtyUsers.size() + " dirty carts before shutdown");
+        flushDirtyCarts();
+    }
+
+    /**
+     * Get the write-behind counters
+     *
+     * @return Map of mutation, flush and write counts, the number of carts in memory, and carts that
+     *         were reloaded or not written because another instance had written them
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("cartsInMemory", carts.size());
+        result.put("dirtyCarts", dirtyUsers.size());
+        result.put("mutations", mutations.get());
+        result.put("flushes", flushes.get());
+        result.put("cartsWritten", cartsWritten.get());
+        result.put("rowsWritten", rowsWritten.get());
+        result.put("flushFailures", flushFailures.get());
+        result.put("staleReloads", staleReloads.get());
+        result.put("conflicts", conflicts.get());
+        return result;
+    }
+
+    private void flushBatch(List<Long> batchUsers) {
+        // Take a consistent copy of each cart and mark it clean; later mutations mark it dirty again
+        Map<Long, UserCart> flushed = new LinkedHashMap<>();
+        Map<Long, List<CartItem>> snapshots = new LinkedHashMap<>();
+        Map<Long, Long> versions = new HashMap<>();
+        for (Long userId : batchUsers) {
+            dirtyUsers.remove(userId);
+            UserCart cart = carts.get(userId);
+            if (cart == null) {
+                continue;
+            }
+            synchronized (cart) {
+                if (!cart.dirty) {
+                    continue;
+                }
+                cart.dirty = false;
+                flushed.put(userId, cart);
+                snapshots.put(userId, snapshot(cart));
+                versions.put(userId, cart.version);
+            }
+        }
+        if (snapshots.isEmpty()) {
+            return;
+        }
+
+        Set<Long> written = new LinkedHashSet<>();
+        List<CartItem> rows = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                written.clear();
+                rows.clear();
+                // Carts another instance wrote since they were loaded here are left as that instance wrote them
+                for (Map.Entry<Long, List<CartItem>> entry : snapshots.entrySet()) {
+                    Long userId = entry.getKey();
+                    if (cartItemRepository.bumpCartVersion(userId, versions.get(userId)) == 0) {
+                        continue;
+                    }
+                    written.add(userId);
+                    entry.getValue().forEach(line -> {
+                        CartItem row = copyOf(line);
+                        row.setUserId(userId);
+                        rows.add(row);
+                    });
+                }
+                if (!written.isEmpty()) {
+                    cartItemRepository.deleteByUserIdIn(written);
+                    cartItemRepository.saveAll(rows);
+                }
+            });
+            flushes.incrementAndGet();
+            cartsWritten.addAndGet(written.size());
+            rowsWritten.addAndGet(rows.size());
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            LOGGER.log(Level.SEVERE, "Failed to flush " + snapshots.size() + " carts, will retry", e);
+            for (Long userId : snapshots.keySet()) {
+                UserCart cart = carts.get(userId);
+                if (cart != null) {
+                    synchronized (cart) {
+                        cart.dirty = true;
+                    }
+                    dirtyUsers.add(userId);
+                }
+            }
+            return;
+        }
+
+        flushed.forEach((userId, cart) -> {
+            synchronized (cart) {
+                if (written.contains(userId)) {
+                    cart.version = versions.get(userId) + 1;
+                    cart.versionCheckedAt = System.currentTimeMillis();
+                } else {
+                    cart.evicted = true;
+                    carts.remove(userId, cart);
+                    dirtyUsers.remove(userId);
+                    conflicts.incrementAndGet();
+                    LOGGER.warning("Cart of user " + userId + " was changed on another instance, dropping the changes made here");
+                }
+            }
+        });
+    }
+
+    private void evictIdleCarts() {
+        long cutoff = System.currentTimeMillis() - idleEvictionMillis;
+        carts.forEach((userId, cart) -> {
+            synchronized (cart) {
+                if (!cart.dirty && cart.lastAccess < cutoff) {
+                    cart.evicted = true;
+                    carts.remove(userId, cart);
+                }
+            }
+        });
+    }
+
+    // Run an action on the user's cart under its lock, loading the cart from the database if needed
+    private <R> R withCart(Long userId, boolean mutation, Function<UserCart, R> action) {
+        while (true) {
+            UserCart cart = carts.get(userId);
+            if (cart == null) {
+                // Loaded outside the map, so the queries do not hold up other users' carts; if another
+                // request installed the cart in the meantime, that copy is used and this one dropped
+                UserCart loaded = loadCart(userId);
+                cart = carts.putIfAbsent(userId, loaded);
+                if (cart == null) {
+                    cart = loaded;
+                }
+            }
+            synchronized (cart) {
+                if (cart.evicted) {
+                    continue; // dropped from memory between lookup and lock, load it again
+                }
+                // A dirty cart is checked when it is flushed instead
+                long now = System.currentTimeMillis();
+                if (!cart.dirty && now - cart.versionCheckedAt >= versionCheckIntervalMillis) {
+                    if (cart.version != savedVersion(userId)) {
+                        cart.evicted = true;
+                        carts.remove(userId, cart);
+                        staleReloads.incrementAndGet();
+                        continue; // written by another instance since it was loaded here
+                    }
+                    cart.versionCheckedAt = now;
+                }
+                cart.lastAccess = now;
+                R result = action.apply(cart);
+                if (mutation) {
+                    cart.dirty = true;
+                    dirtyUsers.add(userId);
+                    mutations.incrementAndGet();
+                }
+                return result;
+            }
+        }
+    }
+
+    private UserCart loadCart(Long userId) {
+        UserCart cart = new UserCart();
+        // Version before lines: lines newer than the version make the next flush conflict rather than overwrite
+        Long version = cartItemRepository.findCartVersion(userId);
+        if (version == null) {
+            try {
+                cartItemRepository.createCartVersion(userId);
+                version = 0L;
+            } catch (DataIntegrityViolationException e) {
+                // Created by another instance in the meantime
+                version = cartItemRepository.findCartVersion(userId);
+            }
+        }
+        cart.version = version != null ? version : 0;
+        for (CartItem item : cartItemRepository.findByUserIdOrderByIdAsc(userId)) {
+            cart.lines.put(item.getProductId(), copyOf(item));
+        }
+        return cart;
+    }
+
+    private long savedVersion(Long userId) {
+        Long version = cartItemRepository.findCartVersion(userId);
+        return version != null ? version : 0;
+    }
+
+    private void putLine(UserCart cart, Product product, int quantity) {
+        if (quantity > MAX_QUANTITY) {
+            throw new IllegalArgumentException("Quantity cannot be more than " + MAX_QUANTITY + " for product: " + product.getName());
+        }
+        if (!cart.lines.containsKey(product.getId()) && cart.lines.size() >= MAX_LINES) {
+            throw new IllegalArgumentException("A cart cannot have more than " + MAX_LINES + " products");
+        }
+        CartItem line = new CartItem();
+        line.setProductId(product.getId());
+        line.setName(product.getName());
+        line.setPrice(product.getPrice());
+        line.setImageUrl(product.getImageUrl());
+        line.setQuantity(quantity);
+        cart.lines.put(product.getId(), line);
+    }
+
+    private Product findProduct(Long productId) {
+        return productService.getProductById(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found: " + productId));
+    }
+
+    // Look up the products of a client cart, skipping products that no longer exist
+    private Map<Long, Product> findProducts(Map<Long, Integer> quantities) {
+        Map<Long, Product> products = new LinkedHashMap<>();
+        for (Long productId : quantities.keySet()) {
+            Optional<Product> product = productService.getProductById(productId);
+            if (product.isPresent()) {
+                products.put(productId, product.get());
+            } else {
+                LOGGER.info("Skipping unknown product " + productId + " in client cart");
+            }
+        }
+        return products;
+    }
+
+    private Map<Long, Integer> parseItems(List<Map<String, Object>> items) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        if (items == null) {
+            return quantities;
+        }
+        for (Map<String, Object> item : items) {
+            if (item.get("id") == null || item.get("quantity") == null) {
+                throw new IllegalArgumentException("Each cart item needs an id and a quantity");
+            }
+            try {
+                Long productId = Long.valueOf(item.get("id").toString());
+                int quantity = Integer.parseInt(item.get("quantity").toString());
+                if (quantity > 0) {
+                    quantities.merge(productId, quantity, Integer::sum);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cart item: " + item);
+            }
+        }
+        // Validate up front so a rejected cart leaves the saved cart untouched
+        if (quantities.size() > MAX_LINES) {
+            throw new IllegalArgumentException("A cart cannot have more than " + MAX_LINES + " products");
+        }
+        if (quantities.values().stream().anyMatch(quantity -> quantity > MAX_QUANTITY)) {
+            throw new IllegalArgumentException("Quantity cannot be more than " + MAX_QUANTITY);
+        }
+        return quantities;
+    }
+
+    private List<CartItem> snapshot(UserCart cart) {
+        List<CartItem> lines = new ArrayList<>(cart.lines.size());
+        cart.lines.values().forEach(line -> lines.add(copyOf(line)));
+        return lines;
+    }
+
+    private CartItem copyOf(CartItem line) {
+        return new CartItem(null, line.getUserId(), line.getProductId(), line.getName(),
+                line.getPrice(), line.getImageUrl(), line.getQuantity());
+    }
+}
@@ -0,0 +1,11 @@
+package com.dom_cheung.ecommerce_store.service;
+
+/**
+ * Thrown when the order ingestion queue is full; the client should retry later (HTTP 429).
+ */
+public class CheckoutQueueFullException extends RuntimeException {
+
+    public CheckoutQueueFullException(String message) {
+        super(message);
+    }
+}
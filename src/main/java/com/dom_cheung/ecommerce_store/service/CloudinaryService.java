@@ -1,30 +1,69 @@
 package com.dom_cheung.ecommerce_store.service;
 
 import com.cloudinary.Cloudinary;
+import com.cloudinary.api.ApiResponse;
+import com.cloudinary.api.exceptions.RateLimited;
 // It's good practice to keep ObjectUtils if you plan to use it for upload parameters
 // as shown in Cloudinary's official examples.
 import com.cloudinary.utils.ObjectUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Image storage on Cloudinary (store.image-storage.type=cloudinary, the default).
+ *
+ * Uploads never hold the whole file in memory. The multipart upload is already on disk (the servlet
+ * container spools every part to a temp file), and is moved to a file of our own and streamed from
+ * there. Files up to large-upload-threshold are sent in one request read straight from disk; bigger
+ * files go through Cloudinary's chunked upload, which reads and sends one chunk-size part at a time.
+ */
 @Service
-public class CloudinaryService {
+@ConditionalOnProperty(name = "store.image-storage.type", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryService implements ImageStorage {
 
     private static final Logger LOGGER = Logger.getLogger(CloudinaryService.class.getName());
 
+    // Cloudinary rejects chunks smaller than this, except for the last one
+    static final long MIN_CHUNK_SIZE = 5 * 1024 * 1024;
+
     @Autowired
     private Cloudinary cloudinary;
 
+    private final int chunkSize;
+    private final long largeUploadThreshold;
+
+    public CloudinaryService(@Value("${store.image-upload.chunk-size:6MB}") DataSize chunkSize,
+                             @Value("${store.image-upload.large-upload-threshold:20MB}") DataSize largeUploadThreshold) {
+        this.chunkSize = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_CHUNK_SIZE, chunkSize.toBytes()));
+        this.largeUploadThreshold = largeUploadThreshold.toBytes();
+    }
 
-    public Map<String, String> uploadFile(MultipartFile file, String folderName) throws IOException {
-        if (file == null || file.isEmpty()) {
+    /**
+     * Upload a file that is already on disk to Cloudinary; the file is left in place
+     *
+     * @param file File to upload
+     * @param originalFilename Name the file was uploaded under, for logging
+     * @param folderName Cloudinary folder to upload into, optional
+     * @return Map with the "secure_url" and "public_id" of the uploaded file
+     * @throws IllegalArgumentException if the file is empty
+     * @throws IOException if the file cannot be read or the upload fails
+     */
+    @Override
+    public Map<String, String> uploadFile(Path file, String originalFilename, String folderName) throws IOException {
+        long size = Files.size(file);
+        if (size == 0) {
             throw new IllegalArgumentException("File to upload is empty or null.");
         }
 
@@ -35,18 +74,19 @@ public class CloudinaryService {
             uploadParams.put("folder", folderName.trim());
         }
 
-        LOGGER.info("Attempting to upload file: " + file.getOriginalFilename() + " with params: " + uploadParams);
+        boolean chunked = size > largeUploadThreshold;
+        LOGGER.info("Attempting to upload file: " + originalFilename + " (" + size + " bytes"
+                + (chunked ? ", in chunks of " + chunkSize : "") + ") with params: " + uploadParams);
 
         Map uploadResult;
         try {
-            uploadResult = cloudinary.uploader().upload(file.getBytes(),
-                    ObjectUtils.asMap(
-                            "resource_type", "auto",
-                            "folder", (folderName != null && !folderName.trim().isEmpty()) ? folderName.trim() : null
-                    )
-            );
+            if (chunked) {
+                uploadResult = cloudinary.uploader().uploadLarge(file.toFile(), uploadParams, chunkSize);
+            } else {
+                uploadResult = cloudinary.uploader().upload(file.toFile(), uploadParams);
+            }
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Cloudinary upload failed for file: " + file.getOriginalFilename(), e);
+            LOGGER.log(Level.SEVERE, "Cloudinary upload failed for file: " + originalFilename, e);
             throw new IOException("Cloudinary upload failed: " + e.getMessage(), e);
         }
 
@@ -78,4 +118,35 @@ public class CloudinaryService {
             LOGGER.log(Level.SEVERE, "Error deleting file from Cloudinary with public_id '" + publicId + "': " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Delete several files from Cloudinary in one Admin API call
+     *
+     * @param publicIds Public IDs of the files, at most MAX_BULK_DELETE
+     * @return Map of public ID to Cloudinary's result for it ("deleted", "not_found", ...)
+     * @throws ImageStorageRateLimitedException if the Admin API rate limit has been reached
+     * @throws IOException if the request fails
+     */
+    @Override
+    public Map<String, String> deleteFiles(List<String> publicIds) throws IOException {
+        if (publicIds.size() > MAX_BULK_DELETE) {
+            throw new IllegalArgumentException("At most " + MAX_BULK_DELETE + " files can be deleted at once");
+        }
+        ApiResponse response;
+        try {
+            response = cloudinary.api().deleteResources(publicIds, ObjectUtils.emptyMap());
+        } catch (RateLimited e) {
+            throw new ImageStorageRateLimitedException("Cloudinary rate limit reached: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new IOException("Cloudinary bulk delete failed: " + e.getMessage(), e);
+        }
+
+        Map<String, String> result = new HashMap<>();
+        Object deleted = response.get("deleted");
+        if (deleted instanceof Map<?, ?> deletedMap) {
+            deletedMap.forEach((publicId, status) -> result.put(String.valueOf(publicId), String.valueOf(status)));
+        }
+        LOGGER.info("Cloudinary bulk delete of " + publicIds.size() + " files: " + result);
+        return result;
+    }
+}
@@ -0,0 +1,243 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Responses of requests sent with an Idempotency-Key header, so a retried request gets the original
+ * response instead of running again.
+ *
+ * Keys are scoped per user and kept in the idempotency_keys table for the configured TTL together with
+ * a fingerprint of the request body; reusing a key with a different body is rejected. The first request
+ * claims the key by inserting its row, so a retry reaching another instance finds it as well: while the
+ * first request is still running the retry polls the row and then replays the stored response. Client
+ * errors and 429 changed nothing, so their key is forgotten and the client can send it again, also with
+ * a corrected body. A server error is kept like a success, because the order may have been committed
+ * before it failed; running the request again could place it twice. A key whose first request never
+ * finished (its instance stopped) answers 409 until it expires.
+ */
+@Service
+public class IdempotencyStore {
+
+    private static final Logger LOGGER = Logger.getLogger(IdempotencyStore.class.getName());
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    // How often a retry looks at the row of a request that is still running
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    // Sorted keys so the same JSON body always gives the same fingerprint
+    private static final ObjectMapper CANONICAL_JSON = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private record StoredResponse(String fingerprint, Integer statusCode, String body) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Spring's mapper, which writes the dates in the response bodies the same way the controllers do
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Duration ttl;
+
+    private final long waitTimeoutMillis;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+
+    public IdempotencyStore(@Value("${store.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${store.idempotency.wait-timeout-ms:30000}") long waitTimeoutMillis) {
+        this.ttl = ttl;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        LOGGER.info("Idempotency store ttl=" + ttl);
+    }
+
+    /**
+     * Run a request once per idempotency key
+     *
+     * @param userId Owner of the key, so keys of different users never collide
+     * @param key Value of the Idempotency-Key header
+     * @param requestBody Request body, fingerprinted to detect a key reused for a different request
+     * @param action Handles the request when the key is new
+     * @return The response of the first request with this key, 400/422 for an invalid or reused key, or
+     *         409 while the first request is still running after the wait timeout
+     */
+    public ResponseEntity<?> execute(Long userId, String key, Object requestBody, Supplier<ResponseEntity<?>> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters")
+            );
+        }
+
+        String fingerprint = fingerprint(requestBody);
+        long deadline = System.nanoTime() + waitTimeoutMillis * 1_000_000;
+        while (true) {
+            if (claim(userId, key, fingerprint)) {
+                return runFirst(userId, key, action);
+            }
+
+            StoredResponse stored = find(userId, key);
+            if (stored == null) {
+                // Forgotten since (the first request was rejected, or the key expired): claim it again
+                continue;
+            }
+            if (!stored.fingerprint().equals(fingerprint)) {
+                mismatched.increment();
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(
+                        Map.of("message", HEADER + " was already used for a different request")
+                );
+            }
+            if (stored.statusCode() != null) {
+                replayed.increment();
+                return ResponseEntity.status(stored.statusCode())
+                        .header(REPLAYED_HEADER, "true")
+                        .body(readBody(stored.body()));
+            }
+
+            // Same request again while the first one is still running, here or on another instance
+            if (System.nanoTime() > deadline) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                        Map.of("message", "A request with this " + HEADER + " is still being processed")
+                );
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        }
+    }
+
+    /**
+     * Delete the keys older than the TTL
+     */
+    @Scheduled(fixedDelayString = "${store.idempotency.purge-interval-ms:3600000}",
+            initialDelayString = "${store.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int purged = jdbcTemplate.update("delete from idempotency_keys where created_at < ?",
+                    Timestamp.valueOf(LocalDateTime.now().minus(ttl)));
+            if (purged > 0) {
+                LOGGER.info("Purged " + purged + " expired idempotency keys");
+            }
+        } catch (DataAccessException e) {
+            LOGGER.log(Level.WARNING, "Failed to purge expired idempotency keys", e);
+        }
+    }
+
+    /**
+     * Get the store counters
+     *
+     * @return Map of executed, replayed and mismatched request counts plus the number of stored keys
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("keys", jdbcTemplate.queryForObject("select count(*) from idempotency_keys", Long.class));
+        result.put("executed", executed.sum());
+        result.put("replayed", replayed.sum());
+        result.put("mismatched", mismatched.sum());
+        return result;
+    }
+
+    // Insert the key's row, replacing an expired one; false when the key is already taken
+    private boolean claim(Long userId, String key, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("delete from idempotency_keys where user_id = ? and idempotency_key = ? and created_at < ?",
+                userId, key, Timestamp.valueOf(now.minus(ttl)));
+        try {
+            jdbcTemplate.update("insert into idempotency_keys (user_id, idempotency_key, fingerprint, created_at) "
+                    + "values (?, ?, ?, ?)", userId, key, fingerprint, Timestamp.valueOf(now));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private StoredResponse find(Long userId, String key) {
+        List<StoredResponse> rows = jdbcTemplate.query(
+                "select fingerprint, status_code, response_body from idempotency_keys where user_id = ? and idempotency_key = ?",
+                (rs, rowNum) -> new StoredResponse(rs.getString(1), (Integer) rs.getObject(2), rs.getString(3)),
+                userId, key);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private ResponseEntity<?> runFirst(Long userId, String key, Supplier<ResponseEntity<?>> action) {
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // Failed after the order may have been committed: retries get a server error, not a second order
+            complete(userId, key, HttpStatus.INTERNAL_SERVER_ERROR.value(), null);
+            throw e;
+        }
+        executed.increment();
+
+        if (response.getStatusCode().is4xxClientError()) {
+            // Rejected before anything was written: forget the key and let retries run the request themselves
+            jdbcTemplate.update("delete from idempotency_keys where user_id = ? and idempotency_key = ?", userId, key);
+        } else {
+            complete(userId, key, response.getStatusCode().value(), response.getBody());
+        }
+        return response;
+    }
+
+    private void complete(Long userId, String key, int statusCode, Object body) {
+        try {
+            jdbcTemplate.update("update idempotency_keys set status_code = ?, response_body = ? "
+                    + "where user_id = ? and idempotency_key = ?", statusCode, objectMapper.writeValueAsString(body), userId, key);
+        } catch (JsonProcessingException | DataAccessException e) {
+            // The key stays claimed without a response, so retries answer 409 until it expires
+            LOGGER.log(Level.SEVERE, "Failed to store the response for idempotency key " + key, e);
+        }
+    }
+
+    private Object readBody(String body) {
+        try {
+            return body == null ? null : objectMapper.readValue(body, Object.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response cannot be read", e);
+        }
+    }
+
+    private static String fingerprint(Object requestBody) {
+        try {
+            byte[] json = CANONICAL_JSON.writeValueAsBytes(requestBody);
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json);
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body cannot be fingerprinted", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
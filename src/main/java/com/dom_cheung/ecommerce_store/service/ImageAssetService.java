@@ -0,0 +1,230 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores product images content-addressed, so an image that is uploaded again (the same photo on a
+ * product edit, a catalog re-import) reuses the stored copy instead of being uploaded once more.
+ *
+ * The file is hashed with SHA-256 in one streaming pass before it is sent anywhere, and the digest is
+ * looked up in the image_assets table. On a hit the stored image's reference count goes up and nothing
+ * is uploaded; on a miss the file is uploaded and indexed with a count of one. Every product using the
+ * image holds one reference, which it gives back with release: the image is only queued for deletion
+ * once the last reference is gone. Images uploaded before the index existed have no row and are
+ * treated as used by one product.
+ *
+ * Counts are only ever changed by single conditional statements, so several instances can share the
+ * table: a count never drops to zero in place (the row is deleted instead), and when two uploads of the
+ * same new image race, the loser queues its own copy for deletion and takes a reference on the winner's.
+ */
+@Service
+public class ImageAssetService {
+
+    private static final Logger LOGGER = Logger.getLogger(ImageAssetService.class.getName());
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private ImageDeletionService imageDeletionService;
+
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong bytesReused = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong orphaned = new AtomicLong();
+    private final AtomicLong raceLost = new AtomicLong();
+
+    /**
+     * Store an uploaded file, or take a reference on the stored copy of identical content
+     *
+     * @param file Uploaded file
+     * @param folderName Folder to store it in, optional
+     * @return Map with the "secure_url" and "public_id" of the image; the caller holds one reference on it
+     * @throws IllegalArgumentException if the file is missing or empty
+     * @throws IOException if the file cannot be read or stored
+     */
+    public Map<String, String> store(MultipartFile file, String folderName) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("File to upload is empty or null.");
+        }
+
+        // Usually a rename of the container's temp file, otherwise a buffered copy on disk
+        Path upload = Files.createTempFile("image-upload-", ".tmp");
+        try {
+            file.transferTo(upload);
+            return store(upload, file.getOriginalFilename(), folderName);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    /**
+     * Store a file that is already on disk, or take a reference on the stored copy of identical content
+     *
+     * @param file File to store; it is left in place
+     * @param originalFilename Name the file was uploaded under
+     * @param folderName Folder to store it in, optional
+     * @return Map with the "secure_url" and "public_id" of the image; the caller holds one reference on it
+     * @throws IllegalArgumentException if the file is empty
+     * @throws IOException if the file cannot be read or stored
+     */
+    public Map<String, String> store(Path file, String originalFilename, String folderName) throws IOException {
+        long size = Files.size(file);
+        if (size == 0) {
+            throw new IllegalArgumentException("File to upload is empty or null.");
+        }
+        String digest = digest(file);
+
+        Map<String, String> existing = acquire(digest);
+        if (existing != null) {
+            reused.incrementAndGet();
+            bytesReused.addAndGet(size);
+            LOGGER.info("Image " + originalFilename + " is already stored as " + existing.get("public_id") + ", not uploading it again");
+            return existing;
+        }
+
+        Map<String, String> result = imageStorage.uploadFile(file, originalFilename, folderName);
+        uploaded.incrementAndGet();
+        try {
+            jdbcTemplate.update("insert into image_assets (digest, public_id, secure_url, size_bytes, ref_count, created_at) "
+                            + "values (?, ?, ?, ?, 1, ?)", digest, result.get("public_id"), result.get("secure_url"),
+                    size, Timestamp.valueOf(LocalDateTime.now()));
+            return result;
+        } catch (DuplicateKeyException e) {
+            // The same image was uploaded concurrently and indexed first: use that copy, drop ours
+            existing = acquire(digest);
+            if (existing == null) {
+                // ...and already released again; keep ours, unindexed
+                return result;
+            }
+            raceLost.incrementAndGet();
+            imageDeletionService.enqueue(result.get("public_id"));
+            return existing;
+        } catch (DataAccessException e) {
+            // Still a usable image, only without reuse
+            LOGGER.log(Level.WARNING, "Could not index image " + result.get("public_id"), e);
+            return result;
+        }
+    }
+
+    /**
+     * Give back a reference taken by store; the image is queued for deletion when it was the last one,
+     * or right away if the image is not in the index. A failure is logged, not thrown, so it cannot fail
+     * the product write that let go of the image.
+     *
+     * @param publicId Public ID of the image; null or blank is ignored
+     */
+    public void release(String publicId) {
+        if (publicId == null || publicId.isBlank()) {
+            return;
+        }
+        try {
+            // Another instance may change the count between the two statements; then try again
+            while (true) {
+                if (jdbcTemplate.update("delete from image_assets where public_id = ? and ref_count = 1", publicId) > 0) {
+                    break;
+                }
+                if (jdbcTemplate.update("update image_assets set ref_count = ref_count - 1 "
+                        + "where public_id = ? and ref_count > 1", publicId) > 0) {
+                    released.incrementAndGet();
+                    return;
+                }
+                Integer rows = jdbcTemplate.queryForObject("select count(*) from image_assets where public_id = ?",
+                        Integer.class, publicId);
+                if (rows == null || rows == 0) {
+                    break;
+                }
+            }
+        } catch (DataAccessException e) {
+            LOGGER.log(Level.SEVERE, "Could not release image " + publicId + ", it is kept", e);
+            return;
+        }
+        released.incrementAndGet();
+        orphaned.incrementAndGet();
+        imageDeletionService.enqueue(publicId);
+    }
+
+    /**
+     * Get the deduplication counters
+     *
+     * @return Map of indexed images and their references, uploads made and skipped, bytes not uploaded
+     *         again, references released and images that lost their last reference
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        Map<String, Object> index = jdbcTemplate.queryForMap(
+                "select count(*) as images, coalesce(sum(ref_count), 0) as refs, coalesce(sum(size_bytes), 0) as bytes "
+                        + "from image_assets");
+        result.put("indexedImages", ((Number) index.get("images")).longValue());
+        result.put("references", ((Number) index.get("refs")).longValue());
+        result.put("indexedBytes", ((Number) index.get("bytes")).longValue());
+        result.put("uploaded", uploaded.get());
+        result.put("reused", reused.get());
+        result.put("bytesReused", bytesReused.get());
+        result.put("released", released.get());
+        result.put("orphaned", orphaned.get());
+        result.put("raceLost", raceLost.get());
+        return result;
+    }
+
+    // Take a reference on the indexed image with this digest, if there is one
+    private Map<String, String> acquire(String digest) {
+        if (jdbcTemplate.update("update image_assets set ref_count = ref_count + 1 where digest = ?", digest) == 0) {
+            return null;
+        }
+        // The row stays while we hold our reference
+        List<Map<String, String>> rows = jdbcTemplate.query("select public_id, secure_url from image_assets where digest = ?",
+                (rs, rowNum) -> {
+                    Map<String, String> image = new HashMap<>();
+                    image.put("public_id", rs.getString("public_id"));
+                    image.put("secure_url", rs.getString("secure_url"));
+                    return image;
+                }, digest);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Hex SHA-256 of the file, read in one pass through a fixed buffer
+    static String digest(Path file) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                sha256.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+}
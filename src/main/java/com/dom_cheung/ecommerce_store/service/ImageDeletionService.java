@@ -0,0 +1,291 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deletes images that no product uses any more (replaced, cleared or deleted with their product).
+ *
+ * Product writes only insert the public ID into the image_deletions table, so they never wait on the
+ * image storage and the deletion survives a restart. Every interval-ms a worker claims the due rows,
+ * batch-size at a time, and deletes each batch with one bulk-delete call. Rows are claimed with a
+ * conditional update, so several instances can drain the same table without deleting twice.
+ *
+ * The work per run is capped at max-requests-per-run calls. When the storage reports its rate limit,
+ * the worker pauses for rate-limit-pause, and the batch is retried afterwards without counting an
+ * attempt. Any other failure is retried after a backoff that doubles from initial-backoff up to
+ * max-backoff. After max-attempts the row is kept with the last error but no longer retried.
+ *
+ * The worker has a thread of its own, like the image uploads, so the remote calls and rate-limit
+ * pauses never hold up the jobs on the shared scheduler.
+ */
+@Service
+public class ImageDeletionService {
+
+    private static final Logger LOGGER = Logger.getLogger(ImageDeletionService.class.getName());
+
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    // How long a claimed batch is reserved for the instance that claimed it
+    private static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(5);
+
+    private record Deletion(long id, String publicId, int attempts, Timestamp nextAttemptAt) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    private final int batchSize;
+    private final int maxRequestsPerRun;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Duration rateLimitPause;
+
+    @Value("${store.image-deletion.interval-ms:30000}")
+    private long intervalMillis = 30000;
+
+    private ScheduledExecutorService worker;
+
+    private volatile LocalDateTime pausedUntil;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong gaveUp = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    public ImageDeletionService(@Value("${store.image-deletion.batch-size:100}") int batchSize,
+                                @Value("${store.image-deletion.max-requests-per-run:2}") int maxRequestsPerRun,
+                                @Value("${store.image-deletion.max-attempts:10}") int maxAttempts,
+                                @Value("${store.image-deletion.initial-backoff:1m}") Duration initialBackoff,
+                                @Value("${store.image-deletion.max-backoff:6h}") Duration maxBackoff,
+                                @Value("${store.image-deletion.rate-limit-pause:15m}") Duration rateLimitPause) {
+        this.batchSize = Math.max(1, Math.min(batchSize, ImageStorage.MAX_BULK_DELETE));
+        this.maxRequestsPerRun = Math.max(1, maxRequestsPerRun);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.rateLimitPause = rateLimitPause;
+    }
+
+    /**
+     * Queue an image for deletion. Inside a transaction the row is only kept if the transaction commits.
+     * A failure to queue is logged, not thrown, so it cannot fail the product write that orphaned the image.
+     *
+     * @param publicId Public ID of the image; null or blank is ignored
+     */
+    public void enqueue(String publicId) {
+        if (publicId == null || publicId.isBlank()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            jdbcTemplate.update("insert into image_deletions (public_id, enqueued_at, attempts, next_attempt_at) "
+                    + "values (?, ?, 0, ?)", publicId, now, now);
+            enqueued.incrementAndGet();
+        } catch (DataAccessException e) {
+            LOGGER.log(Level.SEVERE, "Could not queue image " + publicId + " for deletion, it has to be deleted by hand", e);
+        }
+    }
+
+    /**
+     * Start draining the queue every interval-ms
+     */
+    @PostConstruct
+    public void start() {
+        worker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("image-deletion-", 0).factory());
+        worker.scheduleWithFixedDelay(() -> {
+            try {
+                drain();
+            } catch (RuntimeException e) {
+                // Keep the worker scheduled; the rows are due again on the next run
+                LOGGER.log(Level.SEVERE, "Image deletion run failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        worker.shutdownNow();
+        worker.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Delete the due images, up to max-requests-per-run batches
+     */
+    public synchronized void drain() {
+        for (int request = 0; request < maxRequestsPerRun; request++) {
+            LocalDateTime now = LocalDateTime.now();
+            if (pausedUntil != null && now.isBefore(pausedUntil)) {
+                return;
+            }
+            List<Deletion> batch = claim(now);
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (!delete(batch)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the deletion queue counters
+     *
+     * @return Map of queued and abandoned rows, images deleted and not found, retries, requests made and
+     *         rate-limit pauses
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("queued", jdbcTemplate.queryForObject(
+                "select count(*) from image_deletions where next_attempt_at is not null", Long.class));
+        result.put("abandoned", jdbcTemplate.queryForObject(
+                "select count(*) from image_deletions where next_attempt_at is null", Long.class));
+        result.put("enqueued", enqueued.get());
+        result.put("deleted", deleted.get());
+        result.put("notFound", notFound.get());
+        result.put("retries", retries.get());
+        result.put("gaveUp", gaveUp.get());
+        result.put("requests", requests.get());
+        result.put("rateLimited", rateLimited.get());
+        result.put("pausedUntil", pausedUntil);
+        return result;
+    }
+
+    // Reserve up to batch-size due rows; rows another instance claimed first are left out
+    private List<Deletion> claim(LocalDateTime now) {
+        Timestamp nowTimestamp = Timestamp.valueOf(now);
+        List<Deletion> due = jdbcTemplate.query(
+                "select id, public_id, attempts, next_attempt_at from image_deletions "
+                        + "where next_attempt_at <= ? order by next_attempt_at, id limit ?",
+                (rs, rowNum) -> new Deletion(rs.getLong("id"), rs.getString("public_id"),
+                        rs.getInt("attempts"), rs.getTimestamp("next_attempt_at")),
+                nowTimestamp, batchSize);
+        if (due.isEmpty()) {
+            return due;
+        }
+
+        Timestamp claimedUntil = Timestamp.valueOf(now.plus(CLAIM_TIMEOUT));
+        int[] counts = jdbcTemplate.batchUpdate(
+                "update image_deletions set next_attempt_at = ? where id = ? and next_attempt_at = ?",
+                due, due.size(), (ps, deletion) -> {
+                    ps.setTimestamp(1, claimedUntil);
+                    ps.setLong(2, deletion.id());
+                    ps.setTimestamp(3, deletion.nextAttemptAt());
+                })[0];
+        List<Deletion> claimed = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 1) {
+                claimed.add(due.get(i));
+            }
+        }
+        return claimed;
+    }
+
+    // Delete one claimed batch; false if the run should stop because the storage is rate limiting us
+    private boolean delete(List<Deletion> batch) {
+        List<String> publicIds = batch.stream().map(Deletion::publicId).distinct().toList();
+        Map<String, String> results;
+        requests.incrementAndGet();
+        try {
+            results = imageStorage.deleteFiles(publicIds);
+        } catch (ImageStorageRateLimitedException e) {
+            rateLimited.incrementAndGet();
+            pausedUntil = LocalDateTime.now().plus(rateLimitPause);
+            LOGGER.warning("Image storage rate limit reached, pausing deletions until " + pausedUntil);
+            // Not an attempt of these rows: due again once the pause is over
+            reschedule(batch, pausedUntil, false, e.getMessage());
+            return false;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Bulk delete of " + publicIds.size() + " images failed", e);
+            retry(batch, e.getMessage());
+            return true;
+        }
+
+        List<Deletion> done = new ArrayList<>();
+        List<Deletion> failed = new ArrayList<>();
+        for (Deletion deletion : batch) {
+            String result = results.get(deletion.publicId());
+            if ("deleted".equals(result)) {
+                deleted.incrementAndGet();
+                done.add(deletion);
+            } else if ("not_found".equals(result)) {
+                // Already gone, e.g. deleted by hand or queued twice
+                notFound.incrementAndGet();
+                done.add(deletion);
+            } else {
+                failed.add(deletion);
+            }
+        }
+        jdbcTemplate.batchUpdate("delete from image_deletions where id = ?", done, done.size(),
+                (ps, deletion) -> ps.setLong(1, deletion.id()));
+        retry(failed, "Image storage answered: " + failed.stream().map(d -> results.get(d.publicId())).distinct().toList());
+        return true;
+    }
+
+    private void retry(List<Deletion> deletions, String error) {
+        if (deletions.isEmpty()) {
+            return;
+        }
+        retries.addAndGet(deletions.size());
+        reschedule(deletions, null, true, error);
+    }
+
+    // Set when rows are due next; with counting, each row's backoff follows its own attempts
+    private void reschedule(List<Deletion> deletions, LocalDateTime nextAttemptAt, boolean countAttempt, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        String message = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        jdbcTemplate.batchUpdate(
+                "update image_deletions set attempts = ?, next_attempt_at = ?, last_error = ? where id = ?",
+                deletions, deletions.size(), (ps, deletion) -> {
+                    int attempts = countAttempt ? deletion.attempts() + 1 : deletion.attempts();
+                    Timestamp next;
+                    if (!countAttempt) {
+                        next = Timestamp.valueOf(nextAttemptAt);
+                    } else if (attempts >= maxAttempts) {
+                        next = null;
+                        gaveUp.incrementAndGet();
+                        LOGGER.severe("Giving up deleting image " + deletion.publicId() + " after " + attempts
+                                + " attempts: " + message);
+                    } else {
+                        next = Timestamp.valueOf(now.plusNanos(backoffMillis(attempts) * 1_000_000));
+                    }
+                    ps.setInt(1, attempts);
+                    ps.setTimestamp(2, next);
+                    ps.setString(3, message);
+                    ps.setLong(4, deletion.id());
+                });
+    }
+
+    // initial-backoff doubled for every failed attempt so far, capped at max-backoff
+    long backoffMillis(int failedAttempts) {
+        long delay = initialBackoffMillis << Math.min(failedAttempts - 1, 30);
+        return delay < 0 ? maxBackoffMillis : Math.min(delay, maxBackoffMillis);
+    }
+}
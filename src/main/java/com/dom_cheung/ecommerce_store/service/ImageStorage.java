@@ -0,0 +1,67 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where product images are stored and served from, selected with store.image-storage.type:
+ * "cloudinary" (CloudinaryService, the default) or "local" (LocalImageStorage, files on this server).
+ *
+ * An image is identified by the public ID returned when it is uploaded; its URL is stored on the product.
+ */
+public interface ImageStorage {
+
+    // Most public IDs deleteFiles accepts in one call
+    int MAX_BULK_DELETE = 100;
+
+    /**
+     * Store a file that is already on disk; the file is left in place
+     *
+     * @param file File to store
+     * @param originalFilename Name the file was uploaded under
+     * @param folderName Folder to store it in, optional
+     * @return Map with the "secure_url" and "public_id" of the stored file
+     * @throws IllegalArgumentException if the file is empty
+     * @throws IOException if the file cannot be read or stored
+     */
+    Map<String, String> uploadFile(Path file, String originalFilename, String folderName) throws IOException;
+
+    /**
+     * Delete several files at once
+     *
+     * @param publicIds Public IDs of the files, at most MAX_BULK_DELETE
+     * @return Map of public ID to the result for it: "deleted", "not_found" or an error
+     * @throws ImageStorageRateLimitedException if the storage is rate limiting requests
+     * @throws IOException if the request fails
+     */
+    Map<String, String> deleteFiles(List<String> publicIds) throws IOException;
+
+    /**
+     * Store an uploaded file, streamed from disk
+     *
+     * @param file Uploaded file
+     * @param folderName Folder to store it in, optional
+     * @return Map with the "secure_url" and "public_id" of the stored file
+     * @throws IllegalArgumentException if the file is missing or empty
+     * @throws IOException if the file cannot be stored
+     */
+    default Map<String, String> uploadFile(MultipartFile file, String folderName) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("File to upload is empty or null.");
+        }
+
+        // Usually a rename of the container's temp file, otherwise a buffered copy on disk
+        Path upload = Files.createTempFile("image-upload-", ".tmp");
+        try {
+            file.transferTo(upload);
+            return uploadFile(upload, file.getOriginalFilename(), folderName);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the image storage refuses a request because its API rate limit has been reached; the
+ * request should not be retried before the limit resets.
+ */
+public class ImageStorageRateLimitedException extends IOException {
+
+    public ImageStorageRateLimitedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.dom_cheung.ecommerce_store.service;
+
+/**
+ * Thrown when as many background image uploads are in progress as the queue holds; the client should
+ * retry later (HTTP 503).
+ */
+public class ImageUploadQueueFullException extends RuntimeException {
+
+    public ImageUploadQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,140 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stock reservation for checkout against the products table.
+ *
+ * Each line of a cart whose product tracks stock (Product.stock not null) is taken with one
+ * conditional update, stock = stock - quantity where stock >= quantity, in the checkout's own
+ * transaction. The database decides, so no two checkouts can sell the same unit, whichever instance
+ * they run on. Lines are taken in product id order, so checkouts of the same products lock the rows in
+ * the same order. A line that is short hands back the lines of the same order taken before it and
+ * rejects the order, leaving the rest of the transaction (the other orders of a group-commit batch)
+ * alone; a transaction that rolls back undoes its updates with it.
+ *
+ * Product saves never write the stock column: cancellations give stock back with relative updates and
+ * the admin page sets it with an absolute one. Cached copies of the products (ProductCache) are dropped
+ * once a stock change commits.
+ */
+@Service
+public class InventoryService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicLong reservations = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+
+    /**
+     * Reserve stock for every line of an order, or for none of them.
+     * Inside a transaction the reservation is part of it, and undone if the transaction rolls back.
+     *
+     * @param quantities Product ID -> quantity to reserve
+     * @param products Product ID -> product, as just read from the database
+     * @throws IllegalArgumentException if a product does not have enough stock
+     */
+    public void reserve(Map<Long, Integer> quantities, Map<Long, Product> products) {
+        Map<Long, Integer> tracked = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            if (product != null && product.getStock() != null) {
+                tracked.put(productId, quantity);
+            }
+        });
+        if (tracked.isEmpty()) {
+            return;
+        }
+
+        // The shortage is reported outside the template: an exception inside it would mark a
+        // surrounding transaction rollback-only, failing the other orders written with this one
+        Product shortOf = transactionTemplate.execute(status -> {
+            Map<Long, Integer> taken = new HashMap<>();
+            for (Map.Entry<Long, Integer> line : tracked.entrySet()) {
+                if (productRepository.reserveStock(line.getKey(), line.getValue()) == 0) {
+                    taken.forEach((productId, quantity) -> productRepository.decrementStock(productId, -quantity));
+                    return products.get(line.getKey());
+                }
+                taken.put(line.getKey(), line.getValue());
+            }
+            return null;
+        });
+        if (shortOf != null) {
+            rejections.incrementAndGet();
+            throw new IllegalArgumentException("Not enough stock for product: " + shortOf.getName());
+        }
+        reservations.incrementAndGet();
+        invalidateOnCommit(List.copyOf(tracked.keySet()));
+    }
+
+    /**
+     * Return the stock of an order's lines, e.g. when the order is cancelled.
+     * Inside a transaction the stock only comes back if the transaction commits.
+     *
+     * @param quantities Product ID -> quantity to return
+     */
+    public void release(Map<Long, Integer> quantities) {
+        transactionTemplate.executeWithoutResult(status ->
+                new TreeMap<>(quantities).forEach((productId, quantity) -> productRepository.decrementStock(productId, -quantity)));
+        releases.incrementAndGet();
+        invalidateOnCommit(List.copyOf(quantities.keySet()));
+    }
+
+    /**
+     * Set the stock on hand of a product, e.g. after a stock count
+     *
+     * @param productId Product ID
+     * @param stock New stock on hand
+     */
+    public void setStock(long productId, int stock) {
+        transactionTemplate.executeWithoutResult(status -> productRepository.setStock(productId, stock));
+        invalidateOnCommit(List.of(productId));
+    }
+
+    /**
+     * Get the reservation counters
+     *
+     * @return Map of reservation, rejection and release counts
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("reservations", reservations.get());
+        result.put("rejections", rejections.get());
+        result.put("releases", releases.get());
+        return result;
+    }
+
+    // Drop cached copies once the change is visible, so a reload in between cannot cache the old stock
+    private void invalidateOnCommit(Collection<Long> productIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    productIds.forEach(productCache::invalidate);
+                }
+            });
+        } else {
+            productIds.forEach(productCache::invalidate);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Image storage in a directory on this server (store.image-storage.type=local), for running offline,
+ * load tests and self-hosted installations. Files are served by LocalImageController under base-url.
+ *
+ * Every upload gets a new public ID (folder/random-uuid.ext) and is moved into place atomically once
+ * fully written, so a stored file never changes; that is what lets it be served with a strong ETag and
+ * cached for a year. Deleting is a local file delete, so there is nothing to rate limit.
+ */
+@Service
+@ConditionalOnProperty(name = "store.image-storage.type", havingValue = "local")
+public class LocalImageStorage implements ImageStorage {
+
+    private static final Logger LOGGER = Logger.getLogger(LocalImageStorage.class.getName());
+
+    private static final Pattern FOLDER = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,10}");
+    private static final Pattern PUBLIC_ID = Pattern.compile("[A-Za-z0-9_-]+(/[A-Za-z0-9_-]+)*(\\.[a-z0-9]+)?");
+
+    private final Path root;
+    private final String baseUrl;
+
+    public LocalImageStorage(@Value("${store.image-storage.local.directory:data/images}") Path directory,
+                             @Value("${store.image-storage.local.base-url:/media/}") String baseUrl) throws IOException {
+        this.root = directory.toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        Files.createDirectories(root);
+        LOGGER.info("Storing images in " + root + ", served under " + this.baseUrl);
+    }
+
+    /**
+     * Copy a file into the storage directory
+     *
+     * @param file File to store
+     * @param originalFilename Name the file was uploaded under; its extension is kept
+     * @param folderName Folder to store it in (letters, digits, '_' and '-'), optional
+     * @return Map with the "secure_url" (base-url + public ID) and "public_id" of the stored file
+     * @throws IllegalArgumentException if the file is empty or the folder name is not allowed
+     * @throws IOException if the file cannot be copied
+     */
+    @Override
+    public Map<String, String> uploadFile(Path file, String originalFilename, String folderName) throws IOException {
+        if (Files.size(file) == 0) {
+            throw new IllegalArgumentException("File to upload is empty or null.");
+        }
+        String folder = folderName != null ? folderName.trim() : "";
+        if (!folder.isEmpty() && !FOLDER.matcher(folder).matches()) {
+            throw new IllegalArgumentException("Invalid folder name: " + folderName);
+        }
+
+        String publicId = (folder.isEmpty() ? "" : folder + "/") + UUID.randomUUID() + extension(originalFilename);
+        Path target = resolve(publicId);
+        Files.createDirectories(target.getParent());
+
+        // Written next to the target and renamed, so the file is never seen half written
+        Path partial = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(file, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        LOGGER.info("Stored image " + originalFilename + " as " + publicId);
+
+        Map<String, String> result = new HashMap<>();
+        result.put("secure_url", baseUrl + publicId);
+        result.put("public_id", publicId);
+        return result;
+    }
+
+    /**
+     * Delete stored files
+     *
+     * @param publicIds Public IDs of the files
+     * @return Map of public ID to "deleted", "not_found", or "invalid" for IDs this storage never issues
+     * @throws IOException if a file cannot be deleted
+     */
+    @Override
+    public Map<String, String> deleteFiles(List<String> publicIds) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        for (String publicId : publicIds) {
+            Path file = resolve(publicId);
+            if (file == null) {
+                result.put(publicId, "invalid");
+            } else {
+                result.put(publicId, Files.deleteIfExists(file) ? "deleted" : "not_found");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the file of a public ID
+     *
+     * @param publicId Public ID, as returned by uploadFile
+     * @return Path of the file inside the storage directory (it may not exist), or null if the ID is not
+     *         one this storage issues, which includes anything pointing outside the directory
+     */
+    public Path resolve(String publicId) {
+        if (publicId == null || !PUBLIC_ID.matcher(publicId).matches()) {
+            return null;
+        }
+        Path file = root.resolve(publicId).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    // ".png" for "photo.PNG"; nothing for names without a usable extension
+    private static String extension(String filename) {
+        if (filename == null || filename.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(extension).matches() ? "." + extension : "";
+    }
+}
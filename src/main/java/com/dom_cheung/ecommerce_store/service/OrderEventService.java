@@ -0,0 +1,307 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.model.OrderStatusEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server-Sent Event streams that push order status changes to the orders' owners, so order pages
+ * do not have to poll.
+ *
+ * Streams are async servlet responses (SseEmitter): an idle stream holds a connection but no request
+ * thread. A status change is handed over once its transaction commits, and every send runs on its own
+ * virtual thread, so neither the committing thread nor other clients wait for a slow client. A comment
+ * line is sent every heartbeat-interval-ms to keep proxies from closing idle streams and to notice
+ * clients that went away. Each instance holds at most max-connections streams.
+ *
+ * The owner's streams may be held by other instances, so every committed change is also written to
+ * the order_status_events table. Each instance polls that table every poll-interval-ms for changes
+ * written by the others and pushes them to its own streams. A poll reads back poll-lookback-ms past
+ * the previous one, so rows written late or by an instance with a slightly different clock are not
+ * missed; rows already pushed are skipped. Changes made on another instance arrive up to one poll
+ * interval later than those made here.
+ */
+@Service
+public class OrderEventService {
+
+    private static final Logger LOGGER = Logger.getLogger(OrderEventService.class.getName());
+
+    public static final String STATUS_EVENT = "order-status";
+
+    private final Duration streamTimeout;
+    private final int maxConnections;
+
+    // Open streams per user ID
+    private final Map<Long, Set<SseEmitter>> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${store.order-events.poll-interval-ms:1000}")
+    private long pollIntervalMillis = 1000;
+
+    @Value("${store.order-events.poll-lookback-ms:5000}")
+    private long pollLookbackMillis = 5000;
+
+    @Value("${store.order-events.retention:10m}")
+    private Duration retention = Duration.ofMinutes(10);
+
+    // Marks the rows written here, which the poll skips
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private ScheduledExecutorService poller;
+
+    // Rows of other instances already pushed, with their change time, kept while a poll can still read them
+    private final Map<Long, LocalDateTime> relayedRows = new HashMap<>();
+    private LocalDateTime lastPoll = LocalDateTime.now();
+    private LocalDateTime lastPurge = LocalDateTime.now();
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong sendFailures = new AtomicLong();
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong recordFailures = new AtomicLong();
+
+    public OrderEventService(@Value("${store.order-events.stream-timeout:30m}") Duration streamTimeout,
+                             @Value("${store.order-events.max-connections:10000}") int maxConnections) {
+        this.streamTimeout = streamTimeout;
+        this.maxConnections = maxConnections;
+    }
+
+    @PostConstruct
+    public void start() {
+        poller = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("order-events-poll").daemon().factory());
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                pollOtherInstances();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to poll order status changes of other instances", e);
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open an event stream for a user; it ends after stream-timeout and clients are expected to reconnect
+     *
+     * @param userId User ID whose order status changes are sent on the stream
+     * @return The stream, to be returned from the controller
+     * @throws OrderEventStreamsFullException if this instance already holds max-connections streams
+     */
+    public SseEmitter subscribe(Long userId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new OrderEventStreamsFullException("Too many order event streams, please try again later");
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        streams.compute(userId, (id, userStreams) -> {
+            Set<SseEmitter> result = userStreams != null ? userStreams : ConcurrentHashMap.newKeySet();
+            result.add(emitter);
+            return result;
+        });
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+        opened.incrementAndGet();
+
+        // Sent once the response starts, so the client knows the stream is live
+        send(userId, emitter, SseEmitter.event().comment("connected"));
+        return emitter;
+    }
+
+    /**
+     * Push an order's status change to its owner's streams once the current transaction commits, here
+     * and, through the order_status_events table, on the other instances
+     *
+     * @param order Order whose status was changed (its version is read after the commit)
+     * @param previousStatus Status before the change
+     */
+    public void statusChanged(Order order, OrderStatus previousStatus) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changeCommitted(order, previousStatus);
+                }
+            });
+        } else {
+            changeCommitted(order, previousStatus);
+        }
+    }
+
+    /**
+     * Push the status changes other instances wrote since the last poll to the streams held here,
+     * and delete changes older than the retention about once a minute
+     */
+    public synchronized void pollOtherInstances() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = lastPoll.minus(Duration.ofMillis(pollLookbackMillis));
+        lastPoll = now;
+        relayedRows.values().removeIf(changedAt -> changedAt.isBefore(since));
+
+        if (!streams.isEmpty()) {
+            jdbcTemplate.query("select id, user_id, order_number, status, previous_status, version, changed_at "
+                    + "from order_status_events where changed_at >= ? and instance_id <> ? order by id", rs -> {
+                long id = rs.getLong("id");
+                LocalDateTime changedAt = rs.getTimestamp("changed_at").toLocalDateTime();
+                if (relayedRows.putIfAbsent(id, changedAt) == null) {
+                    OrderStatusEvent event = new OrderStatusEvent(rs.getString("order_number"),
+                            OrderStatus.valueOf(rs.getString("status")), OrderStatus.valueOf(rs.getString("previous_status")),
+                            rs.getLong("version"), changedAt);
+                    if (publish(rs.getLong("user_id"), event)) {
+                        relayed.incrementAndGet();
+                    }
+                }
+            }, Timestamp.valueOf(since), instanceId);
+        }
+
+        if (lastPurge.isBefore(now.minusMinutes(1))) {
+            lastPurge = now;
+            jdbcTemplate.update("delete from order_status_events where changed_at < ?", Timestamp.valueOf(now.minus(retention)));
+        }
+    }
+
+    /**
+     * Send a comment line on every open stream
+     */
+    @Scheduled(fixedDelayString = "${store.order-events.heartbeat-interval-ms:15000}",
+            initialDelayString = "${store.order-events.heartbeat-interval-ms:15000}")
+    public void sendHeartbeats() {
+        streams.forEach((userId, userStreams) -> userStreams.forEach(emitter ->
+                sender.execute(() -> send(userId, emitter, SseEmitter.event().comment("heartbeat")))));
+        heartbeats.incrementAndGet();
+    }
+
+    /**
+     * Get the event stream counters
+     *
+     * @return Map of open streams and users, events published and sent, send failures and rejected streams
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("connections", connections.get());
+        result.put("users", streams.size());
+        result.put("maxConnections", maxConnections);
+        result.put("opened", opened.get());
+        result.put("rejected", rejected.get());
+        result.put("published", published.get());
+        result.put("sent", sent.get());
+        result.put("sendFailures", sendFailures.get());
+        result.put("heartbeats", heartbeats.get());
+        result.put("relayed", relayed.get());
+        result.put("recordFailures", recordFailures.get());
+        return result;
+    }
+
+    /**
+     * End every open stream as soon as shutdown starts; graceful shutdown would otherwise wait for
+     * streams that never finish on their own. Clients reconnect to another instance.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void closeStreams() {
+        LOGGER.info("Closing " + connections.get() + " order event streams");
+        streams.values().forEach(userStreams -> userStreams.forEach(SseEmitter::complete));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+        sender.shutdown();
+    }
+
+    private void changeCommitted(Order order, OrderStatus previousStatus) {
+        OrderStatusEvent event = new OrderStatusEvent(order.getOrderNumber(), order.getStatus(), previousStatus,
+                order.getVersion(), LocalDateTime.now());
+        publish(order.getUserId(), event);
+        // Off the committing thread, which may still hold the finished transaction's connection
+        sender.execute(() -> record(order.getUserId(), event));
+    }
+
+    private void record(Long userId, OrderStatusEvent event) {
+        try {
+            jdbcTemplate.update("insert into order_status_events (instance_id, user_id, order_number, status, "
+                    + "previous_status, version, changed_at) values (?, ?, ?, ?, ?, ?, ?)",
+                    instanceId, userId, event.orderNumber(), event.status().name(), event.previousStatus().name(),
+                    event.version(), Timestamp.valueOf(event.changedAt()));
+        } catch (DataAccessException e) {
+            // Only streams on other instances miss the change; the order pages show it on their next load
+            recordFailures.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Failed to record status change of order " + event.orderNumber(), e);
+        }
+    }
+
+    // Send an event to the user's streams on this instance, returning whether there were any
+    private boolean publish(Long userId, OrderStatusEvent event) {
+        Set<SseEmitter> userStreams = streams.get(userId);
+        if (userStreams == null) {
+            return false;
+        }
+        published.incrementAndGet();
+        for (SseEmitter emitter : userStreams) {
+            sender.execute(() -> send(userId, emitter, SseEmitter.event()
+                    .name(STATUS_EVENT)
+                    .id(event.orderNumber() + ":" + event.version())
+                    .data(event)));
+        }
+        return true;
+    }
+
+    private void send(Long userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            sent.incrementAndGet();
+        } catch (Exception e) {
+            // Client went away or the stream already ended; the container completes the response
+            sendFailures.incrementAndGet();
+            remove(userId, emitter);
+        }
+    }
+
+    private void remove(Long userId, SseEmitter emitter) {
+        streams.computeIfPresent(userId, (id, userStreams) -> {
+            if (userStreams.remove(emitter)) {
+                connections.decrementAndGet();
+            }
+            return userStreams.isEmpty() ? null : userStreams;
+        });
+    }
+}
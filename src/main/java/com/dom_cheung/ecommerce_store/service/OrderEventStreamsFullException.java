@@ -0,0 +1,12 @@
+package com.dom_cheung.ecommerce_store.service;
+
+/**
+ * Thrown when this instance already holds its maximum of order event streams; the client should
+ * reconnect later (HTTP 503).
+ */
+public class OrderEventStreamsFullException extends RuntimeException {
+
+    public OrderEventStreamsFullException(String message) {
+        super(message);
+    }
+}
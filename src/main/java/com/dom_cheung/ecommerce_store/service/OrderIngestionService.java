@@ -0,0 +1,348 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Optional group-commit path for checkout, for flash-sale bursts.
+ *
+ * Instead of one transaction (and one pooled connection and one commit) per request, validated
+ * checkouts go into a bounded queue. A few writer threads take whatever has queued up, up to
+ * max-batch-size, and write it in a single transaction: one product lookup, one batched insert, one
+ * commit. Each caller waits on its own future and gets its own order or error; a checkout that fails
+ * validation inside a batch does not affect the others. If the batch as a whole fails to write (a
+ * constraint violation, a failed commit), its checkouts are written again one transaction each, so
+ * only the checkouts that fail on their own are rejected. When the queue is full the checkout is
+ * rejected straight away with CheckoutQueueFullException.
+ *
+ * A caller never gets an error for an order that may still be written: a checkout still queued after
+ * response-timeout-ms is taken out of the queue and rejected like a full queue, but one a writer has
+ * already taken is waited for until its batch has committed or failed.
+ */
+@Service
+public class OrderIngestionService {
+
+    private static final Logger LOGGER = Logger.getLogger(OrderIngestionService.class.getName());
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private record PendingCheckout(Long userId,
+                                   List<Map<String, Object>> cartItems,
+                                   String shippingAddress,
+                                   List<Long> productIds,
+                                   CompletableFuture<Order> result,
+                                   long enqueuedAt) {
+    }
+
+    private final boolean enabled;
+    private final int writerThreads;
+    private final int maxBatchSize;
+    private final long responseTimeoutMillis;
+
+    private final BlockingQueue<PendingCheckout> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder splitBatches = new LongAdder();
+    private final AtomicLong largestBatch = new AtomicLong();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+    private final AtomicLong slowestCommitNanos = new AtomicLong();
+
+    public OrderIngestionService(@Value("${store.order-ingestion.enabled:false}") boolean enabled,
+                                 @Value("${store.order-ingestion.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${store.order-ingestion.writer-threads:2}") int writerThreads,
+                                 @Value("${store.order-ingestion.max-batch-size:100}") int maxBatchSize,
+                                 @Value("${store.order-ingestion.response-timeout-ms:10000}") long responseTimeoutMillis) {
+        this.enabled = enabled;
+        this.writerThreads = writerThreads;
+        this.maxBatchSize = maxBatchSize;
+        this.responseTimeoutMillis = responseTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(this::writeLoop, "order-writer-" + i);
+            writer.start();
+            writers.add(writer);
+        }
+        LOGGER.info("Order ingestion enabled with " + writerThreads + " writers (queue-capacity="
+                + queue.remainingCapacity() + ", max-batch-size=" + maxBatchSize + ")");
+    }
+
+    /**
+     * Stop the writers once everything already queued has been written; checkouts queued after that
+     * are rejected, as none of them will be written
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread writer : writers) {
+            writer.join(responseTimeoutMillis);
+        }
+        writers.clear();
+        PendingCheckout checkout;
+        while ((checkout = queue.poll()) != null) {
+            rejected.increment();
+            checkout.result().completeExceptionally(new CheckoutQueueFullException("Checkout was not placed, please try again"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a checkout for the next batch
+     *
+     * @param userId User ID who is placing the order
+     * @param cartItems List of cart items to be ordered
+     * @param shippingAddress Shipping address for the order
+     * @return Future completed with the saved order, or with the exception that rejected it
+     * @throws IllegalArgumentException if the cart is empty or malformed
+     * @throws CheckoutQueueFullException if the queue is full
+     */
+    public CompletableFuture<Order> submit(Long userId, List<Map<String, Object>> cartItems, String shippingAddress) {
+        return enqueue(userId, cartItems, shippingAddress).result();
+    }
+
+    private PendingCheckout enqueue(Long userId, List<Map<String, Object>> cartItems, String shippingAddress) {
+        // Cheap validation up front, so obviously bad requests never take a queue slot
+        List<Long> productIds = orderService.getCartProductIds(userId, cartItems);
+
+        PendingCheckout checkout = new PendingCheckout(userId, cartItems, shippingAddress, productIds,
+                new CompletableFuture<>(), System.nanoTime());
+        if (!queue.offer(checkout)) {
+            rejected.increment();
+            throw new CheckoutQueueFullException("Too many checkouts in progress, please try again shortly");
+        }
+        submitted.increment();
+        return checkout;
+    }
+
+    /**
+     * Queue a checkout and wait for its batch to commit. If no writer has taken the checkout within the
+     * response timeout, it is withdrawn; once taken, it is waited for however long its batch takes. An
+     * interrupt is handled the same way and the thread's interrupt flag is set again before returning.
+     *
+     * @param userId User ID who is placing the order
+     * @param cartItems List of cart items to be ordered
+     * @param shippingAddress Shipping address for the order
+     * @return The saved order
+     * @throws IllegalArgumentException if the order is invalid
+     * @throws CheckoutQueueFullException if the queue is full, or the checkout was withdrawn; either way
+     *         no order was placed
+     */
+    public Order createOrder(Long userId, List<Map<String, Object>> cartItems, String shippingAddress) {
+        PendingCheckout checkout = enqueue(userId, cartItems, shippingAddress);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(responseTimeoutMillis);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining > 0 && !interrupted) {
+                        return checkout.result().get(remaining, TimeUnit.NANOSECONDS);
+                    }
+                    if (queue.remove(checkout)) {
+                        // No writer has it, so it can never be written
+                        timedOut.increment();
+                        throw new CheckoutQueueFullException("Checkout was not processed in time and was not placed, please try again");
+                    }
+                    // Part of a batch already: its outcome is the answer
+                    return checkout.result().get();
+                } catch (TimeoutException e) {
+                    // Withdraw it, or keep waiting, on the next pass
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Order could not be written", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Get the ingestion counters
+     *
+     * @return Map of queue, batch size and latency metrics
+     */
+    public Map<String, Object> getStats() {
+        long batchCount = batches.sum();
+        long processed = committed.sum() + failed.sum();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", enabled);
+        result.put("queueDepth", queue.size());
+        result.put("submitted", submitted.sum());
+        result.put("rejected", rejected.sum());
+        result.put("timedOut", timedOut.sum());
+        result.put("committed", committed.sum());
+        result.put("failed", failed.sum());
+        result.put("batches", batchCount);
+        result.put("splitBatches", splitBatches.sum());
+        result.put("averageBatchSize", batchCount == 0 ? 0.0 : (double) processed / batchCount);
+        result.put("largestBatch", largestBatch.get());
+        result.put("averageQueueWaitMs", processed == 0 ? 0.0 : queueWaitNanos.sum() / 1e6 / processed);
+        result.put("averageCommitMs", batchCount == 0 ? 0.0 : commitNanos.sum() / 1e6 / batchCount);
+        result.put("slowestCommitMs", slowestCommitNanos.get() / 1e6);
+        return result;
+    }
+
+    private void writeLoop() {
+        List<PendingCheckout> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingCheckout first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Everything that queued up while the previous batch was committing goes into this one
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Unexpected error in order writer", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingCheckout> batch) {
+        long started = System.nanoTime();
+        for (PendingCheckout checkout : batch) {
+            queueWaitNanos.add(started - checkout.enqueuedAt());
+        }
+
+        Order[] orders = new Order[batch.size()];
+        RuntimeException[] errors = new RuntimeException[batch.size()];
+        try {
+            write(batch, orders, errors);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                LOGGER.log(Level.SEVERE, "Failed to write an order", e);
+                orders[0] = null;
+                errors[0] = e;
+            } else {
+                // Nothing was written for anyone in it; find out who it was by writing them one at a time
+                LOGGER.log(Level.WARNING, "Failed to write a batch of " + batch.size() + " orders, writing them one by one", e);
+                splitBatches.increment();
+                for (int i = 0; i < batch.size(); i++) {
+                    orders[i] = null;
+                    errors[i] = null;
+                    Order[] order = new Order[1];
+                    RuntimeException[] error = new RuntimeException[1];
+                    try {
+                        write(List.of(batch.get(i)), order, error);
+                        orders[i] = order[0];
+                        errors[i] = error[0];
+                    } catch (RuntimeException orderError) {
+                        LOGGER.log(Level.SEVERE, "Failed to write an order", orderError);
+                        errors[i] = orderError;
+                    }
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        batches.increment();
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        commitNanos.add(elapsed);
+        slowestCommitNanos.accumulateAndGet(elapsed, Math::max);
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (orders[i] != null) {
+                committed.increment();
+                batch.get(i).result().complete(orders[i]);
+            } else {
+                failed.increment();
+                batch.get(i).result().completeExceptionally(errors[i]);
+            }
+        }
+    }
+
+    // Write the valid checkouts in one transaction, recording each one's order or validation error;
+    // throws if the transaction fails, in which case none of them was written
+    private void write(List<PendingCheckout> checkouts, Order[] orders, RuntimeException[] errors) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // One product lookup for the whole batch
+            Set<Long> productIds = new HashSet<>();
+            checkouts.forEach(checkout -> productIds.addAll(checkout.productIds()));
+            Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+            List<Order> valid = new ArrayList<>(checkouts.size());
+            for (int i = 0; i < checkouts.size(); i++) {
+                PendingCheckout checkout = checkouts.get(i);
+                try {
+                    orders[i] = orderService.prepareOrder(checkout.userId(), checkout.cartItems(),
+                            checkout.shippingAddress(), products);
+                    valid.add(orders[i]);
+                } catch (IllegalArgumentException e) {
+                    errors[i] = e;
+                }
+            }
+            orderRepository.saveAll(valid);
+        });
+    }
+}
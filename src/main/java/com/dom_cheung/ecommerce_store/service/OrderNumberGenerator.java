@@ -0,0 +1,15 @@
+package com.dom_cheung.ecommerce_store.service;
+
+/**
+ * Source of unique order numbers for new orders.
+ * Implementations must be thread-safe and never return the same number twice.
+ */
+public interface OrderNumberGenerator {
+
+    /**
+     * Generate the next order number
+     *
+     * @return A new unique order number, e.g. "ORD-123456789"
+     */
+    String nextOrderNumber();
+}
@@ -0,0 +1,21 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters of the admin order search and export. Every filter is optional (null matches everything).
+ *
+ * @param from Earliest order date, inclusive
+ * @param to Latest order date, exclusive
+ * @param minTotal Smallest order total, inclusive
+ * @param maxTotal Largest order total, inclusive
+ */
+public record OrderSearchCriteria(OrderStatus status,
+                                  LocalDateTime from,
+                                  LocalDateTime to,
+                                  Long userId,
+                                  Double minTotal,
+                                  Double maxTotal) {
+}
@@ -0,0 +1,242 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.AdminOrderRow;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Admin search and export over all orders.
+ *
+ * Both read the orders table with plain JDBC rather than through Order entities. Search is keyset paged
+ * like the user's order history (order date, then id, newest first). Export walks a forward-only cursor
+ * with a fixed fetch size and writes each row to the output stream as soon as it is read, so memory use
+ * does not depend on how many orders are exported.
+ */
+@Service
+public class OrderSearchService {
+
+    private static final Logger LOGGER = Logger.getLogger(OrderSearchService.class.getName());
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    // Rows the driver fetches per round trip while exporting
+    static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static final String COLUMNS = "id, order_number, user_id, order_date, status, total_amount, shipping_address";
+
+    private static final String[] CSV_HEADER =
+            {"id", "orderNumber", "userId", "orderDate", "status", "totalAmount", "shippingAddress"};
+
+    public enum ExportFormat { CSV, NDJSON }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final RowMapper<AdminOrderRow> ROW_MAPPER = (rs, rowNum) -> toRow(rs);
+
+    /**
+     * Get one page of orders matching the criteria, newest first
+     *
+     * @param criteria Filters to apply
+     * @param before Cursor of the previous page's last order (nextCursor), null for the first page
+     * @param limit Page size (capped at MAX_PAGE_SIZE, defaults to DEFAULT_PAGE_SIZE)
+     * @return Map with the orders ("items"), "limit" and "nextCursor" (null on the last page)
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> search(OrderSearchCriteria criteria, String before, Integer limit) {
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_PAGE_SIZE;
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("select " + COLUMNS + " from orders where 1 = 1");
+        appendFilters(criteria, sql, args);
+        if (before != null && !before.isBlank()) {
+            OrderService.OrderCursor cursor = OrderService.OrderCursor.decode(before);
+            Timestamp beforeDate = Timestamp.valueOf(cursor.orderDate());
+            sql.append(" and (order_date < ? or (order_date = ? and id < ?))");
+            args.add(beforeDate);
+            args.add(beforeDate);
+            args.add(cursor.id());
+        }
+        // Ask for one extra row to find out whether there is a next page
+        sql.append(" order by order_date desc, id desc fetch first ? rows only");
+        args.add(pageSize + 1);
+
+        List<AdminOrderRow> rows = jdbcTemplate.query(sql.toString(), ROW_MAPPER, args.toArray());
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            AdminOrderRow last = rows.get(pageSize - 1);
+            nextCursor = new OrderService.OrderCursor(last.orderDate(), last.id()).encode();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", rows);
+        response.put("limit", pageSize);
+        response.put("nextCursor", nextCursor);
+        return response;
+    }
+
+    /**
+     * Write every order matching the criteria to the stream, oldest first, row by row as the JDBC cursor
+     * produces them. Runs in a read-only transaction, which PostgreSQL needs to honour the fetch size
+     * instead of reading the whole result into memory.
+     *
+     * @param criteria Filters to apply
+     * @param format CSV (with a header row) or NDJSON (one JSON object per line)
+     * @param outputStream Response stream to write to (not closed by this method)
+     * @return Number of orders written
+     * @throws IOException if writing to the stream fails
+     */
+    @Transactional(readOnly = true)
+    public long export(OrderSearchCriteria criteria, ExportFormat format, OutputStream outputStream) throws IOException {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("select " + COLUMNS + " from orders where 1 = 1");
+        appendFilters(criteria, sql, args);
+        sql.append(" order by order_date, id");
+
+        // Flushing is left to the buffers: nothing below flushes the response stream per row
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        ObjectWriter jsonWriter = objectMapper.writerFor(AdminOrderRow.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = null;
+        if (format == ExportFormat.NDJSON) {
+            generator = objectMapper.getFactory().createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            generator.setRootValueSeparator(null);
+        } else {
+            writeCsvLine(writer, CSV_HEADER);
+        }
+        JsonGenerator json = generator;
+
+        long[] count = {0};
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(EXPORT_FETCH_SIZE);
+                for (int i = 0; i < args.size(); i++) {
+                    statement.setObject(i + 1, args.get(i));
+                }
+                return statement;
+            }, rs -> {
+                AdminOrderRow row = toRow(rs);
+                try {
+                    if (json != null) {
+                        jsonWriter.writeValue(json, row);
+                        json.flush();
+                        writer.write('\n');
+                    } else {
+                        writeCsvLine(writer, new String[]{
+                                String.valueOf(row.id()),
+                                row.orderNumber(),
+                                String.valueOf(row.userId()),
+                                String.valueOf(row.orderDate()),
+                                row.status() != null ? row.status().name() : "",
+                                String.valueOf(row.totalAmount()),
+                                row.shippingAddress()
+                        });
+                    }
+                } catch (IOException e) {
+                    // Client went away: abort the query instead of reading the remaining rows
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        LOGGER.info("Exported " + count[0] + " orders as " + format);
+        return count[0];
+    }
+
+    private static void appendFilters(OrderSearchCriteria criteria, StringBuilder sql, List<Object> args) {
+        if (criteria.status() != null) {
+            sql.append(" and status = ?");
+            args.add(criteria.status().name());
+        }
+        if (criteria.userId() != null) {
+            sql.append(" and user_id = ?");
+            args.add(criteria.userId());
+        }
+        if (criteria.from() != null) {
+            sql.append(" and order_date >= ?");
+            args.add(Timestamp.valueOf(criteria.from()));
+        }
+        if (criteria.to() != null) {
+            sql.append(" and order_date < ?");
+            args.add(Timestamp.valueOf(criteria.to()));
+        }
+        if (criteria.minTotal() != null) {
+            sql.append(" and total_amount >= ?");
+            args.add(criteria.minTotal());
+        }
+        if (criteria.maxTotal() != null) {
+            sql.append(" and total_amount <= ?");
+            args.add(criteria.maxTotal());
+        }
+    }
+
+    private static AdminOrderRow toRow(ResultSet rs) throws SQLException {
+        String status = rs.getString("status");
+        return new AdminOrderRow(
+                rs.getLong("id"),
+                rs.getString("order_number"),
+                rs.getLong("user_id"),
+                rs.getTimestamp("order_date").toLocalDateTime(),
+                status != null ? OrderStatus.valueOf(status) : null,
+                rs.getDouble("total_amount"),
+                rs.getString("shipping_address"));
+    }
+
+    // RFC 4180: fields containing a comma, quote or line break are quoted, quotes are doubled
+    private static void writeCsvLine(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i] != null ? fields[i] : "";
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
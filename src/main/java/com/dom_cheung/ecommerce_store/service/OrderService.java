@@ -4,13 +4,26 @@ import com.dom_cheung.ecommerce_store.model.*;
 import com.dom_cheung.ecommerce_store.repository.OrderRepository;
 import com.dom_cheung.ecommerce_store.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -19,12 +32,35 @@ public class OrderService {
 
     private static final Logger LOGGER = Logger.getLogger(OrderService.class.getName());
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+
+    // Attempts for a status update that keeps losing optimistic-lock races before giving up
+    static final int MAX_STATUS_UPDATE_ATTEMPTS = 5;
+
+    public static final int MAX_BULK_STATUS_UPDATE = 1000;
+
     @Autowired
     private OrderRepository orderRepository;
 
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * Create a new order from cart items
      *
@@ -36,55 +72,89 @@ public class OrderService {
      */
     @Transactional
     public Order createOrder(Long userId, List<Map<String, Object>> cartItems, String shippingAddress) {
+        List<Long> productIds = getCartProductIds(userId, cartItems);
+
+        LOGGER.info("Creating order for user ID: " + userId + " with " + cartItems.size() + " items");
+
+        // Get the latest product information (to ensure current pricing)
+        Map<Long, Product> productMap = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+
+        Order order = prepareOrder(userId, cartItems, shippingAddress, productMap);
+
+        // Save the order
+        Order savedOrder = orderRepository.save(order);
+        LOGGER.info("Order created successfully with number: " + savedOrder.getOrderNumber());
+
+        return savedOrder;
+    }
+
+    /**
+     * Get the product IDs of a cart
+     *
+     * @param userId User ID who is placing the order
+     * @param cartItems List of cart items to be ordered
+     * @return Product ID of every cart line, in cart order
+     * @throws IllegalArgumentException if the cart is empty or a line has no valid product id
+     */
+    public List<Long> getCartProductIds(Long userId, List<Map<String, Object>> cartItems) {
         // Validate cart items
         if (cartItems == null || cartItems.isEmpty()) {
             LOGGER.warning("Attempt to create order with empty cart for user ID: " + userId);
             throw new IllegalArgumentException("Cannot create order with empty cart");
         }
 
-        LOGGER.info("Creating order for user ID: " + userId + " with " + cartItems.size() + " items");
-
-        // Extract product IDs from cart items
-        List<Long> productIds = cartItems.stream()
-                .map(item -> Long.valueOf(item.get("id").toString()))
-                .collect(Collectors.toList());
+        try {
+            return cartItems.stream()
+                    .map(item -> Long.valueOf(item.get("id").toString()))
+                    .collect(Collectors.toList());
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IllegalArgumentException("Each cart item needs a valid product id");
+        }
+    }
 
-        // Get the latest product information (to ensure current pricing)
-        List<Product> products = productRepository.findAllById(productIds);
+    /**
+     * Build an order from cart items and reserve its stock, without saving it.
+     * Must be called inside the transaction that saves the order, so the reservation is handed back
+     * if that transaction rolls back, and the order only reaches the sales rollups if it commits.
+     *
+     * @param userId User ID who is placing the order
+     * @param cartItems List of cart items to be ordered
+     * @param shippingAddress Shipping address for the order
+     * @param productMap Current products by ID, covering at least every product in the cart
+     * @return The new, unsaved order
+     * @throws IllegalArgumentException if a product is missing, a quantity is invalid or stock is short
+     */
+    public Order prepareOrder(Long userId, List<Map<String, Object>> cartItems, String shippingAddress,
+                              Map<Long, Product> productMap) {
+        List<Long> productIds = getCartProductIds(userId, cartItems);
 
         // Validate all products exist
-        if (products.size() != productIds.size()) {
+        if (!productMap.keySet().containsAll(productIds)) {
             LOGGER.warning("Some products in the cart were not found in the database");
             throw new IllegalArgumentException("One or more products in your cart are no longer available");
         }
 
-        // Create a map of product ID to product for easy lookup
-        Map<Long, Product> productMap = products.stream()
-                .collect(Collectors.toMap(Product::getId, product -> product));
-
         // Create the order
         Order order = new Order();
         order.setUserId(userId);
-        order.setOrderNumber(Order.generateOrderNumber());
+        order.setOrderNumber(orderNumberGenerator.nextOrderNumber());
         order.setOrderDate(LocalDateTime.now());
         order.setStatus(OrderStatus.PENDING);
         order.setShippingAddress(shippingAddress);
 
         double totalAmount = 0.0;
+        Map<Long, Integer> quantities = new HashMap<>();
 
         // Create order items from cart items
-        for (Map<String, Object> cartItem : cartItems) {
-            Long productId = Long.valueOf(cartItem.get("id").toString());
+        for (int i = 0; i < cartItems.size(); i++) {
+            Map<String, Object> cartItem = cartItems.get(i);
+            Long productId = productIds.get(i);
             Product product = productMap.get(productId);
 
-            // Skip if product doesn't exist (should not happen after validation above)
-            if (product == null) {
-                continue;
-            }
-
             int quantity;
             try {
-                quantity = Integer.parseInt(cartItem.get("quantity").toString());
+                quantity = Integer.parseInt(String.valueOf(cartItem.get("quantity")));
             } catch (NumberFormatException e) {
                 LOGGER.warning("Invalid quantity format for product ID: " + productId);
                 throw new IllegalArgumentException("Invalid quantity for product: " + product.getName());
@@ -106,15 +176,18 @@ public class OrderService {
 
             order.getItems().add(orderItem);
             totalAmount += orderItem.getSubtotal();
+            quantities.merge(productId, quantity, Integer::sum);
         }
 
         order.setTotalAmount(totalAmount);
 
-        // Save the order
-        Order savedOrder = orderRepository.save(order);
-        LOGGER.info("Order created successfully with number: " + savedOrder.getOrderNumber());
+        // Reserve stock for all lines at once; undone if the surrounding transaction rolls back
+        inventoryService.reserve(quantities, productMap);
 
-        return savedOrder;
+        // Counted in the sales rollups once the order is committed
+        salesRollupService.recordOrder(order);
+
+        return order;
     }
 
     /**
@@ -130,6 +203,108 @@ public class OrderService {
         return orders;
     }
 
+    /**
+     * Get one page of a user's order history, newest first, with the items of every order on the page.
+     * Paging is by keyset on (orderDate, id), so deep pages cost the same as the first one, and the
+     * page is loaded with two queries however many orders it holds.
+     *
+     * @param userId User ID to get orders for
+     * @param before Cursor returned as nextCursor by the previous page (null for the first page)
+     * @param limit Requested page size, clamped to 1..MAX_PAGE_SIZE (null for the default)
+     * @return Map with the orders ("items"), the page size ("limit") and the cursor of the next page
+     *         ("nextCursor", null on the last page)
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getUserOrderPage(Long userId, String before, Integer limit) {
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_PAGE_SIZE;
+
+        // Ask for one extra id to find out whether there is a next page
+        PageRequest pageRequest = PageRequest.ofSize(pageSize + 1);
+        List<Long> ids;
+        if (before == null || before.isBlank()) {
+            ids = orderRepository.findOrderIdsByUserId(userId, pageRequest);
+        } else {
+            OrderCursor cursor = OrderCursor.decode(before);
+            ids = orderRepository.findOrderIdsByUserIdBefore(userId, cursor.orderDate(), cursor.id(), pageRequest);
+        }
+
+        boolean hasNext = ids.size() > pageSize;
+        List<Order> orders = ids.isEmpty() ? List.of()
+                : orderRepository.findWithItemsByIdIn(hasNext ? ids.subList(0, pageSize) : ids);
+
+        String nextCursor = null;
+        if (hasNext && !orders.isEmpty()) {
+            Order last = orders.get(orders.size() - 1);
+            nextCursor = new OrderCursor(last.getOrderDate(), last.getId()).encode();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", orders);
+        response.put("limit", pageSize);
+        response.put("nextCursor", nextCursor);
+        return response;
+    }
+
+    /**
+     * Get one page of a user's order summaries for the orders list, newest first.
+     * Uses the same cursor as getUserOrderPage, and a single query that never loads order items.
+     *
+     * @param userId User ID to get orders for
+     * @param before Cursor returned as nextCursor by the previous page (null for the first page)
+     * @param limit Requested page size, clamped to 1..MAX_PAGE_SIZE (null for the default)
+     * @return Map with the summaries ("items"), the page size ("limit") and the cursor of the next page
+     *         ("nextCursor", null on the last page)
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getUserOrderSummaryPage(Long userId, String before, Integer limit) {
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_PAGE_SIZE;
+
+        // Ask for one extra row to find out whether there is a next page
+        PageRequest pageRequest = PageRequest.ofSize(pageSize + 1);
+        List<OrderSummary> summaries;
+        if (before == null || before.isBlank()) {
+            summaries = orderRepository.findSummariesByUserId(userId, pageRequest);
+        } else {
+            OrderCursor cursor = OrderCursor.decode(before);
+            summaries = orderRepository.findSummariesByUserIdBefore(userId, cursor.orderDate(), cursor.id(), pageRequest);
+        }
+
+        String nextCursor = null;
+        if (summaries.size() > pageSize) {
+            summaries = summaries.subList(0, pageSize);
+            OrderSummary last = summaries.get(pageSize - 1);
+            nextCursor = new OrderCursor(last.orderDate(), last.id()).encode();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", summaries);
+        response.put("limit", pageSize);
+        response.put("nextCursor", nextCursor);
+        return response;
+    }
+
+    // Opaque keyset cursor: position (orderDate, id) of the last order of a page
+    record OrderCursor(LocalDateTime orderDate, Long id) {
+
+        String encode() {
+            String raw = orderDate + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static OrderCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new OrderCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.valueOf(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid order cursor: " + cursor);
+            }
+        }
+    }
+
     /**
      * Get an order by its order number
      *
@@ -149,15 +324,127 @@ public class OrderService {
 
     /**
      * Update the status of an order
+     * Each attempt runs in its own transaction. If another update changed the order in the meantime
+     * (optimistic lock conflict), the order is re-read and the transition validated again against its
+     * new status, up to MAX_STATUS_UPDATE_ATTEMPTS times. Called inside an existing transaction, the
+     * conflict only surfaces when that transaction commits and is not retried here.
      *
      * @param orderNumber Order number to update
      * @param newStatus New status to set
      * @return Updated order
      * @throws IllegalArgumentException if status transition is not allowed
+     * @throws OptimisticLockingFailureException if every attempt lost to a concurrent update
      * @throws RuntimeException if order not found
      */
-    @Transactional
     public Order updateOrderStatus(String orderNumber, OrderStatus newStatus) {
+        return retryOnConflict("order " + orderNumber, status -> applyStatusChange(orderNumber, newStatus));
+    }
+
+    /**
+     * Move many orders to the same status at once (e.g. PROCESSING to SHIPPED at the end of a shift)
+     * The orders are loaded with one query and every valid transition is written with batched UPDATEs
+     * in a single transaction. If a concurrent update conflicts with any of them, the whole batch is
+     * re-read and validated again, as in updateOrderStatus.
+     *
+     * @param orderNumbers Order numbers to update (duplicates are ignored)
+     * @param newStatus New status to set
+     * @return Map with per-order "results" (orderNumber, result, previousStatus, message) and the
+     *         "updated", "unchanged" and "failed" counts
+     * @throws IllegalArgumentException if no order numbers or more than MAX_BULK_STATUS_UPDATE are given
+     * @throws OptimisticLockingFailureException if every attempt lost to a concurrent update
+     */
+    public Map<String, Object> updateOrderStatuses(Collection<String> orderNumbers, OrderStatus newStatus) {
+        if (orderNumbers == null || orderNumbers.isEmpty()) {
+            throw new IllegalArgumentException("Order numbers are required");
+        }
+        Set<String> uniqueNumbers = new LinkedHashSet<>(orderNumbers);
+        if (uniqueNumbers.size() > MAX_BULK_STATUS_UPDATE) {
+            throw new IllegalArgumentException("At most " + MAX_BULK_STATUS_UPDATE + " orders can be updated at once");
+        }
+
+        LOGGER.info("Bulk updating " + uniqueNumbers.size() + " orders to " + newStatus);
+        return retryOnConflict("bulk update of " + uniqueNumbers.size() + " orders",
+                status -> applyStatusChanges(uniqueNumbers, newStatus));
+    }
+
+    // Run a status change in its own transaction, re-running it when it loses an optimistic lock race
+    private <T> T retryOnConflict(String description, TransactionCallback<T> change) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(change);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_STATUS_UPDATE_ATTEMPTS) {
+                    LOGGER.warning("Giving up status update of " + description + " after " + attempt + " conflicts");
+                    throw e;
+                }
+                LOGGER.info("Status update of " + description + " conflicted with a concurrent change, retrying (attempt "
+                        + (attempt + 1) + ")");
+                backOff(attempt);
+            }
+        }
+    }
+
+    private Map<String, Object> applyStatusChanges(Set<String> orderNumbers, OrderStatus newStatus) {
+        // Cancellations return stock, so only then are the items needed
+        List<Order> orders = newStatus == OrderStatus.CANCELLED
+                ? orderRepository.findWithItemsByOrderNumberIn(orderNumbers)
+                : orderRepository.findByOrderNumberIn(orderNumbers);
+        Map<String, Order> ordersByNumber = orders.stream()
+                .collect(Collectors.toMap(Order::getOrderNumber, order -> order));
+
+        List<Map<String, Object>> results = new ArrayList<>(orderNumbers.size());
+        Map<Long, Integer> releasedStock = new HashMap<>();
+        int updated = 0;
+        int unchanged = 0;
+        for (String orderNumber : orderNumbers) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("orderNumber", orderNumber);
+            results.add(result);
+
+            Order order = ordersByNumber.get(orderNumber);
+            if (order == null) {
+                result.put("result", "NOT_FOUND");
+                continue;
+            }
+
+            OrderStatus currentStatus = order.getStatus();
+            result.put("previousStatus", currentStatus);
+            if (currentStatus == newStatus) {
+                result.put("result", "UNCHANGED");
+                unchanged++;
+            } else if (!isValidStatusTransition(currentStatus, newStatus)) {
+                result.put("result", "INVALID_TRANSITION");
+                result.put("message", "Cannot change order status from " + currentStatus + " to " + newStatus);
+            } else {
+                if (newStatus == OrderStatus.CANCELLED) {
+                    addItemQuantities(order, releasedStock);
+                    salesRollupService.recordCancellation(order);
+                }
+                // Written by dirty checking at commit, as one JDBC batch of versioned UPDATEs
+                order.setStatus(newStatus);
+                orderEventService.statusChanged(order, currentStatus);
+                result.put("result", "UPDATED");
+                updated++;
+            }
+        }
+
+        // Stock of cancelled orders comes back once the batch commits
+        if (!releasedStock.isEmpty()) {
+            inventoryService.release(releasedStock);
+        }
+
+        LOGGER.info("Bulk status update to " + newStatus + ": " + updated + " updated, " + unchanged
+                + " unchanged, " + (orderNumbers.size() - updated - unchanged) + " failed");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("updated", updated);
+        response.put("unchanged", unchanged);
+        response.put("failed", orderNumbers.size() - updated - unchanged);
+        return response;
+    }
+
+    private Order applyStatusChange(String orderNumber, OrderStatus newStatus) {
         LOGGER.info("Updating status for order: " + orderNumber + " to " + newStatus);
 
         Optional<Order> orderOpt = orderRepository.findByOrderNumber(orderNumber);
@@ -177,16 +464,43 @@ public class OrderService {
                     "Cannot change order status from " + currentStatus + " to " + newStatus);
         }
 
+        // Return the stock of a cancelled order and take it out of the sales rollups once the cancellation commits
+        if (newStatus == OrderStatus.CANCELLED && currentStatus != OrderStatus.CANCELLED) {
+            Map<Long, Integer> quantities = new HashMap<>();
+            addItemQuantities(order, quantities);
+            inventoryService.release(quantities);
+            salesRollupService.recordCancellation(order);
+        }
+
         // Update status
         order.setStatus(newStatus);
         Order updatedOrder = orderRepository.save(order);
 
+        // Pushed to the owner's open event streams once committed
+        orderEventService.statusChanged(updatedOrder, currentStatus);
+
         LOGGER.info("Successfully updated status for order " + orderNumber + " from "
                 + currentStatus + " to " + newStatus);
 
         return updatedOrder;
     }
 
+    private static void addItemQuantities(Order order, Map<Long, Integer> quantities) {
+        for (OrderItem item : order.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+    }
+
+    // Short randomised pause so competing updates do not collide again straight away
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10L * attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying status update", e);
+        }
+    }
+
     /**
      * Check if a status transition is valid
      *
@@ -0,0 +1,140 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cancels PENDING orders that were abandoned for longer than max-age, which also gives their reserved
+ * stock back.
+ *
+ * Each run takes the oldest stale orders batch-size at a time (through the status/order date index) and
+ * cancels them with OrderService.updateOrderStatuses, so the usual transition rules apply and an order
+ * that moved on in the meantime is left alone. A run stops starting new batches once its time budget is
+ * used up; whatever is left is picked up by the next run.
+ */
+@Service
+public class PendingOrderSweeper {
+
+    private static final Logger LOGGER = Logger.getLogger(PendingOrderSweeper.class.getName());
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final long timeBudgetMillis;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalSwept = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong budgetExhaustedRuns = new AtomicLong();
+    private volatile long lastRunSwept;
+    private volatile long lastRunBatches;
+    private volatile long lastRunMillis;
+    private volatile LocalDateTime lastRunAt;
+
+    public PendingOrderSweeper(@Value("${store.order-sweeper.enabled:true}") boolean enabled,
+                               @Value("${store.order-sweeper.max-age:48h}") Duration maxAge,
+                               @Value("${store.order-sweeper.batch-size:200}") int batchSize,
+                               @Value("${store.order-sweeper.time-budget-ms:2000}") long timeBudgetMillis) {
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${store.order-sweeper.interval-ms:300000}",
+            initialDelayString = "${store.order-sweeper.interval-ms:300000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        long deadline = started + timeBudgetMillis * 1_000_000;
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        long swept = 0;
+        long batches = 0;
+        boolean budgetExhausted = false;
+
+        try {
+            while (true) {
+                List<String> orderNumbers = orderRepository.findOrderNumbersByStatusBefore(
+                        OrderStatus.PENDING, cutoff, PageRequest.ofSize(batchSize));
+                if (orderNumbers.isEmpty()) {
+                    break;
+                }
+
+                Map<String, Object> result = orderService.updateOrderStatuses(orderNumbers, OrderStatus.CANCELLED);
+                int updated = (int) result.get("updated");
+                swept += updated;
+                batches++;
+
+                // A short batch was the last one; a batch that cancelled nothing would only be read again
+                if (orderNumbers.size() < batchSize || updated == 0) {
+                    break;
+                }
+                if (System.nanoTime() >= deadline) {
+                    budgetExhausted = true;
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Stale order sweep failed after cancelling " + swept + " orders", e);
+        }
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        runs.incrementAndGet();
+        totalSwept.addAndGet(swept);
+        if (budgetExhausted) {
+            budgetExhaustedRuns.incrementAndGet();
+        }
+        lastRunSwept = swept;
+        lastRunBatches = batches;
+        lastRunMillis = elapsedMillis;
+        lastRunAt = LocalDateTime.now();
+
+        if (swept > 0) {
+            LOGGER.info("Cancelled " + swept + " PENDING orders older than " + maxAge + " in " + batches
+                    + " batches (" + elapsedMillis + " ms" + (budgetExhausted ? ", time budget used up" : "") + ")");
+        }
+    }
+
+    /**
+     * Get the sweeper counters
+     *
+     * @return Map of run counts, orders cancelled in total and in the last run, and the last run's duration
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", enabled);
+        result.put("maxAge", maxAge.toString());
+        result.put("runs", runs.get());
+        result.put("totalSwept", totalSwept.get());
+        result.put("failures", failures.get());
+        result.put("budgetExhaustedRuns", budgetExhaustedRuns.get());
+        result.put("lastRunSwept", lastRunSwept);
+        result.put("lastRunBatches", lastRunBatches);
+        result.put("lastRunMs", lastRunMillis);
+        result.put("lastRunAt", lastRunAt);
+        return result;
+    }
+}
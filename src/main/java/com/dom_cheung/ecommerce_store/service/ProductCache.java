@@ -0,0 +1,94 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Bounded read-through cache of products by id.
+ * Entries are evicted by size and by time since they were loaded, and explicitly on admin writes.
+ */
+@Component
+public class ProductCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ProductCache.class.getName());
+
+    private final boolean enabled;
+
+    private final Cache<Long, Product> cache;
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public ProductCache(@Value("${store.product-cache.enabled:true}") boolean enabled,
+                        @Value("${store.product-cache.max-size:1000}") long maxSize,
+                        @Value("${store.product-cache.ttl:10m}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        LOGGER.info("Product cache " + (enabled ? "enabled" : "disabled")
+                + " (max-size=" + maxSize + ", ttl=" + ttl + ")");
+    }
+
+    /**
+     * Get a product from the cache, loading it on a miss.
+     * Missing products are not cached, so a product created later is found straight away.
+     *
+     * @param id Product ID
+     * @param loader Loads the product from the database on a miss
+     * @return Optional containing the product if found
+     */
+    public Optional<Product> get(long id, Function<Long, Optional<Product>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    /**
+     * Remove a product from the cache. Blocks until any load of the same id in flight has finished,
+     * so a value read before the write cannot be put back afterwards.
+     *
+     * @param id Product ID
+     */
+    public void invalidate(long id) {
+        if (!enabled) {
+            return;
+        }
+        cache.invalidate(id);
+        invalidations.increment();
+    }
+
+    /**
+     * Get the cache counters
+     *
+     * @return Map of hit, miss, eviction and invalidation counts plus the current size
+     */
+    public Map<String, Object> getStats() {
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("invalidations", invalidations.sum());
+        return result;
+    }
+}
@@ -0,0 +1,359 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.ImageStatus;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Uploads product images in the background, so saving a product does not wait for the image storage.
+ *
+ * The controller stages the uploaded file on disk, saves the product with image status PENDING and
+ * submits the upload here. A fixed pool of threads uploads it; a failed attempt is retried after a
+ * backoff that doubles from initial-backoff up to max-backoff, up to max-attempts in total. When the
+ * upload succeeds the product's image columns are written (READY); when it gives up the status becomes
+ * FAILED and the product keeps its previous image. At most queue-capacity uploads are staged, queued or
+ * running at once; beyond that staging fails with ImageUploadQueueFullException.
+ *
+ * Only the latest upload of a product is applied: an upload that was superseded by a newer one (or
+ * cancelled because the image was set directly) is skipped, or its image is released if it was already
+ * uploaded, as is the image a successful upload replaces. This bookkeeping is per instance. Images are
+ * stored through ImageAssetService, so an image that is already stored is not uploaded again.
+ */
+@Service
+public class ProductImageService {
+
+    private static final Logger LOGGER = Logger.getLogger(ProductImageService.class.getName());
+
+    public static final String FOLDER = "ecommerce_products";
+
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    @Autowired
+    private ImageAssetService imageAssetService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    /**
+     * An uploaded image file held on disk until its background upload is done
+     *
+     * @param file Temp file owned by this service
+     * @param originalFilename Name the file was uploaded under
+     */
+    public record StagedImage(Path file, String originalFilename) {
+    }
+
+    private static final class Upload {
+        final long id;
+        final long productId;
+        final StagedImage image;
+        final long submittedAt = System.currentTimeMillis();
+        volatile int attempts;
+        volatile String lastError;
+        volatile long nextAttemptAt;
+
+        Upload(long id, long productId, StagedImage image) {
+            this.id = id;
+            this.productId = productId;
+            this.image = image;
+        }
+    }
+
+    private final boolean async;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final ScheduledThreadPoolExecutor executor;
+    // Staged, queued, waiting for a retry or running
+    private final Semaphore slots;
+    private final int queueCapacity;
+
+    // Latest upload per product ID
+    private final Map<Long, Upload> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong uploadIds = new AtomicLong();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+
+    public ProductImageService(@Value("${store.image-upload.async:true}") boolean async,
+                               @Value("${store.image-upload.threads:4}") int threads,
+                               @Value("${store.image-upload.queue-capacity:100}") int queueCapacity,
+                               @Value("${store.image-upload.max-attempts:4}") int maxAttempts,
+                               @Value("${store.image-upload.initial-backoff:2s}") Duration initialBackoff,
+                               @Value("${store.image-upload.max-backoff:1m}") Duration maxBackoff) {
+        this.async = async;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.queueCapacity = queueCapacity;
+        this.slots = new Semaphore(queueCapacity);
+        this.executor = new ScheduledThreadPoolExecutor(threads, Thread.ofPlatform().name("image-upload-", 0).factory());
+    }
+
+    /**
+     * Whether product images are uploaded in the background (store.image-upload.async)
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Move an uploaded image to a temp file of our own and reserve a place in the queue for it. The
+     * caller must pass it to submit or discard.
+     *
+     * @param file Uploaded image
+     * @return The staged image
+     * @throws IllegalArgumentException if the file is missing or empty
+     * @throws ImageUploadQueueFullException if queue-capacity uploads are already in progress
+     * @throws IOException if the file cannot be written to disk
+     */
+    public StagedImage stage(MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("File to upload is empty or null.");
+        }
+        if (!slots.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new ImageUploadQueueFullException("Too many image uploads in progress, please try again later");
+        }
+        Path path = null;
+        try {
+            path = Files.createTempFile("product-image-", ".tmp");
+            file.transferTo(path);
+            return new StagedImage(path, file.getOriginalFilename());
+        } catch (IOException | RuntimeException e) {
+            if (path != null) {
+                deleteQuietly(path);
+            }
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Drop a staged image that will not be submitted, e.g. because saving the product failed
+     *
+     * @param image Image returned by stage
+     */
+    public void discard(StagedImage image) {
+        deleteQuietly(image.file());
+        slots.release();
+    }
+
+    /**
+     * Upload a staged image in the background and set it as the product's image when done. The product
+     * must already be saved with image status PENDING; any earlier upload of it is superseded.
+     *
+     * @param productId Product ID the image belongs to
+     * @param image Image returned by stage
+     */
+    public void submit(long productId, StagedImage image) {
+        Upload upload = new Upload(uploadIds.incrementAndGet(), productId, image);
+        uploads.put(productId, upload);
+        submitted.incrementAndGet();
+        try {
+            executor.execute(() -> attempt(upload));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            giveUp(upload, "Upload interrupted by a restart, please upload the image again");
+        }
+    }
+
+    /**
+     * Forget the upload in progress for a product, because its image was set some other way. The upload
+     * is skipped, or its image is queued for deletion once uploaded.
+     *
+     * @param productId Product ID
+     */
+    public void cancel(long productId) {
+        uploads.remove(productId);
+    }
+
+    /**
+     * Get the image status of a product, with the progress of its upload if it runs on this instance
+     *
+     * @param productId Product ID
+     * @return Map with "productId", "imageStatus", "imageUrl", "imagePublicId" and "imageError", plus
+     *         "attempts", "lastError" and "nextAttemptAt" while uploading; empty if there is no such product
+     */
+    public Optional<Map<String, Object>> getStatus(long productId) {
+        Optional<Product> product = productRepository.findById(productId);
+        if (product.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("productId", productId);
+        result.put("imageStatus", product.get().getImageStatus());
+        result.put("imageUrl", product.get().getImageUrl());
+        result.put("imagePublicId", product.get().getImagePublicId());
+        result.put("imageError", product.get().getImageError());
+
+        Upload upload = uploads.get(productId);
+        if (upload != null) {
+            result.put("attempts", upload.attempts);
+            result.put("lastError", upload.lastError);
+            result.put("submittedAt", upload.submittedAt);
+            result.put("nextAttemptAt", upload.nextAttemptAt > 0 ? upload.nextAttemptAt : null);
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * Get the background upload counters
+     *
+     * @return Map of uploads in progress, free queue places and uploads submitted, succeeded, failed,
+     *         retried, superseded and rejected
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("async", async);
+        result.put("inProgress", queueCapacity - slots.availablePermits());
+        result.put("queueCapacity", queueCapacity);
+        result.put("activeThreads", executor.getActiveCount());
+        result.put("submitted", submitted.get());
+        result.put("succeeded", succeeded.get());
+        result.put("failed", failed.get());
+        result.put("retries", retries.get());
+        result.put("superseded", superseded.get());
+        result.put("rejected", rejected.get());
+        return result;
+    }
+
+    /**
+     * Stop uploading; products whose upload had not finished are marked FAILED so they do not stay
+     * PENDING forever
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        for (Upload upload : uploads.values()) {
+            giveUp(upload, "Upload interrupted by a restart, please upload the image again");
+        }
+    }
+
+    private void attempt(Upload upload) {
+        if (uploads.get(upload.productId) != upload) {
+            superseded.incrementAndGet();
+            finish(upload);
+            return;
+        }
+
+        upload.attempts++;
+        upload.nextAttemptAt = 0;
+        Map<String, String> result;
+        try {
+            result = imageAssetService.store(upload.image.file(), upload.image.originalFilename(), FOLDER);
+        } catch (Exception e) {
+            upload.lastError = e.getMessage();
+            if (upload.attempts < maxAttempts && !(e instanceof IllegalArgumentException)) {
+                long delay = backoffMillis(upload.attempts);
+                try {
+                    upload.nextAttemptAt = System.currentTimeMillis() + delay;
+                    executor.schedule(() -> attempt(upload), delay, TimeUnit.MILLISECONDS);
+                    retries.incrementAndGet();
+                    LOGGER.warning("Image upload for product " + upload.productId + " failed (attempt "
+                            + upload.attempts + " of " + maxAttempts + "), retrying in " + delay + " ms: " + e.getMessage());
+                    return;
+                } catch (RejectedExecutionException shuttingDown) {
+                    // Marked FAILED by shutdown
+                    return;
+                }
+            }
+            LOGGER.log(Level.SEVERE, "Image upload for product " + upload.productId + " failed after "
+                    + upload.attempts + " attempts", e);
+            giveUp(upload, "Image upload failed: " + e.getMessage());
+            return;
+        }
+
+        String publicId = result.get("public_id");
+        try {
+            // Remove first, so a cancel or newer upload from here on finds nothing to supersede
+            boolean current = uploads.remove(upload.productId, upload);
+            String replacedPublicId = current ? productRepository.findById(upload.productId)
+                    .map(Product::getImagePublicId).orElse(null) : null;
+            if (current && productRepository.updateImage(upload.productId, result.get("secure_url"),
+                    publicId, ImageStatus.READY) > 0) {
+                productCache.invalidate(upload.productId);
+                succeeded.incrementAndGet();
+                LOGGER.info("Image of product " + upload.productId + " uploaded: " + result.get("secure_url"));
+                // Also when it is the same image uploaded again: this upload took a reference of its own
+                imageAssetService.release(replacedPublicId);
+            } else {
+                // Superseded, cancelled or the product was deleted while uploading
+                superseded.incrementAndGet();
+                imageAssetService.release(publicId);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Could not save the uploaded image of product " + upload.productId, e);
+            failed.incrementAndGet();
+        } finally {
+            finish(upload);
+        }
+    }
+
+    private void giveUp(Upload upload, String error) {
+        if (!uploads.remove(upload.productId, upload)) {
+            superseded.incrementAndGet();
+            finish(upload);
+            return;
+        }
+        failed.incrementAndGet();
+        try {
+            String message = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+            productRepository.updateImageStatus(upload.productId, ImageStatus.FAILED, message);
+            productCache.invalidate(upload.productId);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Could not mark the image upload of product " + upload.productId + " as failed", e);
+        } finally {
+            finish(upload);
+        }
+    }
+
+    private void finish(Upload upload) {
+        deleteQuietly(upload.image.file());
+        slots.release();
+    }
+
+    // initial-backoff doubled for every failed attempt so far, capped at max-backoff
+    long backoffMillis(int failedAttempts) {
+        long delay = initialBackoffMillis << Math.min(failedAttempts - 1, 30);
+        return delay < 0 ? maxBackoffMillis : Math.min(delay, maxBackoffMillis);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete temp file " + file, e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+@Service
+public class ProductService {
+
+    private static final Logger LOGGER = Logger.getLogger(ProductService.class.getName());
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Get a product by its ID, served from the product cache when possible
+     *
+     * @param id Product ID to look up
+     * @return Optional containing the product if found
+     */
+    public Optional<Product> getProductById(long id) {
+        return productCache.get(id, productRepository::findById);
+    }
+
+    /**
+     * Save a product and drop any cached copy of it. The stock is only written when the product is
+     * created; use setStock to change it afterwards.
+     *
+     * @param product Product to create or update
+     * @return The saved product
+     */
+    public Product saveProduct(Product product) {
+        Product savedProduct = productRepository.save(product);
+        productCache.invalidate(savedProduct.getId());
+        return savedProduct;
+    }
+
+    /**
+     * Set the stock on hand of a product; InventoryService drops any cached copy of it
+     *
+     * @param id Product ID
+     * @param stock New stock on hand
+     */
+    public void setStock(long id, int stock) {
+        inventoryService.setStock(id, stock);
+    }
+
+    /**
+     * Delete a product and drop any cached copy of it
+     *
+     * @param id Product ID to delete
+     */
+    public void deleteProduct(long id) {
+        productRepository.deleteById(id);
+        productCache.invalidate(id);
+    }
+
+    /**
+     * Get the product cache counters
+     *
+     * @return Map of cache statistics
+     */
+    public Map<String, Object> getCacheStats() {
+        return productCache.getStats();
+    }
+
+    /**
+     * Get one keyset page of products ordered by id
+     *
+     * @param afterId Cursor: only products with an id greater than this are returned (null for the first page)
+     * @param limit Requested page size, clamped to 1..MAX_PAGE_SIZE (null for the default)
+     * @return Response body with the products, the page size and the cursor for the next page (null on the last page)
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getProductPage(Long afterId, Integer limit) {
+        long cursor = afterId != null ? Math.max(afterId, 0L) : 0L;
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_PAGE_SIZE;
+
+        Slice<Product> slice = productRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.ofSize(pageSize));
+
+        Long nextCursor = null;
+        if (slice.hasNext() && slice.hasContent()) {
+            nextCursor = slice.getContent().get(slice.getNumberOfElements() - 1).getId();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", slice.getContent());
+        response.put("limit", pageSize);
+        response.put("nextCursor", nextCursor);
+        return response;
+    }
+
+    /**
+     * Write the whole catalog as a JSON array, row by row as the JDBC cursor produces them.
+     * Each product is detached once written so the persistence context stays empty.
+     *
+     * @param outputStream Response stream to write to (not closed by this method)
+     * @throws IOException if writing to the stream fails
+     */
+    @Transactional(readOnly = true)
+    public void writeAllProducts(OutputStream outputStream) throws IOException {
+        // Let the servlet buffer decide when to flush instead of flushing after every row
+        ObjectWriter writer = objectMapper.writerFor(Product.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+        try (Stream<Product> products = productRepository.streamAllByOrderByIdAsc();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (Product product : (Iterable<Product>) products::iterator) {
+                writer.writeValue(generator, product);
+                entityManager.detach(product);
+                count++;
+            }
+            generator.writeEndArray();
+        }
+        LOGGER.fine("Streamed " + count + " products");
+    }
+}
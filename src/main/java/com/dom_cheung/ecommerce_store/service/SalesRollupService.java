@@ -0,0 +1,465 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.DailySales;
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderItem;
+import com.dom_cheung.ecommerce_store.model.ProductSales;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Daily sales rollups (orders, revenue and units sold, overall and per product) for the admin dashboard.
+ *
+ * An order is added when the transaction that creates it commits and subtracted again when its
+ * cancellation commits, always on the day the order was placed. The changes are summed in memory and
+ * written every flush-interval-ms as relative UPDATEs (an INSERT for a day not seen yet), so checkouts
+ * never wait on the shared row of the current day. Reads go to the rollup tables only and cost one row
+ * per day, or per day and product, in the requested range, however many orders there are.
+ *
+ * A rebuild regenerates the rollups from orders and order_items, one range of days per task on
+ * rebuild-threads threads. It is the repair path: changes that were not written yet when an instance
+ * stopped are missing until the next rebuild, and orders placed while a rebuild runs may be counted twice.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final Logger LOGGER = Logger.getLogger(SalesRollupService.class.getName());
+
+    public static final int DEFAULT_RANGE_DAYS = 30;
+    public static final int MAX_RANGE_DAYS = 1096;
+
+    public static final int DEFAULT_TOP_PRODUCTS = 20;
+    public static final int MAX_TOP_PRODUCTS = 500;
+
+    private static final String DAILY_COLUMNS = "sales_date, order_count, revenue, units_sold";
+
+    // Cancelled orders are left out, exactly as the incremental updates subtract them
+    private static final String REBUILD_DAYS_SQL =
+            "insert into sales_daily (" + DAILY_COLUMNS + ") "
+                    + "select cast(o.order_date as date), count(*), sum(o.total_amount), "
+                    + "sum((select coalesce(sum(i.quantity), 0) from order_items i where i.order_id = o.id)) "
+                    + "from orders o where o.status <> 'CANCELLED' and o.order_date >= ? and o.order_date < ? "
+                    + "group by cast(o.order_date as date)";
+
+    private static final String REBUILD_PRODUCTS_SQL =
+            "insert into sales_daily_product (sales_date, product_id, order_count, revenue, units_sold) "
+                    + "select cast(o.order_date as date), i.product_id, count(distinct o.id), sum(i.subtotal), sum(i.quantity) "
+                    + "from orders o join order_items i on i.order_id = o.id "
+                    + "where o.status <> 'CANCELLED' and o.order_date >= ? and o.order_date < ? "
+                    + "group by cast(o.order_date as date), i.product_id";
+
+    private static final RowMapper<DailySales> DAILY_ROW_MAPPER = (rs, rowNum) -> new DailySales(
+            rs.getObject("sales_date", LocalDate.class),
+            rs.getLong("order_count"),
+            rs.getDouble("revenue"),
+            rs.getLong("units_sold"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final int rebuildThreads;
+    private final int rebuildChunkDays;
+
+    // Committed changes not written yet, per day and per day and product
+    private final Map<LocalDate, Totals> pendingDays = new ConcurrentHashMap<>();
+    private final Map<ProductDay, Totals> pendingProducts = new ConcurrentHashMap<>();
+
+    private final AtomicLong ordersRecorded = new AtomicLong();
+    private final AtomicLong cancellationsRecorded = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile long lastRebuildMillis;
+    private volatile LocalDateTime lastRebuildAt;
+
+    public SalesRollupService(@Value("${store.sales-rollup.rebuild-threads:4}") int rebuildThreads,
+                              @Value("${store.sales-rollup.rebuild-chunk-days:31}") int rebuildChunkDays) {
+        this.rebuildThreads = Math.max(1, rebuildThreads);
+        this.rebuildChunkDays = Math.max(1, rebuildChunkDays);
+    }
+
+    /**
+     * Count a new order in the rollups of the day it was placed.
+     * Inside a transaction this happens only once the transaction commits.
+     *
+     * @param order Order with its date, total and items
+     */
+    public void recordOrder(Order order) {
+        record(order, 1, ordersRecorded);
+    }
+
+    /**
+     * Take a cancelled order out of the rollups of the day it was placed.
+     * Inside a transaction this happens only once the transaction commits.
+     *
+     * @param order Order with its date, total and items
+     */
+    public void recordCancellation(Order order) {
+        record(order, -1, cancellationsRecorded);
+    }
+
+    /**
+     * Write the changes collected since the last run to the rollup tables in one transaction.
+     * Changes that fail to write are kept and retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${store.sales-rollup.flush-interval-ms:5000}",
+            initialDelayString = "${store.sales-rollup.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<LocalDate, Totals> days = drain(pendingDays);
+        Map<ProductDay, Totals> products = drain(pendingProducts);
+        if (days.isEmpty() && products.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> dayRows = new ArrayList<>(days.size());
+        days.forEach((day, totals) -> dayRows.add(
+                new Object[]{totals.orders(), totals.revenue(), totals.units(), day}));
+        List<Object[]> productRows = new ArrayList<>(products.size());
+        products.forEach((key, totals) -> productRows.add(
+                new Object[]{totals.orders(), totals.revenue(), totals.units(), key.day(), key.productId()}));
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                addTo("sales_daily", new String[]{"sales_date"}, dayRows);
+                addTo("sales_daily_product", new String[]{"sales_date", "product_id"}, productRows);
+            });
+            flushes.incrementAndGet();
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            LOGGER.log(Level.SEVERE, "Failed to write sales rollups for " + days.size() + " days, will retry", e);
+            days.forEach((day, totals) -> pendingDays.merge(day, totals, Totals::plus));
+            products.forEach((key, totals) -> pendingProducts.merge(key, totals, Totals::plus));
+        }
+    }
+
+    /**
+     * Get the sales of every day in a range, oldest first; days without sales are included with zeros
+     *
+     * @param from First day (inclusive), null for DEFAULT_RANGE_DAYS before "to"
+     * @param to Last day (inclusive), null for today
+     * @return Map with "from", "to", the per-day sales ("days") and their sum ("totals")
+     * @throws IllegalArgumentException if from is after to or the range is longer than MAX_RANGE_DAYS
+     */
+    public Map<String, Object> getDailySales(LocalDate from, LocalDate to) {
+        LocalDate last = to != null ? to : LocalDate.now();
+        LocalDate first = from != null ? from : last.minusDays(DEFAULT_RANGE_DAYS - 1);
+        checkRange(first, last);
+
+        List<DailySales> rows = jdbcTemplate.query(
+                "select " + DAILY_COLUMNS + " from sales_daily where sales_date >= ? and sales_date <= ? order by sales_date",
+                DAILY_ROW_MAPPER, first, last);
+        return dailyResponse(first, last, rows);
+    }
+
+    /**
+     * Get the sales of one product for every day in a range, oldest first
+     *
+     * @param productId Product ID
+     * @param from First day (inclusive), null for DEFAULT_RANGE_DAYS before "to"
+     * @param to Last day (inclusive), null for today
+     * @return Map with "productId", "from", "to", the per-day sales ("days") and their sum ("totals")
+     * @throws IllegalArgumentException if from is after to or the range is longer than MAX_RANGE_DAYS
+     */
+    public Map<String, Object> getProductDailySales(long productId, LocalDate from, LocalDate to) {
+        LocalDate last = to != null ? to : LocalDate.now();
+        LocalDate first = from != null ? from : last.minusDays(DEFAULT_RANGE_DAYS - 1);
+        checkRange(first, last);
+
+        List<DailySales> rows = jdbcTemplate.query(
+                "select " + DAILY_COLUMNS + " from sales_daily_product "
+                        + "where sales_date >= ? and sales_date <= ? and product_id = ? order by sales_date",
+                DAILY_ROW_MAPPER, first, last, productId);
+        Map<String, Object> response = dailyResponse(first, last, rows);
+        response.put("productId", productId);
+        return response;
+    }
+
+    /**
+     * Get the best selling products of a range of days, by revenue
+     *
+     * @param from First day (inclusive), null for DEFAULT_RANGE_DAYS before "to"
+     * @param to Last day (inclusive), null for today
+     * @param limit Number of products (capped at MAX_TOP_PRODUCTS, defaults to DEFAULT_TOP_PRODUCTS)
+     * @return Map with "from", "to", "limit" and the products ("products"), highest revenue first
+     * @throws IllegalArgumentException if from is after to or the range is longer than MAX_RANGE_DAYS
+     */
+    public Map<String, Object> getTopProducts(LocalDate from, LocalDate to, Integer limit) {
+        LocalDate last = to != null ? to : LocalDate.now();
+        LocalDate first = from != null ? from : last.minusDays(DEFAULT_RANGE_DAYS - 1);
+        checkRange(first, last);
+        int size = limit != null ? Math.max(1, Math.min(limit, MAX_TOP_PRODUCTS)) : DEFAULT_TOP_PRODUCTS;
+
+        List<ProductSales> products = jdbcTemplate.query(
+                "select product_id, sum(order_count) order_count, sum(revenue) revenue, sum(units_sold) units_sold "
+                        + "from sales_daily_product where sales_date >= ? and sales_date <= ? "
+                        + "group by product_id order by sum(revenue) desc, product_id fetch first ? rows only",
+                (rs, rowNum) -> new ProductSales(
+                        rs.getLong("product_id"),
+                        rs.getLong("order_count"),
+                        rs.getDouble("revenue"),
+                        rs.getLong("units_sold")),
+                first, last, size);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("from", first);
+        response.put("to", last);
+        response.put("limit", size);
+        response.put("products", products);
+        return response;
+    }
+
+    /**
+     * Regenerate the rollups from the order history. The days between the first and the last order are
+     * split into ranges of rebuild-chunk-days, and each range is replaced in its own transaction, on up to
+     * rebuild-threads threads at once. Changes waiting to be written are dropped, as they are part of
+     * the history being read.
+     *
+     * @return Map with the number of days with sales ("days"), ranges rebuilt ("chunks"), threads used
+     *         and the duration ("ms")
+     * @throws IllegalStateException if rebuilding a range fails; ranges already rebuilt stay rebuilt
+     */
+    public synchronized Map<String, Object> rebuild() {
+        long started = System.nanoTime();
+        pendingDays.clear();
+        pendingProducts.clear();
+
+        LocalDate[] history = jdbcTemplate.queryForObject(
+                "select min(order_date) first_order, max(order_date) last_order from orders",
+                (rs, rowNum) -> {
+                    Timestamp firstOrder = rs.getTimestamp("first_order");
+                    Timestamp lastOrder = rs.getTimestamp("last_order");
+                    return firstOrder == null ? null : new LocalDate[]{
+                            firstOrder.toLocalDateTime().toLocalDate(), lastOrder.toLocalDateTime().toLocalDate()};
+                });
+
+        List<LocalDate[]> chunks = new ArrayList<>();
+        if (history != null) {
+            LocalDate end = history[1].plusDays(1);
+            for (LocalDate start = history[0]; start.isBefore(end); start = start.plusDays(rebuildChunkDays)) {
+                LocalDate chunkEnd = start.plusDays(rebuildChunkDays);
+                chunks.add(new LocalDate[]{start, chunkEnd.isBefore(end) ? chunkEnd : end});
+            }
+        }
+
+        int threads = Math.max(1, Math.min(rebuildThreads, chunks.size()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "sales-rollup-rebuild-" + threadNumber.getAndIncrement()));
+        int days = 0;
+        try {
+            List<Future<Integer>> results = new ArrayList<>(chunks.size());
+            for (LocalDate[] chunk : chunks) {
+                results.add(executor.submit(() -> transactionTemplate.execute(status -> rebuildDays(chunk[0], chunk[1]))));
+            }
+            for (Future<Integer> result : results) {
+                days += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sales rollup rebuild was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sales rollup rebuild failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Rows outside the history are left over from deleted orders
+        if (history == null) {
+            jdbcTemplate.update("delete from sales_daily");
+            jdbcTemplate.update("delete from sales_daily_product");
+        } else {
+            jdbcTemplate.update("delete from sales_daily where sales_date < ? or sales_date > ?", history[0], history[1]);
+            jdbcTemplate.update("delete from sales_daily_product where sales_date < ? or sales_date > ?", history[0], history[1]);
+        }
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        rebuilds.incrementAndGet();
+        lastRebuildMillis = elapsedMillis;
+        lastRebuildAt = LocalDateTime.now();
+        LOGGER.info("Rebuilt sales rollups for " + days + " days in " + chunks.size() + " chunks on "
+                + threads + " threads (" + elapsedMillis + " ms)");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("days", days);
+        response.put("chunks", chunks.size());
+        response.put("threads", threads);
+        response.put("ms", elapsedMillis);
+        return response;
+    }
+
+    /**
+     * Get the rollup counters
+     *
+     * @return Map of orders and cancellations recorded, changes waiting to be written, flush and rebuild counts
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("ordersRecorded", ordersRecorded.get());
+        result.put("cancellationsRecorded", cancellationsRecorded.get());
+        result.put("pendingDays", pendingDays.size());
+        result.put("pendingProductDays", pendingProducts.size());
+        result.put("flushes", flushes.get());
+        result.put("flushFailures", flushFailures.get());
+        result.put("rebuilds", rebuilds.get());
+        result.put("lastRebuildMs", lastRebuildMillis);
+        result.put("lastRebuildAt", lastRebuildAt);
+        return result;
+    }
+
+    private void record(Order order, int sign, AtomicLong counter) {
+        // Worked out now: the entity may have changed or been detached by the time the transaction commits
+        LocalDate day = order.getOrderDate().toLocalDate();
+        long units = 0;
+        Map<Long, Totals> lines = new HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            lines.merge(item.getProductId(),
+                    new Totals(sign, sign * item.getSubtotal(), (long) sign * item.getQuantity()),
+                    (a, b) -> new Totals(sign, a.revenue() + b.revenue(), a.units() + b.units()));
+            units += item.getQuantity();
+        }
+        Totals orderTotals = new Totals(sign, sign * order.getTotalAmount(), sign * units);
+
+        Runnable apply = () -> {
+            pendingDays.merge(day, orderTotals, Totals::plus);
+            lines.forEach((productId, totals) -> pendingProducts.merge(new ProductDay(day, productId), totals, Totals::plus));
+            counter.incrementAndGet();
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    // Take every pending change out of the map; a change merged in concurrently lands in a new entry
+    private static <K> Map<K, Totals> drain(Map<K, Totals> pending) {
+        Map<K, Totals> drained = new HashMap<>();
+        for (K key : pending.keySet()) {
+            Totals totals = pending.remove(key);
+            if (totals != null && !totals.isZero()) {
+                drained.put(key, totals);
+            }
+        }
+        return drained;
+    }
+
+    // Add each row's totals to its existing rollup row, then insert the rows that did not exist yet.
+    // Each row is {orders, revenue, units, key columns...}
+    private void addTo(String table, String[] keyColumns, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String where = String.join(" = ? and ", keyColumns) + " = ?";
+        int[] updated = jdbcTemplate.batchUpdate("update " + table
+                + " set order_count = order_count + ?, revenue = revenue + ?, units_sold = units_sold + ? where " + where, rows);
+
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (updated[i] == 0) {
+                missing.add(rows.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            // Another instance inserting the same row first fails this flush; it is retried as an update
+            jdbcTemplate.batchUpdate("insert into " + table + " (order_count, revenue, units_sold, "
+                    + String.join(", ", keyColumns) + ") values (?, ?, ?" + ", ?".repeat(keyColumns.length) + ")", missing);
+        }
+    }
+
+    // Replace the rollups of the days in [from, to) with totals computed from the orders of those days
+    private int rebuildDays(LocalDate from, LocalDate to) {
+        Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(to.atStartOfDay());
+        jdbcTemplate.update("delete from sales_daily where sales_date >= ? and sales_date < ?", from, to);
+        jdbcTemplate.update("delete from sales_daily_product where sales_date >= ? and sales_date < ?", from, to);
+        int days = jdbcTemplate.update(REBUILD_DAYS_SQL, start, end);
+        jdbcTemplate.update(REBUILD_PRODUCTS_SQL, start, end);
+        return days;
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("At most " + MAX_RANGE_DAYS + " days can be requested at once");
+        }
+    }
+
+    private static Map<String, Object> dailyResponse(LocalDate from, LocalDate to, List<DailySales> rows) {
+        Map<LocalDate, DailySales> byDay = new HashMap<>();
+        rows.forEach(row -> byDay.put(row.date(), row));
+
+        List<DailySales> days = new ArrayList<>();
+        long orderCount = 0;
+        double revenue = 0.0;
+        long unitsSold = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            DailySales sales = byDay.getOrDefault(day, new DailySales(day, 0, 0.0, 0));
+            days.add(sales);
+            orderCount += sales.orderCount();
+            revenue += sales.revenue();
+            unitsSold += sales.unitsSold();
+        }
+
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("orderCount", orderCount);
+        totals.put("revenue", revenue);
+        totals.put("unitsSold", unitsSold);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("from", from);
+        response.put("to", to);
+        response.put("days", days);
+        response.put("totals", totals);
+        return response;
+    }
+
+    private record ProductDay(LocalDate day, Long productId) {
+    }
+
+    private record Totals(long orders, double revenue, long units) {
+
+        Totals plus(Totals other) {
+            return new Totals(orders + other.orders, revenue + other.revenue, units + other.units);
+        }
+
+        boolean isZero() {
+            return orders == 0 && units == 0 && revenue == 0.0;
+        }
+    }
+}
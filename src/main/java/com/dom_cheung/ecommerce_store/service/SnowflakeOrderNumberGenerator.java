@@ -0,0 +1,222 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Snowflake-style order numbers: 41 bits of milliseconds since 2025-01-01, 10 bits of node id
+ * and a 12 bit per-millisecond sequence, written after a readable prefix (e.g. "ORD-8812391825408").
+ *
+ * The last (timestamp, sequence) pair is kept in a single AtomicLong and advanced with a CAS, so
+ * numbers from one node are strictly increasing across threads without locking. When the sequence
+ * of a millisecond runs out, or the clock steps backwards, the generator keeps counting into the
+ * following millisecond instead of waiting.
+ *
+ * Each instance must run with its own node id. Either it is configured (store.order-number.node-id)
+ * or, by default, leased from the order_number_nodes table at startup: the instance takes a free id,
+ * or one whose lease ran out, and renews the lease while it runs. Numbers are only issued while the
+ * last renewal is less than half a lease-duration old, so an instance that lost the database (or
+ * stalled) stops before another instance may take its id over; clocks of the instances may differ
+ * by up to that much. If the lease was taken over anyway, the next renewal leases a new id.
+ * Renewals run on a thread of their own rather than on the shared scheduler, so a slow scheduled job
+ * elsewhere cannot hold them up until the lease lapses and checkout stops.
+ */
+@Component
+public class SnowflakeOrderNumberGenerator implements OrderNumberGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(SnowflakeOrderNumberGenerator.class.getName());
+
+    static final long EPOCH = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+    static final int NODE_ID_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /**
+     * The node id in use and until when (System.nanoTime) it may be used
+     */
+    private record Lease(long nodeId, long validUntilNanos) {
+    }
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    private final String prefix;
+
+    // Configured node id, or -1 to lease one
+    private final int configuredNodeId;
+    private final Duration leaseDuration;
+    private final String owner = UUID.randomUUID().toString();
+
+    @Value("${store.order-number.lease-renew-interval-ms:60000}")
+    private long renewIntervalMillis = 60000;
+
+    private volatile Lease lease;
+
+    // Runs renewLease while a node id is leased
+    private ScheduledExecutorService renewer;
+
+    // (milliseconds since EPOCH << SEQUENCE_BITS) | sequence of the last issued id
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeOrderNumberGenerator(@Value("${store.order-number.prefix:ORD-}") String prefix,
+                                         @Value("${store.order-number.node-id:-1}") int nodeId,
+                                         @Value("${store.order-number.lease-duration:10m}") Duration leaseDuration) {
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Order number node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.prefix = prefix;
+        this.configuredNodeId = nodeId;
+        this.leaseDuration = leaseDuration;
+        if (nodeId >= 0) {
+            this.lease = new Lease(nodeId, Long.MAX_VALUE);
+            LOGGER.info("Order number generator using configured node id " + nodeId);
+        }
+    }
+
+    /**
+     * Lease a node id when none is configured
+     *
+     * @throws IllegalStateException if every node id is leased by a running instance
+     */
+    @PostConstruct
+    public void init() {
+        if (configuredNodeId < 0) {
+            lease = acquire();
+            renewer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("order-number-lease").daemon().factory());
+            renewer.scheduleWithFixedDelay(this::renewLease, renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public String nextOrderNumber() {
+        return prefix + nextId();
+    }
+
+    /**
+     * Generate the next numeric id
+     *
+     * @return A positive id, strictly greater than any id this instance returned before
+     * @throws IllegalStateException if this instance has no valid node id lease
+     */
+    public long nextId() {
+        Lease current = lease;
+        if (current == null || (current.validUntilNanos() != Long.MAX_VALUE && System.nanoTime() - current.validUntilNanos() > 0)) {
+            throw new IllegalStateException("Order number node id lease could not be renewed, not issuing order numbers");
+        }
+        long now = System.currentTimeMillis() - EPOCH;
+        // Either start a new millisecond or bump the sequence; a sequence overflow carries into the timestamp bits
+        long state = lastState.updateAndGet(last -> Math.max(now << SEQUENCE_BITS, last + 1));
+
+        long timestamp = state >>> SEQUENCE_BITS;
+        long sequence = state & SEQUENCE_MASK;
+        return (timestamp << (NODE_ID_BITS + SEQUENCE_BITS)) | (current.nodeId() << SEQUENCE_BITS) | sequence;
+    }
+
+    public long getNodeId() {
+        Lease current = lease;
+        return current != null ? current.nodeId() : -1;
+    }
+
+    /**
+     * Extend the node id lease; if another instance has taken it over, lease a new one
+     */
+    public synchronized void renewLease() {
+        Lease current = lease;
+        if (configuredNodeId >= 0 || current == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int updated = jdbcTemplate.update("update order_number_nodes set lease_until = ? where node_id = ? and owner = ?",
+                    leaseUntil(), current.nodeId(), owner);
+            if (updated > 0) {
+                lease = new Lease(current.nodeId(), start + leaseDuration.toNanos() / 2);
+            } else {
+                LOGGER.severe("Order number node id " + current.nodeId() + " was taken over by another instance, leasing a new one");
+                lease = acquire();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not renew order number node id lease " + current.nodeId(), e);
+        }
+    }
+
+    /**
+     * Give the leased node id back, so a restarted instance can have it right away
+     */
+    @PreDestroy
+    public synchronized void release() {
+        Lease current = lease;
+        if (configuredNodeId >= 0 || current == null) {
+            return;
+        }
+        lease = null;
+        renewer.shutdownNow();
+        try {
+            jdbcTemplate.update("delete from order_number_nodes where node_id = ? and owner = ?", current.nodeId(), owner);
+        } catch (DataAccessException e) {
+            LOGGER.log(Level.WARNING, "Could not release order number node id " + current.nodeId(), e);
+        }
+    }
+
+    // Take the lowest free node id, or else one whose lease has run out
+    private Lease acquire() {
+        long start = System.nanoTime();
+        List<Integer> leased = jdbcTemplate.queryForList("select node_id from order_number_nodes", Integer.class);
+        Set<Integer> taken = new HashSet<>(leased);
+        for (int nodeId = 0; nodeId <= MAX_NODE_ID; nodeId++) {
+            if (taken.contains(nodeId)) {
+                continue;
+            }
+            try {
+                jdbcTemplate.update("insert into order_number_nodes (node_id, owner, lease_until) values (?, ?, ?)",
+                        nodeId, owner, leaseUntil());
+                return leased(nodeId, start);
+            } catch (DuplicateKeyException e) {
+                // Another instance took it in the meantime
+            }
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Integer> expired = jdbcTemplate.queryForList(
+                "select node_id from order_number_nodes where lease_until < ? order by lease_until", Integer.class, now);
+        for (int nodeId : expired) {
+            if (jdbcTemplate.update("update order_number_nodes set owner = ?, lease_until = ? where node_id = ? and lease_until < ?",
+                    owner, leaseUntil(), nodeId, now) > 0) {
+                return leased(nodeId, start);
+            }
+        }
+        throw new IllegalStateException("All " + (MAX_NODE_ID + 1) + " order number node ids are leased by running instances");
+    }
+
+    private Lease leased(int nodeId, long start) {
+        LOGGER.info("Order number generator leased node id " + nodeId);
+        return new Lease(nodeId, start + leaseDuration.toNanos() / 2);
+    }
+
+    private Timestamp leaseUntil() {
+        return Timestamp.valueOf(LocalDateTime.now().plus(leaseDuration));
+    }
+}
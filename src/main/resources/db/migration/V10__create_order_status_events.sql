@@ -0,0 +1,18 @@
+-- Order status changes, written by OrderEventService once they commit, so every instance can push the
+-- changes made on the others to the event streams it holds (each instance polls for rows it did not
+-- write). Rows are only needed for a short while and are deleted after store.order-events.retention.
+
+create table if not exists order_status_events (
+    id bigint generated by default as identity,
+    instance_id varchar(36) not null,
+    user_id bigint not null,
+    order_number varchar(255) not null,
+    status varchar(255) not null,
+    previous_status varchar(255) not null,
+    version bigint not null,
+    changed_at timestamp(6) not null,
+    primary key (id)
+);
+
+-- Polling for recent changes, and deleting old ones
+create index if not exists idx_order_status_events_changed_at on order_status_events (changed_at);
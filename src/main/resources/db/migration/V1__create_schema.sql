@@ -0,0 +1,70 @@
+-- Schema of the store, matching the JPA entities (Hibernate only validates it).
+-- Written with IF NOT EXISTS so it is a no-op on databases created earlier by ddl-auto=update.
+
+create sequence if not exists orders_seq start with 1 increment by 50;
+create sequence if not exists order_items_seq start with 1 increment by 50;
+create sequence if not exists cart_items_seq start with 1 increment by 50;
+
+create table if not exists users (
+    id bigint generated by default as identity,
+    username varchar(255) not null unique,
+    password varchar(255) not null,
+    enabled boolean not null,
+    primary key (id)
+);
+
+create table if not exists user_roles (
+    user_id bigint not null references users (id),
+    role varchar(255)
+);
+
+create table if not exists products (
+    id bigint generated by default as identity,
+    name varchar(255) not null,
+    description text,
+    price float(53) not null,
+    image_url varchar(512),
+    image_public_id varchar(255),
+    stock integer,
+    primary key (id)
+);
+
+create table if not exists orders (
+    id bigint not null,
+    user_id bigint not null,
+    order_number varchar(255) not null unique,
+    order_date timestamp(6) not null,
+    status varchar(255) check (status in ('PENDING', 'PROCESSING', 'SHIPPED', 'DELIVERED', 'CANCELLED')),
+    shipping_address varchar(255),
+    total_amount float(53) not null,
+    version bigint default 0 not null,
+    primary key (id)
+);
+
+create table if not exists order_items (
+    id bigint not null,
+    order_id bigint not null references orders (id),
+    product_id bigint not null,
+    product_name varchar(255) not null,
+    product_price float(53) not null,
+    product_image_url varchar(255),
+    quantity integer not null,
+    subtotal float(53) not null,
+    primary key (id)
+);
+
+create table if not exists cart_items (
+    id bigint not null,
+    user_id bigint not null references users (id),
+    product_id bigint not null,
+    name varchar(255),
+    price float(53) not null,
+    image_url varchar(255),
+    quantity integer not null,
+    primary key (id),
+    unique (user_id, product_id)
+);
+
+-- Columns added after the first release, for databases that ddl-auto=update created before them
+alter table products add column if not exists stock integer;
+alter table orders add column if not exists version bigint default 0 not null;
@@ -0,0 +1,14 @@
+-- Indexes for the queries the store runs on every request. Foreign keys are not indexed automatically.
+-- cart_items needs no extra index: its unique (user_id, product_id) constraint already leads with user_id.
+
+-- Order history, keyset paged (user_id = ? order by order_date desc, id desc)
+create index if not exists idx_orders_user_date on orders (user_id, order_date, id);
+
+-- Stale PENDING order sweep (status = ? and order_date < ?)
+create index if not exists idx_orders_status_date on orders (status, order_date);
+
+-- Loading the items of an order
+create index if not exists idx_order_items_order_id on order_items (order_id);
+
+-- Loading a user's roles on every authentication
+create index if not exists idx_user_roles_user_id on user_roles (user_id);
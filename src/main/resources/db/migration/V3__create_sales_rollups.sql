@@ -0,0 +1,21 @@
+-- Sales rollups for the admin analytics dashboard, one row per day and per day and product.
+-- Kept up to date incrementally by SalesRollupService (cancelled orders are subtracted again) and
+-- regenerated from orders/order_items by its rebuild. Dashboards read only these tables.
+
+create table if not exists sales_daily (
+    sales_date date not null,
+    order_count bigint not null,
+    revenue float(53) not null,
+    units_sold bigint not null,
+    primary key (sales_date)
+);
+
+-- The primary key leads with the date, which serves both the top-products and per-product range reads
+create table if not exists sales_daily_product (
+    sales_date date not null,
+    product_id bigint not null,
+    order_count bigint not null,
+    revenue float(53) not null,
+    units_sold bigint not null,
+    primary key (sales_date, product_id)
+);
@@ -0,0 +1,6 @@
+-- State of a product image that is being uploaded in the background (see ProductImageService).
+-- Null for products whose image was set directly, including every product created before this script.
+
+alter table products add column if not exists image_status varchar(20);
+
+alter table products add column if not exists image_error varchar(512);
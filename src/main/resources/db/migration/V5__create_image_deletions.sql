@@ -0,0 +1,16 @@
+-- Images to delete from the image storage, written in the same request as the product change that
+-- orphaned them and drained in batches by ImageDeletionService. A row is removed once its image is gone;
+-- next_attempt_at is null for images it gave up on after max-attempts.
+
+create table if not exists image_deletions (
+    id bigint generated by default as identity,
+    public_id varchar(255) not null,
+    enqueued_at timestamp(6) not null,
+    attempts integer not null,
+    next_attempt_at timestamp(6),
+    last_error varchar(512),
+    primary key (id)
+);
+
+-- Due rows, oldest first
+create index if not exists idx_image_deletions_next_attempt on image_deletions (next_attempt_at, id);
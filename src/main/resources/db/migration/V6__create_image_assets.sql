@@ -0,0 +1,17 @@
+-- Content-addressed index of uploaded images, kept by ImageAssetService: an upload whose SHA-256
+-- digest is already here reuses the stored image instead of uploading it again. ref_count is the
+-- number of products using the image; the row is removed, and the image queued for deletion, when
+-- the last one lets go of it. Images uploaded before this table existed are not in it.
+
+create table if not exists image_assets (
+    digest varchar(64) not null,
+    public_id varchar(255) not null,
+    secure_url varchar(1024) not null,
+    size_bytes bigint not null,
+    ref_count integer not null,
+    created_at timestamp(6) not null,
+    primary key (digest)
+);
+
+-- Releasing an image by the public ID stored on the product
+create unique index if not exists idx_image_assets_public_id on image_assets (public_id);
@@ -0,0 +1,10 @@
+-- Node ids leased by SnowflakeOrderNumberGenerator, so no two running instances put the same node id
+-- in their order numbers. An instance holds one row while it runs and renews lease_until; a row whose
+-- lease has run out (the instance died) may be taken over by another instance.
+
+create table if not exists order_number_nodes (
+    node_id integer not null,
+    owner varchar(64) not null,
+    lease_until timestamp(6) not null,
+    primary key (node_id)
+);
@@ -0,0 +1,9 @@
+-- Version of each user's saved cart, kept by CartService. Every write of cart_items bumps it with a
+-- conditional update, so an instance holding an older copy of the cart in memory notices that another
+-- instance wrote the cart since, instead of overwriting that write.
+
+create table if not exists cart_versions (
+    user_id bigint not null references users (id),
+    version bigint not null,
+    primary key (user_id)
+);
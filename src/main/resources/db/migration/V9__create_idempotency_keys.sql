@@ -0,0 +1,16 @@
+-- Idempotency-Key of each checkout, kept by IdempotencyStore for store.idempotency.ttl together with the
+-- response it got, so a retry reaching any instance is answered with that response instead of placing a
+-- second order. status_code and response_body stay null while the first request is still running.
+
+create table if not exists idempotency_keys (
+    user_id bigint not null references users (id),
+    idempotency_key varchar(255) not null,
+    fingerprint varchar(64) not null,
+    status_code integer,
+    response_body text,
+    created_at timestamp(6) not null,
+    primary key (user_id, idempotency_key)
+);
+
+-- Purging expired keys
+create index if not exists idx_idempotency_keys_created_at on idempotency_keys (created_at);
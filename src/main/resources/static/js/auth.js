@@ -69,9 +69,10 @@ document.addEventListener('DOMContentLoaded', () => {
                     id: data.id
                 }));
 
-                // Sync shopping cart with server
-                syncCartWithServer();
-
+                // Merge the guest cart into the saved cart, then redirect
+                return mergeCartWithServer();
+            })
+            .then(() => {
                 // Check if there's a redirect URL saved
                 let redirectUrl = sessionStorage.getItem('redirectAfterLogin');
                 console.log('Redirect URL from sessionStorage:', redirectUrl);
@@ -172,29 +173,32 @@ document.addEventListener('DOMContentLoaded', () => {
             });
     });
 
-    // Function to sync shopping cart with server
-    function syncCartWithServer() {
+    // Merge the local (guest) cart into the user's saved cart and keep the merged result locally
+    function mergeCartWithServer() {
         const cart = JSON.parse(localStorage.getItem('shoppingCart')) || [];
 
-        if (cart.length > 0) {
-            fetch('/api/users/cart', {
-                method: 'POST',
-                headers: {
-                    'Content-Type': 'application/json',
-                    'Authorization': `Bearer ${localStorage.getItem('authToken')}`
-                },
-                body: JSON.stringify({ items: cart })
+        return fetch('/api/users/cart/merge', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+                'Authorization': `Bearer ${localStorage.getItem('authToken')}`
+            },
+            body: JSON.stringify({ items: cart })
+        })
+            .then(response => {
+                if (!response.ok) {
+                    throw new Error('Failed to merge cart');
+                }
+                return response.json();
             })
-                .then(response => {
-                    if (!response.ok) {
-                        throw new Error('Failed to sync cart');
-                    }
-                    console.log('Cart synchronized with server successfully');
-                })
-                .catch(error => {
-                    console.error('Error syncing cart with server:', error);
-                });
-        }
+            .then(data => {
+                localStorage.setItem('shoppingCart', JSON.stringify(data.items || []));
+                console.log('Cart merged with server successfully');
+            })
+            .catch(error => {
+                // Keep the local cart; it is pushed again on the next cart change
+                console.error('Error merging cart with server:', error);
+            });
     }
 
     // Check URL parameters for redirect
@@ -142,6 +142,13 @@ function handleCheckout(event) {
         items: selectedItems
     };
 
+    // One key per checkout: a retry after a network failure reuses it, so the order is not placed twice
+    let idempotencyKey = sessionStorage.getItem('checkoutIdempotencyKey');
+    if (!idempotencyKey) {
+        idempotencyKey = crypto.randomUUID();
+        sessionStorage.setItem('checkoutIdempotencyKey', idempotencyKey);
+    }
+
     // Show processing message
     checkoutMessage.textContent = 'Processing your order...';
 
@@ -150,11 +157,21 @@ function handleCheckout(event) {
         method: 'POST',
         headers: {
             'Content-Type': 'application/json',
-            'Authorization': `Bearer ${authToken}`
+            'Authorization': `Bearer ${authToken}`,
+            'Idempotency-Key': idempotencyKey
         },
         body: JSON.stringify(orderData)
     })
         .then(response => {
+            if (response.status >= 400 && response.status < 500 && response.status !== 429) {
+                // Rejected for good (e.g. not enough stock): the next attempt is a new checkout
+                sessionStorage.removeItem('checkoutIdempotencyKey');
+            }
+            if (response.status >= 500 && response.headers.get('Idempotent-Replayed') === 'true') {
+                // This checkout already failed on the server and may have been placed anyway; do not retry it blindly
+                sessionStorage.removeItem('checkoutIdempotencyKey');
+                throw new Error('Checkout failed earlier and may have been placed. Please check your orders before trying again.');
+            }
             if (!response.ok) {
                 throw new Error(`HTTP error! status: ${response.status}`);
             }
@@ -169,6 +186,7 @@ function handleCheckout(event) {
 
             // Clear selected items
             localStorage.removeItem('selectedCartItems');
+            sessionStorage.removeItem('checkoutIdempotencyKey');
 
             // Store order information for confirmation page
             sessionStorage.setItem('lastOrderNumber', data.orderNumber);
@@ -180,6 +198,8 @@ function handleCheckout(event) {
         })
         .catch(error => {
             console.error('Error placing order:', error);
-            checkoutMessage.textContent = 'Failed to place order. Please try again.';
+            checkoutMessage.textContent = error.message.startsWith('Checkout failed earlier')
+                ? error.message
+                : 'Failed to place order. Please try again.';
         });
 }
\ No newline at end of file
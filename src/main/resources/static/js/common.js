@@ -513,5 +513,91 @@ function closeModal(modal) {
     }, 300);
 }
 
+/**
+ * Follow status changes of the current user's orders as the server pushes them (Server-Sent Events).
+ * Uses fetch rather than EventSource because the stream needs the Authorization header, and
+ * reconnects whenever the stream ends or fails.
+ * @param {Function} onStatusChange - Called with each {orderNumber, status, previousStatus, version, changedAt}
+ */
+function subscribeToOrderEvents(onStatusChange) {
+    const authToken = localStorage.getItem('authToken');
+    if (!authToken || !window.ReadableStream || !window.TextDecoder) return;
+
+    // Events can arrive out of order; only the highest version of an order is current
+    const latestVersions = {};
+    let retryDelay = 1000;
+
+    function connect() {
+        fetch('/api/orders/events', {
+            headers: {
+                'Authorization': `Bearer ${authToken}`,
+                'Accept': 'text/event-stream'
+            }
+        })
+            .then(response => {
+                if (response.status === 401 || response.status === 403) {
+                    return false; // Token expired or revoked, stop following
+                }
+                if (response.status === 503) {
+                    // Server is full, come back when it says so
+                    retryDelay = (parseInt(response.headers.get('Retry-After'), 10) || 30) * 1000;
+                    return true;
+                }
+                if (!response.ok || !response.body) {
+                    throw new Error(`HTTP error! status: ${response.status}`);
+                }
+                retryDelay = 1000;
+                return readEvents(response.body.getReader()).then(() => true);
+            })
+            .catch(error => {
+                console.warn('Order event stream interrupted:', error);
+                retryDelay = Math.min(retryDelay * 2, 60000);
+                return true;
+            })
+            .then(reconnect => {
+                if (reconnect) {
+                    setTimeout(connect, retryDelay);
+                }
+            });
+    }
+
+    function readEvents(reader) {
+        const decoder = new TextDecoder();
+        let buffer = '';
+        return reader.read().then(function process({ done, value }) {
+            if (done) return;
+            buffer += decoder.decode(value, { stream: true });
+            // Events end with a blank line
+            let end;
+            while ((end = buffer.indexOf('\n\n')) >= 0) {
+                handleEvent(buffer.slice(0, end));
+                buffer = buffer.slice(end + 2);
+            }
+            return reader.read().then(process);
+        });
+    }
+
+    function handleEvent(block) {
+        let name = 'message';
+        const data = [];
+        block.split('\n').forEach(line => {
+            if (line.startsWith('event:')) {
+                name = line.slice(6).trim();
+            } else if (line.startsWith('data:')) {
+                data.push(line.slice(5));
+            }
+        });
+        if (name !== 'order-status' || data.length === 0) return; // heartbeats are comments
+
+        const event = JSON.parse(data.join('\n'));
+        const latest = latestVersions[event.orderNumber];
+        if (latest !== undefined && event.version <= latest) return;
+        latestVersions[event.orderNumber] = event.version;
+        onStatusChange(event);
+    }
+
+    connect();
+}
+
 // Call updateCartCount when the page loads
 document.addEventListener('DOMContentLoaded', updateCartCount);
\ No newline at end of file
@@ -23,6 +23,13 @@ document.addEventListener('DOMContentLoaded', () => {
     // Load order details
     loadOrderDetails(orderNumber);
 
+    // Status changes are pushed by the server instead of re-fetching the order
+    subscribeToOrderEvents(event => {
+        if (event.orderNumber === orderNumber) {
+            displayOrderStatus(event.status);
+        }
+    });
+
     // Set up event listeners
     setupEventListeners();
 });
@@ -108,6 +115,7 @@ function displayOrderDetails(order) {
     const statusElement = document.getElementById('order-status');
     statusElement.textContent = order.status;
     statusElement.className = `order-status ${order.status.toLowerCase()}`;
+    displayedStatus = order.status;
 
     // Update basic order info
     document.getElementById('order-date').textContent = orderDate;
@@ -121,6 +129,23 @@ function displayOrderDetails(order) {
     updateOrderActions(order);
 }
 
+// Status currently shown, so a pushed event for the same status does not reset the actions
+let displayedStatus = null;
+
+/**
+ * Show a status pushed by the server, without reloading the order
+ * @param {string} status - The new order status
+ */
+function displayOrderStatus(status) {
+    if (status === displayedStatus) return;
+    displayedStatus = status;
+
+    const statusElement = document.getElementById('order-status');
+    statusElement.textContent = status;
+    statusElement.className = `order-status ${status.toLowerCase()}`;
+    updateOrderActions({ status: status });
+}
+
 /**
  * Display order items in a table
  * @param {Array} items - The order items
@@ -246,15 +271,10 @@ function cancelOrder(orderNumber) {
             </div>
         `;
 
-            // Update status display
+            // Update status display; the actions follow when the cancellation event arrives
             const statusElement = document.getElementById('order-status');
             statusElement.textContent = 'CANCELLED';
             statusElement.className = 'order-status cancelled';
-
-            // Refresh the order details after a short delay
-            setTimeout(() => {
-                loadOrderDetails(orderNumber);
-            }, 2000);
         })
         .catch(error => {
             console.error('Error cancelling order:', error);
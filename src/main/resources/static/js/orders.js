@@ -22,6 +22,9 @@ document.addEventListener('DOMContentLoaded', () => {
 
     // Load user orders
     loadUserOrders();
+
+    // Status changes are pushed by the server, so the list never needs re-fetching to stay current
+    subscribeToOrderEvents(applyOrderStatusEvent);
 });
 
 
@@ -64,20 +67,30 @@ function setupEventListeners() {
     }
 }
 
+// Orders are fetched a page at a time; nextCursor of the last page fetched (null when all are loaded)
+const ORDERS_PAGE_SIZE = 20;
+let nextOrdersCursor = null;
+
 /**
  * Load user orders from the server
+ * @param {boolean} loadMore - Append the next page instead of reloading from the first page
  */
-function loadUserOrders() {
+function loadUserOrders(loadMore = false) {
     const ordersList = document.getElementById('orders-list');
     if (!ordersList) return;
 
     const authToken = localStorage.getItem('authToken');
 
-    // Display loading message
-    ordersList.innerHTML = '<p class="loading-message">Loading your orders...</p>';
+    let url = `/api/orders/summary?limit=${ORDERS_PAGE_SIZE}`;
+    if (loadMore && nextOrdersCursor) {
+        url += `&before=${encodeURIComponent(nextOrdersCursor)}`;
+    } else {
+        // Display loading message
+        ordersList.innerHTML = '<p class="loading-message">Loading your orders...</p>';
+    }
 
     // Fetch orders from API
-    fetch('/api/orders', {
+    fetch(url, {
         headers: {
             'Authorization': `Bearer ${authToken}`
         }
@@ -88,12 +101,17 @@ function loadUserOrders() {
             }
             return response.json();
         })
-        .then(orders => {
+        .then(page => {
+            const previous = loadMore ? JSON.parse(sessionStorage.getItem('userOrders') || '[]') : [];
+            const orders = previous.concat(page.items);
+            nextOrdersCursor = page.nextCursor;
+
             // Store orders in session storage for sorting later
             sessionStorage.setItem('userOrders', JSON.stringify(orders));
 
-            // Sort orders by default (newest first)
-            sortOrders(orders, 'date-desc');
+            // Keep the selected sort order (newest first by default)
+            const sortSelect = document.getElementById('sort-orders');
+            sortOrders(orders, sortSelect ? sortSelect.value : 'date-desc');
 
             // Display the orders
             displayOrders(orders);
@@ -109,6 +127,20 @@ function loadUserOrders() {
         });
 }
 
+/**
+ * Apply a pushed status change to the loaded orders and redraw the list
+ * @param {Object} event - Order status event from the server
+ */
+function applyOrderStatusEvent(event) {
+    const orders = JSON.parse(sessionStorage.getItem('userOrders') || '[]');
+    const order = orders.find(o => o.orderNumber === event.orderNumber);
+    if (!order || order.status === event.status) return;
+
+    order.status = event.status;
+    sessionStorage.setItem('userOrders', JSON.stringify(orders));
+    displayOrders(orders);
+}
+
 /**
  * Sort orders based on selected option
  * @param {Array} orders - Array of order objects
@@ -165,6 +197,7 @@ function displayOrders(orders) {
                 </div>
                 <div class="order-info">
                     <span class="order-status ${statusClass}">${order.status}</span>
+                    <span class="order-items">${order.itemCount} ${order.itemCount === 1 ? 'item' : 'items'}</span>
                     <span class="order-total">${formatCurrency(order.totalAmount)}</span>
                 </div>
                 <div class="order-actions">
@@ -174,6 +207,15 @@ function displayOrders(orders) {
         `;
     });
 
+    // More orders on the server
+    if (nextOrdersCursor) {
+        ordersHTML += `
+            <div class="order-actions">
+                <button onclick="loadUserOrders(true)" class="view-button">Load more orders</button>
+            </div>
+        `;
+    }
+
     ordersList.innerHTML = ordersHTML;
 }
 
@@ -0,0 +1,109 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import com.dom_cheung.ecommerce_store.service.ImageAssetService;
+import com.dom_cheung.ecommerce_store.service.ProductImageService;
+import com.dom_cheung.ecommerce_store.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class AdminProductControllerTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ImageAssetService imageAssetService;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private ProductImageService productImageService;
+
+    @InjectMocks
+    private AdminProductController adminProductController;
+
+    private final MockMultipartFile imageFile = new MockMultipartFile("imageFile", "a.png", "image/png", new byte[]{1, 2, 3});
+
+    @BeforeEach
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        // Images stored right away rather than in the background
+        when(productImageService.isAsync()).thenReturn(false);
+        when(imageAssetService.store(any(MockMultipartFile.class), anyString()))
+                .thenReturn(Map.of("public_id", "new-image", "secure_url", "https://example.test/new-image"));
+    }
+
+    private Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(5.0);
+        return product;
+    }
+
+    @Test
+    public void testCreateProduct_FailedSaveReleasesStoredImage() {
+        // Setup
+        when(productService.saveProduct(any(Product.class))).thenThrow(new DataIntegrityViolationException("name too long"));
+
+        // Execute
+        ResponseEntity<Product> response = adminProductController.createProduct(product("New"), imageFile);
+
+        // Verify
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        verify(imageAssetService).release("new-image");
+    }
+
+    @Test
+    public void testUpdateProduct_FailedSaveReleasesNewImageAndKeepsOld() {
+        // Setup
+        Product existing = product("Old");
+        existing.setId(1L);
+        existing.setImagePublicId("old-image");
+        when(productRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(productService.saveProduct(any(Product.class))).thenThrow(new DataIntegrityViolationException("name too long"));
+
+        // Execute
+        ResponseEntity<Product> response = adminProductController.updateProduct(1L, product("New"), imageFile);
+
+        // Verify
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        verify(imageAssetService).release("new-image");
+        verify(imageAssetService, never()).release("old-image");
+    }
+
+    @Test
+    public void testUpdateProduct_SavedProductKeepsStoredImage() {
+        // Setup
+        Product existing = product("Old");
+        existing.setId(1L);
+        existing.setImagePublicId("old-image");
+        when(productRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(productService.saveProduct(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Execute
+        ResponseEntity<Product> response = adminProductController.updateProduct(1L, product("New"), imageFile);
+
+        // Verify - only the replaced image is given back
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(imageAssetService).release("old-image");
+        verify(imageAssetService, never()).release("new-image");
+    }
+}
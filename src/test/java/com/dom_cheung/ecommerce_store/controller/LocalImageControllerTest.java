@@ -0,0 +1,202 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.service.ImageStorage;
+import com.dom_cheung.ecommerce_store.service.LocalImageStorage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the application with the local image storage and fetches images over real HTTP, so the Tomcat
+ * sendfile path is the one exercised. Needs no Cloudinary account.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "store.image-storage.type=local",
+        "store.image-upload.initial-backoff=100ms"
+})
+public class LocalImageControllerTest {
+
+    private static final Path DIRECTORY;
+
+    static {
+        try {
+            DIRECTORY = Files.createTempDirectory("local-images-");
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void imageDirectory(DynamicPropertyRegistry registry) {
+        registry.add("store.image-storage.local.directory", DIRECTORY::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    // 300 KB, well above the size Tomcat starts using sendfile for
+    private static byte[] content() {
+        byte[] content = new byte[300 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    private String store(byte[] content) throws IOException {
+        return imageStorage.uploadFile(new MockMultipartFile("imageFile", "photo.png", "image/png", content),
+                "ecommerce_products").get("secure_url");
+    }
+
+    private HttpResponse<byte[]> get(String path, String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET();
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    public void testGetImage_ServesWholeFileWithCacheHeaders() throws Exception {
+        // Setup
+        byte[] content = content();
+        String url = store(content);
+
+        // Execute
+        HttpResponse<byte[]> response = get(url);
+
+        // Verify
+        assertInstanceOf(LocalImageStorage.class, imageStorage);
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(content, response.body());
+        assertEquals("image/png", response.headers().firstValue("Content-Type").orElse(null));
+        assertEquals("bytes", response.headers().firstValue("Accept-Ranges").orElse(null));
+        assertTrue(response.headers().firstValue("Cache-Control").orElse("").contains("max-age=31536000"));
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+        assertFalse(etag.startsWith("W/"), "strong ETag");
+    }
+
+    @Test
+    public void testGetImage_ConditionalRequestNotModified() throws Exception {
+        // Setup
+        String url = store(content());
+        String etag = get(url).headers().firstValue("ETag").orElseThrow();
+
+        // Execute
+        HttpResponse<byte[]> response = get(url, "If-None-Match", etag);
+
+        // Verify
+        assertEquals(304, response.statusCode());
+        assertEquals(0, response.body().length);
+    }
+
+    @Test
+    public void testGetImage_ServesByteRanges() throws Exception {
+        // Setup
+        byte[] content = content();
+        String url = store(content);
+        String etag = get(url).headers().firstValue("ETag").orElseThrow();
+
+        // Execute
+        HttpResponse<byte[]> middle = get(url, "Range", "bytes=1000-1999");
+        HttpResponse<byte[]> suffix = get(url, "Range", "bytes=-100");
+        HttpResponse<byte[]> beyond = get(url, "Range", "bytes=" + content.length + "-");
+        HttpResponse<byte[]> staleIfRange = get(url, "Range", "bytes=0-9", "If-Range", "\"outdated\"");
+        HttpResponse<byte[]> currentIfRange = get(url, "Range", "bytes=0-9", "If-Range", etag);
+
+        // Verify
+        assertEquals(206, middle.statusCode());
+        assertEquals("bytes 1000-1999/" + content.length, middle.headers().firstValue("Content-Range").orElse(null));
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), middle.body());
+
+        assertEquals(206, suffix.statusCode());
+        assertArrayEquals(Arrays.copyOfRange(content, content.length - 100, content.length), suffix.body());
+
+        assertEquals(416, beyond.statusCode());
+        assertEquals("bytes */" + content.length, beyond.headers().firstValue("Content-Range").orElse(null));
+
+        assertEquals(200, staleIfRange.statusCode());
+        assertEquals(content.length, staleIfRange.body().length);
+        assertEquals(206, currentIfRange.statusCode());
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 10), currentIfRange.body());
+    }
+
+    @Test
+    public void testGetImage_UnknownImageNotFound() throws Exception {
+        assertEquals(404, get("/media/ecommerce_products/missing.png").statusCode());
+    }
+
+    @Test
+    public void testCreateProduct_ImageUploadedAndServedOffline() throws Exception {
+        // Setup - log in as the seeded admin
+        HttpResponse<String> login = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"adminpassword\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        String token = objectMapper.readTree(login.body()).get("token").asText();
+
+        byte[] image = content();
+        String boundary = "boundary" + System.nanoTime();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"product\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + "{\"name\":\"Offline product\",\"price\":5.0}\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"imageFile\"; filename=\"offline.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(image);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        // Execute - create the product, then wait for its background upload
+        HttpResponse<String> created = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/admin/products"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, created.statusCode(), created.body());
+        long productId = objectMapper.readTree(created.body()).get("id").asLong();
+
+        JsonNode status = null;
+        for (int i = 0; i < 100; i++) {
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/admin/products/" + productId + "/image-status"))
+                    .header("Authorization", "Bearer " + token)
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            status = objectMapper.readTree(response.body());
+            if (!"PENDING".equals(status.get("imageStatus").asText())) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+
+        // Verify - the image is stored locally and served from the product's imageUrl
+        assertEquals("READY", status.get("imageStatus").asText(), status.toString());
+        assertArrayEquals(image, get(status.get("imageUrl").asText()).body());
+    }
+}
@@ -0,0 +1,169 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.User;
+import com.dom_cheung.ecommerce_store.repository.UserRepository;
+import com.dom_cheung.ecommerce_store.security.AuthenticatedUser;
+import com.dom_cheung.ecommerce_store.service.CheckoutQueueFullException;
+import com.dom_cheung.ecommerce_store.service.IdempotencyStore;
+import com.dom_cheung.ecommerce_store.service.OrderEventService;
+import com.dom_cheung.ecommerce_store.service.OrderEventStreamsFullException;
+import com.dom_cheung.ecommerce_store.service.OrderIngestionService;
+import com.dom_cheung.ecommerce_store.service.OrderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class OrderControllerTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private OrderIngestionService orderIngestionService;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private OrderEventService orderEventService;
+
+    @InjectMocks
+    private OrderController orderController;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private void authenticate(Object principal) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                principal, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    @Test
+    public void testGetUserOrders_UsesIdFromTokenPrincipal() {
+        // Setup
+        authenticate(new AuthenticatedUser(7L, "alice", List.of("ROLE_USER")));
+        when(orderService.getUserOrders(7L)).thenReturn(List.of(new Order()));
+
+        // Execute
+        ResponseEntity<?> response = orderController.getUserOrders();
+
+        // Verify
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(orderService).getUserOrders(7L);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    public void testGetUserOrders_FallsBackToLookupWithoutIdClaim() {
+        // Setup
+        authenticate("alice");
+        User user = new User();
+        user.setId(7L);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+        when(orderService.getUserOrders(7L)).thenReturn(List.of());
+
+        // Execute
+        ResponseEntity<?> response = orderController.getUserOrders();
+
+        // Verify
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(userRepository).findByUsername("alice");
+    }
+
+    @Test
+    public void testGetOrderDetails_OtherUsersOrderForbidden() {
+        // Setup
+        authenticate(new AuthenticatedUser(7L, "alice", List.of("ROLE_USER")));
+        Order order = new Order();
+        order.setUserId(8L);
+        order.setOrderNumber("ORD-1");
+        when(orderService.getOrderByNumber("ORD-1")).thenReturn(Optional.of(order));
+
+        // Execute
+        ResponseEntity<?> response = orderController.getOrderDetails("ORD-1");
+
+        // Verify
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verify(userRepository, never()).findByUsername(anyString());
+    }
+
+    @Test
+    public void testStreamOrderEvents_TooManyStreamsReturns503() {
+        // Setup
+        authenticate(new AuthenticatedUser(7L, "alice", List.of("ROLE_USER")));
+        when(orderEventService.subscribe(7L))
+                .thenThrow(new OrderEventStreamsFullException("Too many order event streams, please try again later"));
+
+        // Execute
+        ResponseEntity<?> response = orderController.streamOrderEvents();
+
+        // Verify
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("30", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void testCreateOrder_QueueFullReturns429() throws Exception {
+        // Setup
+        authenticate(new AuthenticatedUser(7L, "alice", List.of("ROLE_USER")));
+        when(orderIngestionService.isEnabled()).thenReturn(true);
+        when(orderIngestionService.createOrder(eq(7L), any(), any()))
+                .thenThrow(new CheckoutQueueFullException("Too many checkouts in progress, please try again shortly"));
+        Map<String, Object> request = Map.of("items", List.of(Map.of("id", 1, "quantity", 1)));
+
+        // Execute
+        ResponseEntity<?> response = orderController.createOrder(request, null);
+
+        // Verify
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(orderService, never()).createOrder(any(), any(), any());
+    }
+
+    @Test
+    public void testCreateOrder_WithIdempotencyKeyGoesThroughStore() {
+        // Setup
+        authenticate(new AuthenticatedUser(7L, "alice", List.of("ROLE_USER")));
+        Map<String, Object> request = Map.of("items", List.of(Map.of("id", 1, "quantity", 1)));
+        doReturn(ResponseEntity.status(HttpStatus.CREATED).build())
+                .when(idempotencyStore).execute(eq(7L), eq("key-1"), eq(request), any());
+
+        // Execute
+        ResponseEntity<?> response = orderController.createOrder(request, "key-1");
+
+        // Verify - the store decides whether the order is placed
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        verify(idempotencyStore).execute(eq(7L), eq("key-1"), eq(request), any());
+        verifyNoInteractions(orderService);
+    }
+}
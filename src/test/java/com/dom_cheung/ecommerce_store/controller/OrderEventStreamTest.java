@@ -0,0 +1,116 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.dom_cheung.ecommerce_store.service.OrderService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Opens a real event stream over HTTP and checks that a committed status change arrives on it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class OrderEventStreamTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private JsonNode login() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"adminpassword\"}"))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return objectMapper.readTree(response.body());
+    }
+
+    // Next line starting with the prefix, skipping blank lines and heartbeats
+    private static String nextLine(BlockingQueue<String> lines, String prefix) throws InterruptedException {
+        while (true) {
+            String line = lines.poll(10, TimeUnit.SECONDS);
+            assertNotNull(line, "no '" + prefix + "' line received");
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+    }
+
+    @Test
+    public void testStatusChangePushedToOwnersStream() throws Exception {
+        // Setup - open the stream and wait until it is live
+        JsonNode session = login();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/orders/events"))
+                .header("Authorization", "Bearer " + session.get("token").asText())
+                .GET()
+                .build();
+        HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/event-stream"));
+
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread reader = Thread.ofVirtual().start(() -> {
+            try {
+                response.body().forEach(lines::add);
+            } catch (UncheckedIOException e) {
+                // The connection was shut down at the end of the test
+            }
+        });
+        try {
+            nextLine(lines, ":connected");
+
+            Order order = new Order();
+            order.setUserId(session.get("id").asLong());
+            order.setOrderNumber("SSE-" + System.nanoTime());
+            order.setOrderDate(LocalDateTime.now());
+            order.setStatus(OrderStatus.PENDING);
+            orderRepository.save(order);
+
+            // Execute
+            orderService.updateOrderStatus(order.getOrderNumber(), OrderStatus.PROCESSING);
+
+            // Verify
+            assertEquals("event:order-status", nextLine(lines, "event:"));
+            JsonNode event = objectMapper.readTree(nextLine(lines, "data:").substring("data:".length()));
+            assertEquals(order.getOrderNumber(), event.get("orderNumber").asText());
+            assertEquals("PROCESSING", event.get("status").asText());
+            assertEquals("PENDING", event.get("previousStatus").asText());
+            assertEquals(1L, event.get("version").asLong());
+        } finally {
+            // Closing the body alone leaves the reader blocked until the next heartbeat
+            response.body().close();
+            httpClient.shutdownNow();
+            assertTrue(reader.join(Duration.ofSeconds(10)), "stream reader did not stop");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.dom_cheung.ecommerce_store.controller;
+
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import com.dom_cheung.ecommerce_store.service.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// The product listing is public, so MockMvc is built without the security filters.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class ProductControllerTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setName("Listed product " + i);
+            product.setPrice(i + 1.0);
+            productIds.add(productRepository.save(product).getId());
+        }
+    }
+
+    @Test
+    public void testGetProductPage_PagesByIdFromCursor() throws Exception {
+        // Execute - start just before the products created for this test
+        String body = mockMvc.perform(get("/api/products").param("limit", "2").param("after", String.valueOf(productIds.get(0) - 1)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Verify
+        JsonNode page = objectMapper.readTree(body);
+        assertEquals(2, page.get("limit").asInt());
+        assertEquals(2, page.get("items").size());
+        assertEquals((long) productIds.get(0), page.get("items").get(0).get("id").asLong());
+        assertEquals((long) productIds.get(1), page.get("items").get(1).get("id").asLong());
+        assertEquals((long) productIds.get(1), page.get("nextCursor").asLong());
+    }
+
+    @Test
+    public void testGetProductPage_CursorWithoutLimitGetsDefaultPage() throws Exception {
+        // Execute
+        String body = mockMvc.perform(get("/api/products").param("after", String.valueOf(productIds.get(0) - 1)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Verify - a page from the cursor, not the streamed catalog
+        JsonNode page = objectMapper.readTree(body);
+        assertEquals(ProductService.DEFAULT_PAGE_SIZE, page.get("limit").asInt());
+        assertEquals((long) productIds.get(0), page.get("items").get(0).get("id").asLong());
+    }
+
+    @Test
+    public void testGetAllProducts_StreamsWholeCatalogInIdOrder() throws Exception {
+        // Execute
+        MvcResult started = mockMvc.perform(get("/api/products")).andExpect(request().asyncStarted()).andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Verify
+        JsonNode products = objectMapper.readTree(body);
+        assertTrue(products.isArray());
+        List<Long> ids = new ArrayList<>();
+        products.forEach(product -> ids.add(product.get("id").asLong()));
+        assertTrue(ids.containsAll(productIds), "ids: " + ids);
+        assertEquals(ids.stream().sorted().toList(), ids);
+    }
+}
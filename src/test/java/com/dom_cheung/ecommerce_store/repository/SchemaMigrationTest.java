@@ -0,0 +1,55 @@
+package com.dom_cheung.ecommerce_store.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// The context only starts if Hibernate accepts the migrated schema (ddl-auto=validate).
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class SchemaMigrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void testMigrations_CreateQueryIndexes() {
+        // Execute
+        List<String> indexes = jdbcTemplate.queryForList(
+                "select lower(index_name) from information_schema.indexes", String.class);
+
+        // Verify
+        assertTrue(indexes.containsAll(List.of(
+                "idx_orders_user_date",
+                "idx_orders_status_date",
+                "idx_order_items_order_id",
+                "idx_user_roles_user_id")), "indexes: " + indexes);
+    }
+
+    @Test
+    public void testMigrations_CanRunAgain() {
+        // Setup
+        ResourceDatabasePopulator migrations = new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/V1__create_schema.sql"),
+                new ClassPathResource("db/migration/V2__add_query_indexes.sql"));
+
+        // Execute & Verify - a database that predates Flyway is baselined at version 0 and gets every script
+        // again, so they must not fail on an existing schema
+        assertDoesNotThrow(() -> migrations.execute(dataSource));
+    }
+}
@@ -0,0 +1,140 @@
+package com.dom_cheung.ecommerce_store.security;
+
+import com.dom_cheung.ecommerce_store.model.User;
+import com.dom_cheung.ecommerce_store.repository.UserRepository;
+import com.dom_cheung.ecommerce_store.service.AuthService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class JwtAuthenticationFilterTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Spy
+    private JwtKeyRing jwtKeyRing = new JwtKeyRing("", "");
+
+    @InjectMocks
+    private AuthService authService;
+
+    private VerifiedTokenCache verifiedTokenCache;
+
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        verifiedTokenCache = new VerifiedTokenCache(true, 100, Duration.ofMinutes(15));
+        filter = new JwtAuthenticationFilter(authService, verifiedTokenCache);
+    }
+
+    private String loginToken() {
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("alice");
+        user.setPassword("hashed");
+        user.setRoles(Set.of("ROLE_USER"));
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches(anyString(), anyString())).thenReturn(true);
+        return (String) authService.authenticateUser("alice", "secret").get("token");
+    }
+
+    private void filterWithToken(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testDoFilter_SetsAuthenticatedUserPrincipal() throws Exception {
+        // Setup: log in to get a signed token
+        String token = loginToken();
+
+        // Execute
+        filterWithToken(token);
+
+        // Verify
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        AuthenticatedUser principal = assertInstanceOf(AuthenticatedUser.class, authentication.getPrincipal());
+        assertEquals(42L, principal.getId());
+        assertEquals("alice", authentication.getName());
+        assertTrue(principal.getRoles().contains("ROLE_USER"));
+        assertTrue(authentication.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_USER")));
+
+        // Only the login looked the user up
+        verify(userRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    public void testDoFilter_InvalidTokenLeavesContextEmpty() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer not-a-token");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    public void testDoFilter_RepeatedTokenServedFromCache() throws Exception {
+        String token = loginToken();
+
+        filterWithToken(token);
+        SecurityContextHolder.clearContext();
+        filterWithToken(token);
+
+        Map<String, Object> stats = verifiedTokenCache.getStats();
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(42L, ((AuthenticatedUser) SecurityContextHolder.getContext()
+                .getAuthentication().getPrincipal()).getId());
+    }
+
+    @Test
+    public void testGetClaims_EntryExpiresAtTokenExp() {
+        // A token whose exp has already passed must not be served from the cache
+        Map<String, Object> expiredClaims = Map.of("sub", "alice", "exp", System.currentTimeMillis() / 1000 - 1);
+
+        verifiedTokenCache.getClaims("token", t -> expiredClaims);
+        verifiedTokenCache.getClaims("token", t -> expiredClaims);
+
+        assertEquals(2L, verifiedTokenCache.getStats().get("misses"));
+    }
+
+    @Test
+    public void testGetClaims_InvalidTokenNotCached() {
+        assertThrows(RuntimeException.class, () -> verifiedTokenCache.getClaims("bad", authService::validateToken));
+        assertThrows(RuntimeException.class, () -> verifiedTokenCache.getClaims("bad", authService::validateToken));
+
+        assertEquals(0L, verifiedTokenCache.getStats().get("size"));
+    }
+}
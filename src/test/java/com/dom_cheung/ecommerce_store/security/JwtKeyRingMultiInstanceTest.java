@@ -0,0 +1,89 @@
+package com.dom_cheung.ecommerce_store.security;
+
+import com.dom_cheung.ecommerce_store.EcommerceStoreApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs separate application instances in one JVM to check that tokens issued by one
+ * are accepted by another when they share a key ring.
+ */
+public class JwtKeyRingMultiInstanceTest {
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @AfterEach
+    public void tearDown() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    private static String secret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    // Start an instance with its own database and port
+    private int startInstance(String name, String jwtKeys) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(EcommerceStoreApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                        "store.jwt.keys=" + jwtKeys)
+                .run();
+        contexts.add(context);
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    private String login(int port) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"adminpassword\"}"))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        Matcher matcher = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"").matcher(response.body());
+        assertTrue(matcher.find());
+        return matcher.group(1);
+    }
+
+    private int getOrders(int port, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/orders"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    @Test
+    public void testTokenFromOneInstanceAcceptedByAnother() throws Exception {
+        String sharedKeys = "k1:" + secret() + ",k2:" + secret();
+        int nodeA = startInstance("nodeA", sharedKeys);
+        int nodeB = startInstance("nodeB", sharedKeys);
+        int otherRing = startInstance("nodeC", "k1:" + secret());
+
+        String token = login(nodeA);
+
+        assertEquals(200, getOrders(nodeA, token));
+        assertEquals(200, getOrders(nodeB, token));
+        // Same kid but a different secret must be rejected
+        assertNotEquals(200, getOrders(otherRing, token));
+    }
+}
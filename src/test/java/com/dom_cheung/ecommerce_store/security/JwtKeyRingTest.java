@@ -0,0 +1,121 @@
+package com.dom_cheung.ecommerce_store.security;
+
+import io.jsonwebtoken.security.WeakKeyException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtKeyRingTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String secret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    @Test
+    public void testInlineKeys_SignsWithMostRecentlyActivatedKey() {
+        Instant rotation = Instant.parse("2030-01-01T00:00:00Z");
+        JwtKeyRing keyRing = new JwtKeyRing(
+                "k1:" + secret() + ",k2:" + secret() + "@2029-01-01T00:00:00Z,k3:" + secret() + "@" + rotation, "");
+
+        assertEquals(List.of("k1", "k2", "k3"), keyRing.getKeyIds());
+        assertEquals("k1", keyRing.getSigningKey(Instant.parse("2028-06-01T00:00:00Z")).getKid());
+        assertEquals("k2", keyRing.getSigningKey(rotation.minusSeconds(1)).getKid());
+        assertEquals("k3", keyRing.getSigningKey(rotation).getKid());
+
+        // Every key verifies, even before it signs
+        assertNotNull(keyRing.getVerificationKey("k3"));
+        assertNull(keyRing.getVerificationKey("unknown"));
+    }
+
+    @Test
+    public void testNoKeys_FallsBackToRandomKey() {
+        JwtKeyRing keyRing = new JwtKeyRing("", "");
+
+        assertEquals(List.of("local"), keyRing.getKeyIds());
+        assertNotNull(keyRing.getSigningKey().getKey());
+    }
+
+    @Test
+    public void testInvalidEntries_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeyRing("no-separator", ""));
+        assertThrows(WeakKeyException.class, () -> new JwtKeyRing("short:" + Base64.getEncoder().encodeToString(new byte[8]), ""));
+        String duplicate = secret();
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeyRing("k1:" + duplicate + ",k1:" + duplicate, ""));
+    }
+
+    @Test
+    public void testReload_PicksUpRotatedKeysFile() throws Exception {
+        Path keysFile = tempDir.resolve("jwt-keys");
+        Files.writeString(keysFile, "# initial key\nk1:" + secret() + "\n");
+        JwtKeyRing keyRing = new JwtKeyRing("", keysFile.toString());
+        assertEquals("k1", keyRing.getSigningKey().getKid());
+
+        // Rotate: add k2 and make it active, keep k1 for tokens already issued
+        Files.writeString(keysFile, Files.readString(keysFile) + "k2:" + secret() + "@" + Instant.now().minusSeconds(1) + "\n");
+        keyRing.reload();
+        assertEquals("k2", keyRing.getSigningKey().getKid());
+        assertNotNull(keyRing.getVerificationKey("k1"));
+
+        // A broken file keeps the current ring
+        Files.writeString(keysFile, "garbage");
+        keyRing.reload();
+        assertEquals(List.of("k1", "k2"), keyRing.getKeyIds());
+    }
+
+    @Test
+    public void testReload_RemovedKeyEvictsCachedTokens() throws Exception {
+        // Setup - one verified token cached for each of two keys
+        Path keysFile = tempDir.resolve("jwt-keys");
+        String k2 = "k2:" + secret();
+        Files.writeString(keysFile, "k1:" + secret() + "\n" + k2 + "\n");
+        JwtKeyRing keyRing = new JwtKeyRing("", keysFile.toString());
+        VerifiedTokenCache cache = new VerifiedTokenCache(true, 100, Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(keyRing, "verifiedTokenCache", cache);
+        String oldToken = token("k1");
+        String currentToken = token("k2");
+        Map<String, Object> claims = Map.of("sub", "alice");
+        cache.getClaims(oldToken, t -> claims);
+        cache.getClaims(currentToken, t -> claims);
+
+        // Execute - k1 is taken out of the ring
+        Files.writeString(keysFile, k2 + "\n");
+        keyRing.reload();
+
+        // Verify - the k1 token is verified again, the k2 token is still served from the cache
+        AtomicInteger validations = new AtomicInteger();
+        cache.getClaims(oldToken, t -> {
+            validations.incrementAndGet();
+            return claims;
+        });
+        cache.getClaims(currentToken, t -> {
+            validations.incrementAndGet();
+            return claims;
+        });
+        assertEquals(1, validations.get());
+    }
+
+    // Unsigned stand-in for a JWT with the given kid header; the cache leaves verification to its caller
+    private static String token(String kid) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(("{\"alg\":\"HS256\",\"kid\":\"" + kid + "\"}").getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(("{\"sub\":\"" + kid + "\"}").getBytes(StandardCharsets.UTF_8)) + ".sig";
+    }
+}
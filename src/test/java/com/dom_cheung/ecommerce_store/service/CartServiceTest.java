@@ -0,0 +1,285 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.CartItem;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.CartItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class CartServiceTest {
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private ProductService productService;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    private CartService cartService;
+
+    // cart_versions as the repository sees it
+    private final Map<Long, Long> versions = new HashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(productService.getProductById(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return id < 100 ? Optional.of(product(id)) : Optional.empty();
+        });
+        when(cartItemRepository.findByUserIdOrderByIdAsc(anyLong())).thenReturn(new ArrayList<>());
+        when(cartItemRepository.findCartVersion(anyLong())).thenAnswer(invocation -> versions.get(invocation.<Long>getArgument(0)));
+        when(cartItemRepository.createCartVersion(anyLong())).thenAnswer(invocation -> {
+            versions.put(invocation.getArgument(0), 0L);
+            return 1;
+        });
+        when(cartItemRepository.bumpCartVersion(anyLong(), anyLong())).thenAnswer(invocation ->
+                versions.replace(invocation.getArgument(0), invocation.getArgument(1), invocation.<Long>getArgument(1) + 1) ? 1 : 0);
+    }
+
+    private Product product(long id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(10.0);
+        return product;
+    }
+
+    private CartItem savedLine(Long userId, Long productId, int quantity) {
+        return new CartItem(1L, userId, productId, "Product " + productId, 10.0, null, quantity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<CartItem> captureSavedRows() {
+        ArgumentCaptor<Iterable<CartItem>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(cartItemRepository).saveAll(captor.capture());
+        List<CartItem> rows = new ArrayList<>();
+        captor.getValue().forEach(rows::add);
+        return rows;
+    }
+
+    @Test
+    public void testMutations_NotWrittenUntilFlush() {
+        // Execute
+        cartService.addItem(1L, 5L, 1);
+        cartService.updateItem(1L, 5L, 3);
+
+        // Verify
+        verify(cartItemRepository, never()).saveAll(any());
+        verify(cartItemRepository, never()).deleteByUserIdIn(any());
+        assertEquals(1, cartService.getStats().get("dirtyCarts"));
+    }
+
+    @Test
+    public void testFlush_CoalescesManyMutationsIntoOneWrite() {
+        // Setup - a burst of quantity clicks
+        for (int i = 0; i < 50; i++) {
+            cartService.addItem(1L, 5L, 1);
+        }
+        cartService.addItem(1L, 6L, 2);
+
+        // Execute
+        cartService.flushDirtyCarts();
+
+        // Verify
+        verify(cartItemRepository, times(1)).deleteByUserIdIn(any());
+        List<CartItem> rows = captureSavedRows();
+        assertEquals(2, rows.size());
+        assertEquals(50, rows.get(0).getQuantity());
+        assertEquals(1L, rows.get(0).getUserId());
+        assertEquals(6L, rows.get(1).getProductId());
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+
+        // A second run with nothing dirty writes nothing
+        cartService.flushDirtyCarts();
+        verify(cartItemRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlush_BatchesSeveralUsersInOneTransaction() {
+        // Setup
+        cartService.addItem(1L, 5L, 1);
+        cartService.addItem(2L, 5L, 1);
+        cartService.addItem(3L, 5L, 1);
+
+        // Execute
+        cartService.flushDirtyCarts();
+
+        // Verify
+        ArgumentCaptor<Collection<Long>> users = ArgumentCaptor.forClass(Collection.class);
+        verify(cartItemRepository, times(1)).deleteByUserIdIn(users.capture());
+        assertEquals(3, users.getValue().size());
+        assertEquals(3, captureSavedRows().size());
+    }
+
+    @Test
+    public void testGetCart_LoadsSavedCartOnce() {
+        // Setup
+        when(cartItemRepository.findByUserIdOrderByIdAsc(1L)).thenReturn(List.of(savedLine(1L, 5L, 2)));
+
+        // Execute
+        List<CartItem> first = cartService.getCart(1L);
+        List<CartItem> second = cartService.getCart(1L);
+
+        // Verify
+        assertEquals(1, first.size());
+        assertEquals(2, second.get(0).getQuantity());
+        verify(cartItemRepository, times(1)).findByUserIdOrderByIdAsc(1L);
+    }
+
+    @Test
+    public void testMergeCart_LargerQuantityWinsAndUnknownProductsSkipped() {
+        // Setup
+        when(cartItemRepository.findByUserIdOrderByIdAsc(1L)).thenReturn(List.of(
+                savedLine(1L, 5L, 2), savedLine(1L, 6L, 4)));
+        List<Map<String, Object>> guestCart = List.of(
+                Map.of("id", 5, "quantity", 3),
+                Map.of("id", 6, "quantity", 1),
+                Map.of("id", 7, "quantity", 1),
+                Map.of("id", 500, "quantity", 1));
+
+        // Execute
+        List<CartItem> merged = cartService.mergeCart(1L, guestCart);
+        List<CartItem> mergedAgain = cartService.mergeCart(1L, guestCart);
+
+        // Verify
+        assertEquals(3, merged.size());
+        assertEquals(3, merged.get(0).getQuantity());
+        assertEquals(4, merged.get(1).getQuantity());
+        assertEquals(7L, merged.get(2).getProductId());
+        assertEquals(merged, mergedAgain);
+    }
+
+    @Test
+    public void testReplaceCart_RejectsTooManyLinesWithoutChangingCart() {
+        // Setup
+        cartService.addItem(1L, 5L, 1);
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i <= CartService.MAX_LINES; i++) {
+            items.add(Map.of("id", i, "quantity", 1));
+        }
+
+        // Execute & Verify
+        assertThrows(IllegalArgumentException.class, () -> cartService.replaceCart(1L, items));
+        assertEquals(1, cartService.getCart(1L).size());
+    }
+
+    @Test
+    public void testUpdateItem_ZeroRemovesLine() {
+        // Setup
+        cartService.addItem(1L, 5L, 2);
+
+        // Execute
+        List<CartItem> cart = cartService.updateItem(1L, 5L, 0);
+
+        // Verify
+        assertTrue(cart.isEmpty());
+    }
+
+    @Test
+    public void testAddItem_UnknownProductThrows() {
+        assertThrows(IllegalArgumentException.class, () -> cartService.addItem(1L, 500L, 1));
+        verify(cartItemRepository, never()).findByUserIdOrderByIdAsc(anyLong());
+    }
+
+    @Test
+    public void testFlush_FailedBatchIsRetried() {
+        // Setup
+        cartService.addItem(1L, 5L, 1);
+        doThrow(new RuntimeException("database down")).doReturn(List.of())
+                .when(cartItemRepository).saveAll(any());
+        // The failed transaction rolls the version bump back
+        when(cartItemRepository.bumpCartVersion(1L, 0L)).thenReturn(1);
+
+        // Execute
+        cartService.flushDirtyCarts();
+        Map<String, Object> afterFailure = cartService.getStats();
+        cartService.flushDirtyCarts();
+
+        // Verify
+        assertEquals(1L, afterFailure.get("flushFailures"));
+        assertEquals(1, afterFailure.get("dirtyCarts"));
+        verify(cartItemRepository, times(2)).saveAll(any());
+        assertEquals(0, cartService.getStats().get("dirtyCarts"));
+        assertEquals(1L, cartService.getStats().get("cartsWritten"));
+    }
+
+    @Test
+    public void testAddItem_ReloadsCartWrittenByAnotherInstance() {
+        // Setup - the cart is in memory here, then another instance writes a second line
+        when(cartItemRepository.findByUserIdOrderByIdAsc(1L))
+                .thenReturn(List.of(savedLine(1L, 5L, 2)))
+                .thenReturn(List.of(savedLine(1L, 5L, 2), savedLine(1L, 6L, 1)));
+        ReflectionTestUtils.setField(cartService, "versionCheckIntervalMillis", 0L);
+        cartService.getCart(1L);
+        versions.put(1L, 1L);
+
+        // Execute
+        List<CartItem> cart = cartService.addItem(1L, 7L, 1);
+        cartService.flushDirtyCarts();
+
+        // Verify - the other instance's line is kept, and our write is based on its version
+        assertEquals(3, cart.size());
+        assertEquals(3, captureSavedRows().size());
+        assertEquals(2L, versions.get(1L));
+        assertEquals(1L, cartService.getStats().get("staleReloads"));
+    }
+
+    @Test
+    public void testGetCart_ChecksSavedVersionOncePerInterval() {
+        // Setup - loaded, with the saved version read once
+        cartService.getCart(1L);
+
+        // Execute
+        for (int i = 0; i < 10; i++) {
+            cartService.getCart(1L);
+        }
+
+        // Verify - no further round trips within the check interval
+        verify(cartItemRepository, times(1)).findCartVersion(1L);
+    }
+
+    @Test
+    public void testFlush_DoesNotOverwriteConcurrentWrite() {
+        // Setup - changed here, and written by another instance before this change is flushed
+        cartService.addItem(1L, 5L, 1);
+        versions.put(1L, 1L);
+        when(cartItemRepository.findByUserIdOrderByIdAsc(1L)).thenReturn(List.of(savedLine(1L, 6L, 4)));
+
+        // Execute
+        cartService.flushDirtyCarts();
+
+        // Verify - nothing written, and the next access sees the other instance's cart
+        verify(cartItemRepository, never()).deleteByUserIdIn(any());
+        verify(cartItemRepository, never()).saveAll(any());
+        assertEquals(1L, cartService.getStats().get("conflicts"));
+        assertEquals(0, cartService.getStats().get("dirtyCarts"));
+        List<CartItem> cart = cartService.getCart(1L);
+        assertEquals(1, cart.size());
+        assertEquals(6L, cart.get(0).getProductId());
+    }
+}
@@ -0,0 +1,255 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.cloudinary.Api;
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Uploader;
+import com.cloudinary.api.ApiResponse;
+import com.cloudinary.api.exceptions.RateLimited;
+import com.cloudinary.utils.ObjectUtils;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CloudinaryServiceTest {
+
+    private static final Map<String, String> UPLOADED = Map.of("secure_url", "https://example.test/image.jpg", "public_id", "image");
+
+    @Mock
+    private Cloudinary cloudinary;
+
+    @Mock
+    private Uploader uploader;
+
+    @Mock
+    private Api api;
+
+    @InjectMocks
+    private CloudinaryService cloudinaryService = new CloudinaryService(DataSize.ofMegabytes(5), DataSize.ofMegabytes(1));
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(cloudinary.api()).thenReturn(api);
+    }
+
+    @Test
+    public void testUploadFile_SmallFileSentFromDisk() throws Exception {
+        // Setup - remember what the uploader was given while the upload ran
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.jpg", "image/jpeg", new byte[]{1, 2, 3});
+        List<File> uploadedFiles = new ArrayList<>();
+        List<byte[]> uploadedContent = new ArrayList<>();
+        when(uploader.upload(any(File.class), anyMap())).thenAnswer(invocation -> {
+            File uploaded = invocation.getArgument(0);
+            uploadedFiles.add(uploaded);
+            uploadedContent.add(Files.readAllBytes(uploaded.toPath()));
+            return UPLOADED;
+        });
+
+        // Execute
+        Map<String, String> result = cloudinaryService.uploadFile(file, "ecommerce_products");
+
+        // Verify - the file is sent as a file, not as bytes, and the temp copy is gone afterwards
+        assertEquals("image", result.get("public_id"));
+        assertArrayEquals(new byte[]{1, 2, 3}, uploadedContent.get(0));
+        assertFalse(uploadedFiles.get(0).exists());
+        verify(uploader, never()).uploadLarge(any(), anyMap(), anyInt());
+    }
+
+    @Test
+    public void testUploadFile_LargeFileUploadedInChunks() throws Exception {
+        // Setup
+        MockMultipartFile file = new MockMultipartFile("imageFile", "poster.png", "image/png", new byte[2 * 1024 * 1024]);
+        when(uploader.uploadLarge(any(File.class), anyMap(), anyInt())).thenReturn(UPLOADED);
+
+        // Execute
+        cloudinaryService.uploadFile(file, null);
+
+        // Verify
+        verify(uploader).uploadLarge(any(File.class), anyMap(), eq(5 * 1024 * 1024));
+        verify(uploader, never()).upload(any(), anyMap());
+    }
+
+    @Test
+    public void testUploadFile_FailureStillRemovesTempFile() throws Exception {
+        // Setup
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.jpg", "image/jpeg", new byte[]{1});
+        List<File> uploadedFiles = new ArrayList<>();
+        when(uploader.upload(any(File.class), anyMap())).thenAnswer(invocation -> {
+            uploadedFiles.add(invocation.getArgument(0));
+            throw new IOException("connection reset");
+        });
+
+        // Execute & Verify
+        assertThrows(IOException.class, () -> cloudinaryService.uploadFile(file, null));
+        assertFalse(uploadedFiles.get(0).exists());
+    }
+
+    @Test
+    public void testDeleteFiles_ReturnsResultPerPublicId() throws Exception {
+        // Setup
+        ApiResponse response = mock(ApiResponse.class);
+        when(response.get("deleted")).thenReturn(Map.of("a", "deleted", "b", "not_found"));
+        when(api.deleteResources(eq(List.of("a", "b")), anyMap())).thenReturn(response);
+
+        // Execute
+        Map<String, String> result = cloudinaryService.deleteFiles(List.of("a", "b"));
+
+        // Verify
+        assertEquals(Map.of("a", "deleted", "b", "not_found"), result);
+    }
+
+    @Test
+    public void testDeleteFiles_RateLimitReported() throws Exception {
+        // Setup
+        when(api.deleteResources(any(), anyMap())).thenThrow(new RateLimited("Rate Limit Exceeded"));
+
+        // Execute & Verify
+        assertThrows(ImageStorageRateLimitedException.class, () -> cloudinaryService.deleteFiles(List.of("a")));
+    }
+
+    @Test
+    public void testUploadFile_200MbUploadFitsInSmallHeap() throws Exception {
+        // Execute - the real Cloudinary client against a local endpoint, in a JVM with a 64 MB heap
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process = new ProcessBuilder(java, "-Xmx64m", "-cp", System.getProperty("java.class.path"),
+                LargeUploadCheck.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        byte[] output = process.getInputStream().readAllBytes();
+        boolean finished = process.waitFor(5, TimeUnit.MINUTES);
+
+        // Verify
+        String log = new String(output, StandardCharsets.UTF_8);
+        assertTrue(finished, log);
+        assertEquals(0, process.exitValue(), log);
+    }
+
+    /**
+     * Uploads a 200 MB file through CloudinaryService to a local stand-in for the upload API, which
+     * only counts what it receives. Run in its own JVM so the heap limit applies to the upload alone.
+     */
+    static class LargeUploadCheck {
+
+        private static final long FILE_SIZE = 200L * 1024 * 1024;
+
+        public static void main(String[] args) throws Exception {
+            AtomicLong received = new AtomicLong();
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                try (InputStream body = exchange.getRequestBody()) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int read;
+                    while ((read = body.read(buffer)) > 0) {
+                        received.addAndGet(read);
+                    }
+                }
+                byte[] response = "{\"secure_url\":\"https://example.test/large.png\",\"public_id\":\"large\"}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            });
+            server.start();
+
+            Path source = Files.createTempFile("large-upload-", ".png");
+            try {
+                byte[] block = new byte[1024 * 1024];
+                try (OutputStream out = Files.newOutputStream(source)) {
+                    for (long written = 0; written < FILE_SIZE; written += block.length) {
+                        block[0] = (byte) written;
+                        out.write(block);
+                    }
+                }
+
+                Cloudinary cloudinary = new Cloudinary(ObjectUtils.asMap(
+                        "cloud_name", "test_cloud", "api_key", "key", "api_secret", "secret"));
+                cloudinary.config.uploadPrefix = "http://127.0.0.1:" + server.getAddress().getPort();
+                CloudinaryService service = new CloudinaryService(DataSize.ofMegabytes(6), DataSize.ofMegabytes(20));
+                ReflectionTestUtils.setField(service, "cloudinary", cloudinary);
+
+                Map<String, String> result = service.uploadFile(new DiskMultipartFile(source), "ecommerce_products");
+
+                System.exit(received.get() >= FILE_SIZE && "large".equals(result.get("public_id")) ? 0 : 1);
+            } finally {
+                Files.deleteIfExists(source);
+                server.stop(0);
+            }
+        }
+    }
+
+    // Multipart file on disk, like the container's, that refuses to be read into memory
+    private record DiskMultipartFile(Path path) implements MultipartFile {
+
+        @Override
+        public String getName() {
+            return "imageFile";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return path.getFileName().toString();
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/png";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return path.toFile().length();
+        }
+
+        @Override
+        public byte[] getBytes() {
+            throw new UnsupportedOperationException("Uploads must not be read into memory");
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
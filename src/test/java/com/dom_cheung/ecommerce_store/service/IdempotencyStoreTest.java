@@ -0,0 +1,230 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Runs against the real idempotency_keys table; two stores on it stand for two instances.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class IdempotencyStoreTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final IdempotencyStore store = new IdempotencyStore(Duration.ofHours(1), 5000);
+
+    private final IdempotencyStore otherInstance = new IdempotencyStore(Duration.ofHours(1), 5000);
+
+    private final Map<String, Object> request = Map.of("items", List.of(Map.of("id", 1, "quantity", 2)));
+
+    private long alice;
+
+    private long bob;
+
+    @BeforeEach
+    public void setup() {
+        jdbcTemplate.update("delete from idempotency_keys");
+        for (IdempotencyStore instance : List.of(store, otherInstance)) {
+            ReflectionTestUtils.setField(instance, "jdbcTemplate", jdbcTemplate);
+            ReflectionTestUtils.setField(instance, "objectMapper", objectMapper);
+        }
+        alice = user("idempotency-alice");
+        bob = user("idempotency-bob");
+    }
+
+    private long user(String username) {
+        jdbcTemplate.update("insert into users (username, password, enabled) select ?, 'x', true "
+                + "where not exists (select 1 from users where username = ?)", username, username);
+        return jdbcTemplate.queryForObject("select id from users where username = ?", Long.class, username);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testExecute_ConcurrentRetriesOnAnyInstanceRunTheRequestOnce() throws Exception {
+        // Setup - the first request blocks until every retry has arrived
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<ResponseEntity<?>>> responses = new ArrayList<>();
+
+        // Execute
+        try {
+            for (int i = 0; i < 8; i++) {
+                IdempotencyStore instance = i % 2 == 0 ? store : otherInstance;
+                responses.add(executor.submit((Callable<ResponseEntity<?>>) () ->
+                        instance.execute(alice, "key-1", request, () -> {
+                            runs.incrementAndGet();
+                            await(release);
+                            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("orderNumber", "ORD-1"));
+                        })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            // Verify
+            for (Future<ResponseEntity<?>> response : responses) {
+                ResponseEntity<?> result = response.get(5, TimeUnit.SECONDS);
+                assertEquals(HttpStatus.CREATED, result.getStatusCode());
+                assertEquals(Map.of("orderNumber", "ORD-1"), result.getBody());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testExecute_ReplayIsMarked() {
+        // Setup
+        store.execute(alice, "key-1", request, () -> ResponseEntity.status(HttpStatus.CREATED).body("first"));
+
+        // Execute - the retry reaches the other instance
+        ResponseEntity<?> replay = otherInstance.execute(alice, "key-1", Map.copyOf(request),
+                () -> ResponseEntity.status(HttpStatus.CREATED).body("second"));
+
+        // Verify
+        assertEquals(HttpStatus.CREATED, replay.getStatusCode());
+        assertEquals("first", replay.getBody());
+        assertEquals("true", replay.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(1L, otherInstance.getStats().get("replayed"));
+    }
+
+    @Test
+    public void testExecute_KeyReusedForDifferentRequestRejected() {
+        // Setup
+        store.execute(alice, "key-1", request, () -> ResponseEntity.status(HttpStatus.CREATED).build());
+
+        // Execute
+        ResponseEntity<?> response = store.execute(alice, "key-1", Map.of("items", List.of()),
+                () -> ResponseEntity.status(HttpStatus.CREATED).build());
+
+        // Verify
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+        assertEquals(1L, store.getStats().get("mismatched"));
+    }
+
+    @Test
+    public void testExecute_KeysAreScopedPerUser() {
+        // Setup
+        AtomicInteger runs = new AtomicInteger();
+
+        // Execute
+        store.execute(alice, "key-1", request, () -> ResponseEntity.ok(runs.incrementAndGet()));
+        store.execute(bob, "key-1", request, () -> ResponseEntity.ok(runs.incrementAndGet()));
+
+        // Verify
+        assertEquals(2, runs.get());
+        assertEquals(2L, store.getStats().get("keys"));
+    }
+
+    @Test
+    public void testExecute_ServerErrorIsKept() {
+        // Setup - the order may have been committed before the request failed
+        AtomicInteger runs = new AtomicInteger();
+        store.execute(alice, "key-1", request, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", "failed"));
+        });
+
+        // Execute
+        ResponseEntity<?> retry = otherInstance.execute(alice, "key-1", request, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).build();
+        });
+
+        // Verify - answered from the key, not run a second time
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, retry.getStatusCode());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testExecute_ClientErrorIsNotKept() {
+        // Setup - rejected for insufficient stock
+        store.execute(alice, "key-1", request, () -> ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+
+        // Execute - the user fixed the cart and checks out again from the same tab
+        ResponseEntity<?> retry = store.execute(alice, "key-1", Map.of("items", List.of(Map.of("id", 2))),
+                () -> ResponseEntity.status(HttpStatus.CREATED).build());
+
+        // Verify
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertNull(retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(0L, store.getStats().get("mismatched"));
+    }
+
+    @Test
+    public void testExecute_ExpiredKeyRunsAgain() {
+        // Setup
+        store.execute(alice, "key-1", request, () -> ResponseEntity.status(HttpStatus.CREATED).body("first"));
+        jdbcTemplate.update("update idempotency_keys set created_at = ?", Timestamp.valueOf(LocalDateTime.now().minusHours(2)));
+
+        // Execute
+        ResponseEntity<?> retry = store.execute(alice, "key-1", request,
+                () -> ResponseEntity.status(HttpStatus.CREATED).body("second"));
+
+        // Verify
+        assertEquals("second", retry.getBody());
+    }
+
+    @Test
+    public void testPurgeExpired_DeletesOnlyExpiredKeys() {
+        // Setup
+        store.execute(alice, "key-1", request, () -> ResponseEntity.ok().build());
+        store.execute(alice, "key-2", request, () -> ResponseEntity.ok().build());
+        jdbcTemplate.update("update idempotency_keys set created_at = ? where idempotency_key = 'key-1'",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(2)));
+
+        // Execute
+        store.purgeExpired();
+
+        // Verify
+        assertEquals(List.of("key-2"), jdbcTemplate.queryForList("select idempotency_key from idempotency_keys", String.class));
+    }
+
+    @Test
+    public void testExecute_OverlongKeyRejected() {
+        // Execute
+        ResponseEntity<?> response = store.execute(alice, "k".repeat(IdempotencyStore.MAX_KEY_LENGTH + 1), request,
+                () -> ResponseEntity.ok().build());
+
+        // Verify
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+}
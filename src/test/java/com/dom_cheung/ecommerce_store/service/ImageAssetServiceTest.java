@@ -0,0 +1,135 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Runs against the real image_assets table with the image storage and deletion queue replaced by mocks.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class ImageAssetServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ImageStorage storage = mock(ImageStorage.class);
+
+    private final ImageDeletionService imageDeletionService = mock(ImageDeletionService.class);
+
+    private final ImageAssetService imageAssetService = new ImageAssetService();
+
+    private final AtomicInteger uploads = new AtomicInteger();
+
+    @BeforeEach
+    public void setup() throws Exception {
+        jdbcTemplate.update("delete from image_assets");
+        ReflectionTestUtils.setField(imageAssetService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(imageAssetService, "imageStorage", storage);
+        ReflectionTestUtils.setField(imageAssetService, "imageDeletionService", imageDeletionService);
+        // Every upload is stored under a new public ID, as the real storages do
+        when(storage.uploadFile(any(Path.class), anyString(), anyString())).thenAnswer(invocation -> {
+            String publicId = "img" + uploads.incrementAndGet();
+            return Map.of("public_id", publicId, "secure_url", "https://example.test/" + publicId);
+        });
+    }
+
+    private static MockMultipartFile image(String name, String content) {
+        return new MockMultipartFile("imageFile", name, "image/png", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Integer refCount(String publicId) {
+        return jdbcTemplate.query("select ref_count from image_assets where public_id = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, publicId);
+    }
+
+    @Test
+    public void testStore_IdenticalContentReusesStoredImage() throws Exception {
+        // Execute - the same bytes under two names, then different bytes
+        Map<String, String> first = imageAssetService.store(image("a.png", "photo"), "ecommerce_products");
+        Map<String, String> again = imageAssetService.store(image("copy of a.png", "photo"), "ecommerce_products");
+        Map<String, String> other = imageAssetService.store(image("b.png", "other photo"), "ecommerce_products");
+
+        // Verify
+        assertEquals(first, again);
+        assertNotEquals(first.get("public_id"), other.get("public_id"));
+        verify(storage, times(2)).uploadFile(any(Path.class), anyString(), anyString());
+        assertEquals(2, refCount(first.get("public_id")));
+        assertEquals(1, refCount(other.get("public_id")));
+        assertEquals(1L, imageAssetService.getStats().get("reused"));
+        assertEquals(5L, imageAssetService.getStats().get("bytesReused"));
+    }
+
+    @Test
+    public void testRelease_DeletesImageWithLastReference() throws Exception {
+        // Setup - two products use the same image; one image predates the index
+        String publicId = imageAssetService.store(image("a.png", "photo"), "ecommerce_products").get("public_id");
+        imageAssetService.store(image("a.png", "photo"), "ecommerce_products");
+
+        // Execute & Verify
+        imageAssetService.release(publicId);
+        assertEquals(1, refCount(publicId));
+        verify(imageDeletionService, never()).enqueue(anyString());
+
+        imageAssetService.release(publicId);
+        assertNull(refCount(publicId));
+        verify(imageDeletionService).enqueue(publicId);
+
+        imageAssetService.release("legacy");
+        verify(imageDeletionService).enqueue("legacy");
+
+        // Once deleted, the same bytes are uploaded again rather than pointing at the doomed image
+        String reuploaded = imageAssetService.store(image("a.png", "photo"), "ecommerce_products").get("public_id");
+        assertNotEquals(publicId, reuploaded);
+    }
+
+    @Test
+    public void testStore_ConcurrentUploadOfSameImageKeepsOneCopy() throws Exception {
+        // Setup - another instance indexes the same bytes while our upload is in flight
+        String digest = ImageAssetService.digest(writeTemp("photo"));
+        when(storage.uploadFile(any(Path.class), anyString(), anyString())).thenAnswer(invocation -> {
+            jdbcTemplate.update("insert into image_assets (digest, public_id, secure_url, size_bytes, ref_count, created_at) "
+                    + "values (?, 'winner', 'https://example.test/winner', 5, 1, ?)", digest, Timestamp.valueOf(LocalDateTime.now()));
+            return Map.of("public_id", "loser", "secure_url", "https://example.test/loser");
+        });
+
+        // Execute
+        Map<String, String> result = imageAssetService.store(image("a.png", "photo"), "ecommerce_products");
+
+        // Verify - we use the indexed copy and our own is deleted
+        assertEquals("winner", result.get("public_id"));
+        assertEquals(2, refCount("winner"));
+        verify(imageDeletionService).enqueue("loser");
+    }
+
+    @Test
+    public void testDigest_Sha256OfContent() throws Exception {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                ImageAssetService.digest(writeTemp("abc")));
+    }
+
+    private static Path writeTemp(String content) throws Exception {
+        Path file = Files.createTempFile("image-asset-test-", ".tmp");
+        file.toFile().deleteOnExit();
+        return Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,147 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Runs against the real image_deletions table with the image storage replaced by a stub.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class ImageDeletionServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ImageStorage storage = mock(ImageStorage.class);
+
+    // Batches of two, two requests per run, two attempts, backoff long enough not to come due during a test
+    private ImageDeletionService imageDeletionService;
+
+    @BeforeEach
+    public void setup() {
+        jdbcTemplate.update("delete from image_deletions");
+        imageDeletionService = new ImageDeletionService(2, 2, 2, Duration.ofHours(1), Duration.ofHours(2), Duration.ofHours(1));
+        ReflectionTestUtils.setField(imageDeletionService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(imageDeletionService, "imageStorage", storage);
+    }
+
+    private List<String> queued() {
+        return jdbcTemplate.queryForList("select public_id from image_deletions order by id", String.class);
+    }
+
+    private Map<String, Object> row(String publicId) {
+        return jdbcTemplate.queryForMap("select attempts, next_attempt_at, last_error from image_deletions where public_id = ?", publicId);
+    }
+
+    // Stub storage that deletes everything it is asked to, except "missing" which it does not know
+    private List<List<String>> deleteEverything() throws IOException {
+        List<List<String>> requests = new ArrayList<>();
+        when(storage.deleteFiles(anyList())).thenAnswer(invocation -> {
+            List<String> publicIds = invocation.getArgument(0);
+            requests.add(publicIds);
+            Map<String, String> result = new HashMap<>();
+            publicIds.forEach(id -> result.put(id, id.equals("missing") ? "not_found" : "deleted"));
+            return result;
+        });
+        return requests;
+    }
+
+    @Test
+    public void testDrain_DeletesInBatchesUpToRequestsPerRun() throws Exception {
+        // Setup
+        List<List<String>> requests = deleteEverything();
+        for (String publicId : List.of("a", "b", "missing", "d", "e")) {
+            imageDeletionService.enqueue(publicId);
+        }
+        imageDeletionService.enqueue(null);
+
+        // Execute - the first run may send two requests of two
+        imageDeletionService.drain();
+        List<String> afterFirstRun = queued();
+        imageDeletionService.drain();
+
+        // Verify - oldest first; images the storage does not know count as deleted
+        assertEquals(List.of(List.of("a", "b"), List.of("missing", "d"), List.of("e")), requests);
+        assertEquals(List.of("e"), afterFirstRun);
+        assertEquals(List.of(), queued());
+        assertEquals(4L, imageDeletionService.getStats().get("deleted"));
+        assertEquals(1L, imageDeletionService.getStats().get("notFound"));
+    }
+
+    @Test
+    public void testDrain_RetriesFailuresWithBackoffThenGivesUp() throws Exception {
+        // Setup
+        when(storage.deleteFiles(anyList())).thenThrow(new IOException("connection reset"));
+        imageDeletionService.enqueue("flaky");
+
+        // Execute - fail once, then make the retry due and fail again
+        imageDeletionService.drain();
+        Map<String, Object> afterFirst = row("flaky");
+        imageDeletionService.drain();
+        jdbcTemplate.update("update image_deletions set next_attempt_at = enqueued_at where public_id = 'flaky'");
+        imageDeletionService.drain();
+
+        // Verify - the second run found nothing due; after max-attempts the row is kept but not retried
+        assertEquals(1, afterFirst.get("attempts"));
+        assertNotNull(afterFirst.get("next_attempt_at"));
+        verify(storage, times(2)).deleteFiles(anyList());
+        Map<String, Object> abandoned = row("flaky");
+        assertEquals(2, abandoned.get("attempts"));
+        assertNull(abandoned.get("next_attempt_at"));
+        assertEquals("connection reset", abandoned.get("last_error"));
+        assertEquals(1L, imageDeletionService.getStats().get("abandoned"));
+    }
+
+    @Test
+    public void testDrain_PausesWhenRateLimitedWithoutCountingAttempt() throws Exception {
+        // Setup
+        when(storage.deleteFiles(anyList())).thenThrow(new ImageStorageRateLimitedException("rate limited", null));
+        imageDeletionService.enqueue("a");
+        imageDeletionService.enqueue("b");
+        imageDeletionService.enqueue("c");
+
+        // Execute
+        imageDeletionService.drain();
+        imageDeletionService.drain();
+
+        // Verify - one request, then nothing until the pause is over
+        verify(storage, times(1)).deleteFiles(anyList());
+        assertEquals(0, row("a").get("attempts"));
+        assertEquals(3, queued().size());
+        assertNotNull(imageDeletionService.getStats().get("pausedUntil"));
+    }
+
+    @Test
+    public void testDrain_SkipsRowsClaimedByAnotherInstance() throws Exception {
+        // Setup - another instance has claimed "a" after it was read as due
+        List<List<String>> requests = deleteEverything();
+        imageDeletionService.enqueue("a");
+        imageDeletionService.enqueue("b");
+        jdbcTemplate.update("update image_deletions set next_attempt_at = dateadd('MINUTE', 5, next_attempt_at) "
+                + "where public_id = 'a'");
+
+        // Execute
+        imageDeletionService.drain();
+
+        // Verify
+        assertEquals(List.of(List.of("b")), requests);
+        assertEquals(List.of("a"), queued());
+    }
+}
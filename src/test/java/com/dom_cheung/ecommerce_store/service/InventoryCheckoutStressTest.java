@@ -0,0 +1,109 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Not @Transactional: every checkout runs in its own transaction, as it does in production.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class InventoryCheckoutStressTest {
+
+    private static final int STOCK = 50;
+    private static final int CHECKOUTS = 2000;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Product hotProduct() {
+        Product product = new Product();
+        product.setName("Hot product");
+        product.setPrice(5.0);
+        product.setStock(STOCK);
+        return productRepository.save(product);
+    }
+
+    private List<Map<String, Object>> cart(long productId) {
+        return List.of(Map.of("id", productId, "quantity", 1));
+    }
+
+    @Test
+    public void testCreateOrder_ThousandsOfParallelCheckoutsNeverOversell() throws Exception {
+        // Setup
+        Product product = hotProduct();
+        long userId = 7001L;
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Execute
+        try {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        orderService.createOrder(userId, cart(product.getId()), "1 Stress Street");
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Verify - exactly the stock on hand was sold, and the database agrees
+        assertEquals(STOCK, succeeded.get());
+        assertEquals(CHECKOUTS - STOCK, rejected.get());
+        assertEquals(STOCK, orderRepository.findByUserIdOrderByOrderDateDesc(userId).size());
+        assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    public void testUpdateOrderStatus_CancelReturnsStock() {
+        // Setup
+        Product product = hotProduct();
+        Order order = orderService.createOrder(7002L, List.of(Map.of("id", product.getId(), "quantity", 3)), "");
+        assertEquals(STOCK - 3, productRepository.findById(product.getId()).orElseThrow().getStock());
+
+        // Execute
+        orderService.updateOrderStatus(order.getOrderNumber(), OrderStatus.CANCELLED);
+
+        // Verify
+        assertEquals(STOCK, productRepository.findById(product.getId()).orElseThrow().getStock());
+    }
+}
@@ -0,0 +1,199 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class InventoryServiceTest {
+
+    private static final int THREADS = 16;
+    private static final int CHECKOUTS = 5000;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductCache productCache;
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+    // products.stock as the conditional updates see it
+    private final AtomicInteger stock = new AtomicInteger();
+
+    @InjectMocks
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(productRepository.reserveStock(eq(1L), anyInt())).thenAnswer(invocation -> {
+            int quantity = invocation.getArgument(1);
+            synchronized (stock) {
+                if (stock.get() < quantity) {
+                    return 0;
+                }
+                stock.addAndGet(-quantity);
+                return 1;
+            }
+        });
+    }
+
+    private Product product(long id, Integer stock) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setStock(stock);
+        return product;
+    }
+
+
+    @Test
+    public void testReserve_ParallelCheckoutsNeverOversell() throws Exception {
+        // Setup - one hot product with 100 units, 5000 concurrent single-unit checkouts
+        stock.set(100);
+        Map<Long, Product> products = Map.of(1L, product(1L, 100));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Execute
+        try {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        inventoryService.reserve(Map.of(1L, 1), products);
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Verify
+        assertEquals(100, succeeded.get());
+        assertEquals(CHECKOUTS - 100, rejected.get());
+        assertEquals(0, stock.get());
+    }
+
+    @Test
+    public void testReserve_MultiLineCartIsAllOrNothing() {
+        // Setup
+        Map<Long, Product> products = Map.of(2L, product(2L, 10), 1L, product(1L, 1));
+        stock.set(1);
+
+        // Execute - product 1 comes first in id order and cannot be served
+        assertThrows(IllegalArgumentException.class,
+                () -> inventoryService.reserve(Map.of(2L, 5, 1L, 2), products));
+
+        // Verify - product 2 is never taken, so there is nothing to hand back
+        verify(productRepository, never()).reserveStock(2L, 5);
+        verify(productRepository, never()).decrementStock(anyLong(), anyInt());
+        assertEquals(1L, inventoryService.getStats().get("rejections"));
+    }
+
+    @Test
+    public void testReserve_ShortLineHandsBackEarlierLinesWithoutFailingTheTransaction() {
+        // Setup
+        Map<Long, Product> products = Map.of(1L, product(1L, 10), 2L, product(2L, 1));
+        stock.set(10);
+        when(productRepository.reserveStock(2L, 2)).thenReturn(0);
+
+        // Execute
+        assertThrows(IllegalArgumentException.class,
+                () -> inventoryService.reserve(Map.of(1L, 5, 2L, 2), products));
+
+        // Verify - the first line is given back, and a surrounding transaction is not rolled back
+        InOrder inOrder = inOrder(productRepository);
+        inOrder.verify(productRepository).reserveStock(1L, 5);
+        inOrder.verify(productRepository).reserveStock(2L, 2);
+        inOrder.verify(productRepository).decrementStock(1L, -5);
+        verify(transactionManager, never()).rollback(any());
+        verifyNoInteractions(productCache);
+    }
+
+    @Test
+    public void testReserve_UntrackedProductsAreNotLimited() {
+        // Setup
+        Map<Long, Product> products = Map.of(1L, product(1L, null));
+
+        // Execute
+        inventoryService.reserve(Map.of(1L, 1000), products);
+
+        // Verify
+        verify(productRepository, never()).reserveStock(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testReserve_DropsCachedProducts() {
+        // Setup
+        stock.set(5);
+
+        // Execute
+        inventoryService.reserve(Map.of(1L, 4), Map.of(1L, product(1L, 5)));
+
+        // Verify
+        assertEquals(1, stock.get());
+        verify(productCache).invalidate(1L);
+    }
+
+    @Test
+    public void testRelease_ReturnsStock() {
+        // Execute
+        inventoryService.release(Map.of(1L, 4, 2L, 1));
+
+        // Verify
+        verify(productRepository).decrementStock(1L, -4);
+        verify(productRepository).decrementStock(2L, -1);
+        verify(productCache).invalidate(1L);
+        verify(productCache).invalidate(2L);
+        assertEquals(1L, inventoryService.getStats().get("releases"));
+    }
+
+    @Test
+    public void testSetStock_DropsCachedProduct() {
+        // Execute - a stock count sets the stock on hand to 20
+        inventoryService.setStock(1L, 20);
+
+        // Verify
+        verify(productRepository).setStock(1L, 20);
+        verify(productCache).invalidate(1L);
+    }
+}
@@ -0,0 +1,76 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalImageStorageTest {
+
+    @TempDir
+    private Path directory;
+
+    private LocalImageStorage localImageStorage;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        localImageStorage = new LocalImageStorage(directory, "/media");
+    }
+
+    @Test
+    public void testUploadFile_StoresCopyUnderNewPublicId() throws Exception {
+        // Setup
+        MockMultipartFile file = new MockMultipartFile("imageFile", "Photo.PNG", "image/png", new byte[]{1, 2, 3});
+
+        // Execute
+        Map<String, String> first = localImageStorage.uploadFile(file, "ecommerce_products");
+        Map<String, String> second = localImageStorage.uploadFile(file, "ecommerce_products");
+
+        // Verify - each upload is its own file, named after nothing the client chose but the extension
+        String publicId = first.get("public_id");
+        assertTrue(publicId.matches("ecommerce_products/[0-9a-f-]{36}\\.png"), publicId);
+        assertEquals("/media/" + publicId, first.get("secure_url"));
+        assertNotEquals(publicId, second.get("public_id"));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(directory.resolve(publicId)));
+        try (var files = Files.list(directory.resolve("ecommerce_products"))) {
+            assertEquals(2, files.count(), "no partial files left behind");
+        }
+    }
+
+    @Test
+    public void testUploadFile_RejectsFolderOutsideDirectory() {
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.png", "image/png", new byte[]{1});
+
+        assertThrows(IllegalArgumentException.class, () -> localImageStorage.uploadFile(file, "../elsewhere"));
+    }
+
+    @Test
+    public void testDeleteFiles_ReportsResultPerPublicId() throws Exception {
+        // Setup
+        String publicId = localImageStorage.uploadFile(
+                new MockMultipartFile("imageFile", "photo.jpg", "image/jpeg", new byte[]{1}), null).get("public_id");
+
+        // Execute
+        Map<String, String> result = localImageStorage.deleteFiles(List.of(publicId, "gone.jpg", "../secret"));
+
+        // Verify
+        assertEquals(Map.of(publicId, "deleted", "gone.jpg", "not_found", "../secret", "invalid"), result);
+        assertFalse(Files.exists(directory.resolve(publicId)));
+    }
+
+    @Test
+    public void testResolve_OnlyPathsInsideDirectory() {
+        assertEquals(directory.resolve("a/b.png"), localImageStorage.resolve("a/b.png"));
+        assertNull(localImageStorage.resolve("../b.png"));
+        assertNull(localImageStorage.resolve("a/../../b.png"));
+        assertNull(localImageStorage.resolve("/etc/passwd"));
+        assertNull(localImageStorage.resolve("a/.upload-1.tmp"));
+    }
+}
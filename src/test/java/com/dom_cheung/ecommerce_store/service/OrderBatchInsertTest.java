@@ -0,0 +1,115 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+@Transactional
+public class OrderBatchInsertTest {
+
+    /**
+     * Records every SQL statement Hibernate prepares. A JDBC batch is prepared once, however many rows it carries.
+     * Statements of @Scheduled jobs (stock reconciliation, cart flushes) are left out, so they cannot show up
+     * in the middle of a test's count.
+     */
+    public static class RecordingStatementInspector implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (!Thread.currentThread().getName().startsWith("scheduling-")) {
+                STATEMENTS.add(sql.toLowerCase());
+            }
+            return sql;
+        }
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        for (int i = 0; i < 30; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(1.5 + i);
+            productIds.add(productRepository.save(product).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private List<Map<String, Object>> cart(int lines) {
+        List<Map<String, Object>> cartItems = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", productIds.get(i));
+            item.put("quantity", 2);
+            cartItems.add(item);
+        }
+        return cartItems;
+    }
+
+    // Statements prepared for one checkout, up to and including the flush
+    private List<String> checkoutStatements(int lines) {
+        RecordingStatementInspector.STATEMENTS.clear();
+        Order order = orderService.createOrder(1L, cart(lines), "1 Batch Street");
+        entityManager.flush();
+        List<String> statements = new ArrayList<>(RecordingStatementInspector.STATEMENTS);
+        assertEquals(lines, order.getItems().size());
+        entityManager.clear();
+        return statements;
+    }
+
+    private long count(List<String> statements, String prefix) {
+        return statements.stream().filter(sql -> sql.startsWith(prefix)).count();
+    }
+
+    @Test
+    public void testCreateOrder_ThirtyLineCartUsesTwoInsertStatements() {
+        List<String> statements = checkoutStatements(30);
+
+        assertEquals(1, count(statements, "insert into orders"));
+        assertEquals(1, count(statements, "insert into order_items"));
+        assertEquals(0, count(statements, "update"));
+    }
+
+    @Test
+    public void testCreateOrder_StatementCountDoesNotGrowWithCartSize() {
+        List<String> small = checkoutStatements(1);
+        List<String> large = checkoutStatements(30);
+
+        // Sequence fetches happen once per block of 50 ids, so leave them out of the comparison
+        List<String> smallWithoutSequences = small.stream().filter(sql -> !sql.contains("next value for")).toList();
+        List<String> largeWithoutSequences = large.stream().filter(sql -> !sql.contains("next value for")).toList();
+        assertEquals(smallWithoutSequences.size(), largeWithoutSequences.size(), "statements: " + large);
+        assertTrue(large.size() - largeWithoutSequences.size() <= 2, "statements: " + large);
+    }
+}
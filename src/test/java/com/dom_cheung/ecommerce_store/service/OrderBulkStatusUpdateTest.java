@@ -0,0 +1,116 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Not @Transactional: the bulk update commits its own transaction, as it does in production.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class OrderBulkStatusUpdateTest {
+
+    private static final List<String> STATEMENTS = OrderBatchInsertTest.RecordingStatementInspector.STATEMENTS;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PendingOrderSweeper pendingOrderSweeper;
+
+    private List<String> createOrders(String prefix, int count, OrderStatus status) {
+        return createOrders(prefix, count, status, LocalDateTime.now());
+    }
+
+    private List<String> createOrders(String prefix, int count, OrderStatus status, LocalDateTime orderDate) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setUserId(9101L);
+            order.setOrderNumber(prefix + i);
+            order.setOrderDate(orderDate);
+            order.setStatus(status);
+            orders.add(order);
+        }
+        return orderRepository.saveAll(orders).stream().map(Order::getOrderNumber).toList();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUpdateOrderStatuses_OneQueryAndOneBatchedUpdate() {
+        // Setup - a shift's worth of orders ready to ship, plus a few that cannot be shipped
+        List<String> processing = createOrders("BULK-P-", 200, OrderStatus.PROCESSING);
+        List<String> cancelled = createOrders("BULK-C-", 3, OrderStatus.CANCELLED);
+        List<String> request = new ArrayList<>(processing);
+        request.addAll(cancelled);
+        request.add("BULK-MISSING");
+        request.add(processing.get(0)); // duplicates are ignored
+
+        // Execute
+        STATEMENTS.clear();
+        Map<String, Object> response = orderService.updateOrderStatuses(request, OrderStatus.SHIPPED);
+        List<String> orderStatements = STATEMENTS.stream().filter(sql -> sql.contains("orders")).toList();
+
+        // Verify - one select and one batched update statement, whatever the number of orders
+        assertEquals(2, orderStatements.size(), orderStatements.toString());
+        assertTrue(orderStatements.get(0).startsWith("select"));
+        assertTrue(orderStatements.get(1).startsWith("update"));
+
+        assertEquals(200, response.get("updated"));
+        assertEquals(0, response.get("unchanged"));
+        assertEquals(4, response.get("failed"));
+        List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("results");
+        assertEquals(204, results.size());
+        assertEquals("UPDATED", results.get(0).get("result"));
+        assertEquals("INVALID_TRANSITION", results.get(200).get("result"));
+        assertEquals("NOT_FOUND", results.get(203).get("result"));
+
+        for (Order order : orderRepository.findByOrderNumberIn(processing)) {
+            assertEquals(OrderStatus.SHIPPED, order.getStatus());
+            assertEquals(1L, order.getVersion());
+        }
+        for (Order order : orderRepository.findByOrderNumberIn(cancelled)) {
+            assertEquals(OrderStatus.CANCELLED, order.getStatus());
+        }
+    }
+
+    @Test
+    public void testSweep_CancelsOnlyStalePendingOrders() {
+        // Setup
+        LocalDateTime threeDaysAgo = LocalDateTime.now().minusDays(3);
+        List<String> stale = createOrders("SWEEP-S-", 450, OrderStatus.PENDING, threeDaysAgo);
+        List<String> recent = createOrders("SWEEP-R-", 5, OrderStatus.PENDING);
+        List<String> shipped = createOrders("SWEEP-X-", 5, OrderStatus.SHIPPED, threeDaysAgo);
+
+        // Execute - other tests in this shared database may have left stale PENDING orders of their own,
+        // so keep sweeping until a run finds nothing left within its time budget
+        long sweptBefore = (long) pendingOrderSweeper.getStats().get("totalSwept");
+        do {
+            pendingOrderSweeper.sweep();
+        } while ((long) pendingOrderSweeper.getStats().get("lastRunSwept") > 0);
+
+        // Verify
+        orderRepository.findByOrderNumberIn(stale)
+                .forEach(order -> assertEquals(OrderStatus.CANCELLED, order.getStatus()));
+        orderRepository.findByOrderNumberIn(recent)
+                .forEach(order -> assertEquals(OrderStatus.PENDING, order.getStatus()));
+        orderRepository.findByOrderNumberIn(shipped)
+                .forEach(order -> assertEquals(OrderStatus.SHIPPED, order.getStatus()));
+        assertTrue((long) pendingOrderSweeper.getStats().get("totalSwept") - sweptBefore >= 450L);
+    }
+}
@@ -0,0 +1,95 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Runs against the real order_status_events table; a second service stands for another instance.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class OrderEventServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final OrderEventService orderEventService = new OrderEventService(Duration.ofMinutes(1), 2);
+
+    private final OrderEventService otherInstance = new OrderEventService(Duration.ofMinutes(1), 2);
+
+    @BeforeEach
+    public void setup() {
+        jdbcTemplate.update("delete from order_status_events");
+        ReflectionTestUtils.setField(orderEventService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(otherInstance, "jdbcTemplate", jdbcTemplate);
+    }
+
+    private static Order order(long userId, String orderNumber) {
+        Order order = new Order();
+        order.setUserId(userId);
+        order.setOrderNumber(orderNumber);
+        order.setStatus(OrderStatus.SHIPPED);
+        order.setVersion(2L);
+        return order;
+    }
+
+    @Test
+    public void testSubscribe_RejectedOverMaxConnections() {
+        // Setup
+        orderEventService.subscribe(1L);
+        orderEventService.subscribe(2L);
+
+        // Execute & Verify
+        assertThrows(OrderEventStreamsFullException.class, () -> orderEventService.subscribe(3L));
+        assertEquals(2, orderEventService.getStats().get("connections"));
+        assertEquals(2, orderEventService.getStats().get("users"));
+        assertEquals(1L, orderEventService.getStats().get("rejected"));
+    }
+
+    @Test
+    public void testStatusChanged_OnlyPublishedToUsersWithStreams() {
+        // Setup
+        orderEventService.subscribe(1L);
+
+        // Execute
+        orderEventService.statusChanged(order(1L, "ORD-1"), OrderStatus.PROCESSING);
+        orderEventService.statusChanged(order(2L, "ORD-2"), OrderStatus.PROCESSING);
+
+        // Verify
+        assertEquals(1L, orderEventService.getStats().get("published"));
+    }
+
+    @Test
+    public void testPollOtherInstances_RelaysChangesMadeElsewhereOnce() throws Exception {
+        // Setup - the owner's stream is held by the other instance
+        otherInstance.subscribe(1L);
+        orderEventService.subscribe(1L);
+
+        // Execute - the change commits here and is recorded in the background
+        orderEventService.statusChanged(order(1L, "ORD-1"), OrderStatus.PROCESSING);
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) otherInstance.getStats().get("relayed") == 0 && System.currentTimeMillis() < deadline) {
+            otherInstance.pollOtherInstances();
+            Thread.sleep(20);
+        }
+        otherInstance.pollOtherInstances();
+        orderEventService.pollOtherInstances();
+
+        // Verify - pushed once on the other instance, and not again here where it was published directly
+        assertEquals(1L, otherInstance.getStats().get("relayed"));
+        assertEquals(1L, otherInstance.getStats().get("published"));
+        assertEquals(0L, orderEventService.getStats().get("relayed"));
+        assertEquals(1L, orderEventService.getStats().get("published"));
+    }
+}
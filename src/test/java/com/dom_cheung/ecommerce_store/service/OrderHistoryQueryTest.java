@@ -0,0 +1,166 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderItem;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.model.OrderSummary;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+@Transactional
+public class OrderHistoryQueryTest {
+
+    private static final List<String> STATEMENTS = OrderBatchInsertTest.RecordingStatementInspector.STATEMENTS;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Orders with 3 items each; every other order shares its date with the previous one to exercise the id tie-break
+    private void createOrders(Long userId, int count) {
+        LocalDateTime date = LocalDateTime.of(2025, 1, 1, 12, 0);
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setUserId(userId);
+            order.setOrderNumber("ORD-" + userId + "-" + i);
+            order.setOrderDate(i % 2 == 0 ? date.plusMinutes(i) : date.plusMinutes(i - 1));
+            order.setStatus(OrderStatus.PENDING);
+            for (int j = 0; j < 3; j++) {
+                OrderItem item = new OrderItem();
+                item.setProductId((long) j + 1);
+                item.setProductName("Product " + j);
+                item.setProductPrice(2.0);
+                item.setQuantity(1);
+                item.setSubtotal(2.0);
+                order.getItems().add(item);
+            }
+            order.setTotalAmount(6.0);
+            orderRepository.save(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    // Statements run to load one page and serialize it the way the controller does
+    @SuppressWarnings("unchecked")
+    private List<String> pageStatements(Long userId, int limit) throws Exception {
+        STATEMENTS.clear();
+        Map<String, Object> page = orderService.getUserOrderPage(userId, null, limit);
+        objectMapper.writeValueAsString(page);
+        List<String> statements = new ArrayList<>(STATEMENTS);
+        for (Order order : (List<Order>) page.get("items")) {
+            assertEquals(3, order.getItems().size());
+        }
+        entityManager.clear();
+        return statements;
+    }
+
+    @Test
+    public void testGetUserOrderPage_QueryCountDoesNotGrowWithOrders() throws Exception {
+        // Setup
+        createOrders(100L, 2);
+        createOrders(200L, 40);
+
+        // Execute
+        List<String> small = pageStatements(100L, OrderService.MAX_PAGE_SIZE);
+        List<String> large = pageStatements(200L, OrderService.MAX_PAGE_SIZE);
+
+        // Verify - one id query plus one fetch-join query, whatever the number of orders
+        assertEquals(2, small.size(), "statements: " + small);
+        assertEquals(small.size(), large.size(), "statements: " + large);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetUserOrderPage_CursorWalksAllOrdersNewestFirst() {
+        // Setup
+        createOrders(300L, 25);
+
+        // Execute
+        List<Order> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Map<String, Object> page = orderService.getUserOrderPage(300L, cursor, 10);
+            seen.addAll((List<Order>) page.get("items"));
+            cursor = (String) page.get("nextCursor");
+            pages++;
+        } while (cursor != null);
+
+        // Verify
+        assertEquals(3, pages);
+        assertEquals(25, seen.size());
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < seen.size(); i++) {
+            assertTrue(ids.add(seen.get(i).getId()), "order returned twice");
+            if (i > 0) {
+                Order previous = seen.get(i - 1);
+                Order current = seen.get(i);
+                assertFalse(current.getOrderDate().isAfter(previous.getOrderDate()));
+                if (current.getOrderDate().equals(previous.getOrderDate())) {
+                    assertTrue(current.getId() < previous.getId());
+                }
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetUserOrderSummaryPage_OneQueryWithoutLoadingItems() {
+        // Setup
+        createOrders(400L, 30);
+
+        // Execute
+        STATEMENTS.clear();
+        Map<String, Object> page = orderService.getUserOrderSummaryPage(400L, null, 20);
+        List<String> statements = new ArrayList<>(STATEMENTS);
+
+        // Verify - a single aggregate query that reads no item columns besides the quantity
+        assertEquals(1, statements.size(), "statements: " + statements);
+        assertTrue(statements.get(0).contains("sum("));
+        assertFalse(statements.get(0).contains("product_name"));
+        assertFalse(statements.get(0).contains("product_image_url"));
+
+        List<OrderSummary> summaries = (List<OrderSummary>) page.get("items");
+        assertEquals(20, summaries.size());
+        assertEquals(3, summaries.get(0).itemCount());
+        assertEquals(6.0, summaries.get(0).totalAmount());
+        assertNotNull(page.get("nextCursor"));
+
+        Map<String, Object> lastPage = orderService.getUserOrderSummaryPage(400L, (String) page.get("nextCursor"), 20);
+        assertEquals(10, ((List<OrderSummary>) lastPage.get("items")).size());
+        assertNull(lastPage.get("nextCursor"));
+    }
+
+    @Test
+    public void testGetUserOrderPage_RejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getUserOrderPage(1L, "not-a-cursor", 10));
+    }
+}
@@ -0,0 +1,108 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the per-request checkout path with the group-commit path under the same concurrent load.
+ * Timings are logged for comparison; the assertions only check that both paths write every order
+ * and that the group-commit path actually batches.
+ */
+@SpringBootTest(properties = {
+        "store.order-ingestion.enabled=true",
+        "store.order-ingestion.queue-capacity=5000"
+})
+public class OrderIngestionBenchmarkTest {
+
+    private static final Logger LOGGER = Logger.getLogger(OrderIngestionBenchmarkTest.class.getName());
+
+    private static final int CLIENTS = 32;
+    private static final int CHECKOUTS = 2000;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderIngestionService orderIngestionService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private interface Checkout {
+        Order create(Long userId, List<Map<String, Object>> cartItems, String shippingAddress) throws Exception;
+    }
+
+    // Run CHECKOUTS checkouts from CLIENTS concurrent clients, returning the elapsed milliseconds
+    private long run(Long userId, Checkout checkout) throws Exception {
+        Product product = new Product();
+        product.setName("Sale product");
+        product.setPrice(3.0);
+        long productId = productRepository.save(product).getId();
+        List<Map<String, Object>> cart = List.of(Map.of("id", productId, "quantity", 1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<String> orderNumbers = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    start.await();
+                    orderNumbers.add(checkout.create(userId, cart, "1 Sale Street").getOrderNumber());
+                    return null;
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+            assertEquals(CHECKOUTS, orderNumbers.size());
+            assertEquals(CHECKOUTS, orderRepository.findOrderIdsByUserId(userId, PageRequest.ofSize(CHECKOUTS + 1)).size());
+            return elapsedMillis;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGroupCommitAgainstPerRequestTransactions() throws Exception {
+        long perRequestMillis = run(8001L, orderService::createOrder);
+        long groupCommitMillis = run(8002L, orderIngestionService::createOrder);
+
+        Map<String, Object> stats = orderIngestionService.getStats();
+        LOGGER.info(String.format("%d checkouts from %d clients: per-request %d ms (%.0f/s), group commit %d ms (%.0f/s), stats %s",
+                CHECKOUTS, CLIENTS,
+                perRequestMillis, CHECKOUTS * 1000.0 / Math.max(1, perRequestMillis),
+                groupCommitMillis, CHECKOUTS * 1000.0 / Math.max(1, groupCommitMillis),
+                stats));
+
+        assertEquals((long) CHECKOUTS, stats.get("committed"));
+        assertTrue((long) stats.get("batches") < CHECKOUTS, "checkouts were not batched: " + stats);
+    }
+}
@@ -0,0 +1,233 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class OrderIngestionServiceTest {
+
+    private static final int QUEUE_CAPACITY = 5;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    // Writers are started by each test, after the queue has been filled
+    @InjectMocks
+    private OrderIngestionService ingestionService = new OrderIngestionService(true, QUEUE_CAPACITY, 1, 100, 5000);
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(orderService.getCartProductIds(any(), anyList())).thenReturn(List.of(1L));
+        Product product = new Product();
+        product.setId(1L);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        when(orderService.prepareOrder(any(), anyList(), anyString(), any())).thenAnswer(invocation -> {
+            Order order = new Order();
+            order.setUserId(invocation.getArgument(0));
+            order.setOrderNumber("ORD-" + invocation.getArgument(0));
+            return order;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        ingestionService.stop();
+    }
+
+    private List<Map<String, Object>> cart() {
+        return List.of(Map.of("id", 1, "quantity", 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSubmit_QueuedCheckoutsCommitInOneBatch() throws Exception {
+        // Setup
+        List<CompletableFuture<Order>> results = new ArrayList<>();
+        for (long userId = 1; userId <= QUEUE_CAPACITY; userId++) {
+            results.add(ingestionService.submit(userId, cart(), ""));
+        }
+
+        // Execute
+        ingestionService.start();
+
+        // Verify - every caller gets its own order, written with one transaction and one saveAll
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("ORD-" + (i + 1), results.get(i).get(5, TimeUnit.SECONDS).getOrderNumber());
+        }
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        verify(productRepository, times(1)).findAllById(any());
+        ArgumentCaptor<Iterable<Order>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(orderRepository, times(1)).saveAll(saved.capture());
+        assertEquals(QUEUE_CAPACITY, ((List<Order>) saved.getValue()).size());
+
+        Map<String, Object> stats = ingestionService.getStats();
+        assertEquals(1L, stats.get("batches"));
+        assertEquals((long) QUEUE_CAPACITY, stats.get("largestBatch"));
+        assertEquals((long) QUEUE_CAPACITY, stats.get("committed"));
+    }
+
+    @Test
+    public void testSubmit_FullQueueIsRejected() {
+        // Setup
+        for (long userId = 1; userId <= QUEUE_CAPACITY; userId++) {
+            ingestionService.submit(userId, cart(), "");
+        }
+
+        // Execute & Verify
+        assertThrows(CheckoutQueueFullException.class, () -> ingestionService.submit(99L, cart(), ""));
+        assertEquals(1L, ingestionService.getStats().get("rejected"));
+    }
+
+    @Test
+    public void testSubmit_InvalidCheckoutFailsAloneInItsBatch() throws Exception {
+        // Setup
+        when(orderService.prepareOrder(eq(2L), anyList(), anyString(), any()))
+                .thenThrow(new IllegalArgumentException("Not enough stock for product: Hot"));
+        CompletableFuture<Order> first = ingestionService.submit(1L, cart(), "");
+        CompletableFuture<Order> second = ingestionService.submit(2L, cart(), "");
+        CompletableFuture<Order> third = ingestionService.submit(3L, cart(), "");
+
+        // Execute
+        ingestionService.start();
+
+        // Verify
+        assertEquals("ORD-1", first.get(5, TimeUnit.SECONDS).getOrderNumber());
+        assertEquals("ORD-3", third.get(5, TimeUnit.SECONDS).getOrderNumber());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        assertEquals(1L, ingestionService.getStats().get("failed"));
+    }
+
+    @Test
+    public void testSubmit_FailedCommitFailsEveryCheckoutInTheBatch() throws Exception {
+        // Setup
+        when(orderRepository.saveAll(any())).thenThrow(new RuntimeException("database down"));
+        CompletableFuture<Order> first = ingestionService.submit(1L, cart(), "");
+        CompletableFuture<Order> second = ingestionService.submit(2L, cart(), "");
+
+        // Execute
+        ingestionService.start();
+
+        // Verify
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertEquals(0L, ingestionService.getStats().get("committed"));
+    }
+
+    @Test
+    public void testSubmit_FailedBatchIsWrittenOneByOne() throws Exception {
+        // Setup - the order of user 2 breaks a constraint, failing any transaction it is written in
+        when(orderRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<Order> orders = invocation.getArgument(0);
+            for (Order order : orders) {
+                if (order.getUserId() == 2L) {
+                    throw new DataIntegrityViolationException("duplicate order number");
+                }
+            }
+            return orders;
+        });
+        CompletableFuture<Order> first = ingestionService.submit(1L, cart(), "");
+        CompletableFuture<Order> second = ingestionService.submit(2L, cart(), "");
+        CompletableFuture<Order> third = ingestionService.submit(3L, cart(), "");
+
+        // Execute
+        ingestionService.start();
+
+        // Verify - only the bad order is rejected
+        assertEquals("ORD-1", first.get(5, TimeUnit.SECONDS).getOrderNumber());
+        assertEquals("ORD-3", third.get(5, TimeUnit.SECONDS).getOrderNumber());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataIntegrityViolationException.class, error.getCause());
+        assertEquals(2L, ingestionService.getStats().get("committed"));
+        assertEquals(1L, ingestionService.getStats().get("splitBatches"));
+    }
+
+    @Test
+    public void testCreateOrder_CheckoutNotPickedUpInTimeIsWithdrawn() throws Exception {
+        // Setup - no writers running, a short response timeout
+        ReflectionTestUtils.setField(ingestionService, "responseTimeoutMillis", 50L);
+
+        // Execute
+        assertThrows(CheckoutQueueFullException.class, () -> ingestionService.createOrder(1L, cart(), ""));
+        ingestionService.start();
+        ingestionService.stop();
+
+        // Verify - the withdrawn checkout is never written
+        assertEquals(0, (int) ingestionService.getStats().get("queueDepth"));
+        assertEquals(1L, ingestionService.getStats().get("timedOut"));
+        verify(orderRepository, never()).saveAll(any());
+    }
+
+    @Test
+    public void testCreateOrder_WaitsForBatchPastTimeoutAndKeepsInterrupt() throws Exception {
+        // Setup - the batch takes longer than the response timeout
+        ReflectionTestUtils.setField(ingestionService, "responseTimeoutMillis", 50L);
+        CountDownLatch batchStarted = new CountDownLatch(1);
+        CountDownLatch finishBatch = new CountDownLatch(1);
+        when(orderRepository.saveAll(any())).thenAnswer(invocation -> {
+            batchStarted.countDown();
+            finishBatch.await(5, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+        ingestionService.start();
+
+        // Execute - the caller is also interrupted while it waits
+        AtomicReference<Order> order = new AtomicReference<>();
+        AtomicBoolean interruptKept = new AtomicBoolean();
+        Thread caller = Thread.ofPlatform().start(() -> {
+            order.set(ingestionService.createOrder(1L, cart(), ""));
+            interruptKept.set(Thread.currentThread().isInterrupted());
+        });
+        assertTrue(batchStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        caller.interrupt();
+        Thread.sleep(50);
+        finishBatch.countDown();
+        caller.join(5000);
+
+        // Verify - the committed order is returned, not a timeout, and the interrupt is not lost
+        assertEquals("ORD-1", order.get().getOrderNumber());
+        assertTrue(interruptKept.get());
+        assertEquals(0L, ingestionService.getStats().get("timedOut"));
+    }
+}
@@ -0,0 +1,157 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.AdminOrderRow;
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.dom_cheung.ecommerce_store.service.OrderSearchService.ExportFormat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Not @Transactional: search and export run in their own read-only transactions.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class OrderSearchServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+    @Autowired
+    private OrderSearchService orderSearchService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // One order per hour from START; status cycles through all statuses, totals are 10, 20, 30, ...
+    private void createOrders(Long userId, int count) {
+        OrderStatus[] statuses = OrderStatus.values();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setUserId(userId);
+            order.setOrderNumber("SEARCH-" + userId + "-" + i);
+            order.setOrderDate(START.plusHours(i));
+            order.setStatus(statuses[i % statuses.length]);
+            order.setTotalAmount(10.0 * (i + 1));
+            order.setShippingAddress("Flat " + i + ", 1 \"Export\" Street\nSpringfield");
+            orders.add(order);
+            if (orders.size() == 1000) {
+                orderRepository.saveAll(orders);
+                orders.clear();
+            }
+        }
+        orderRepository.saveAll(orders);
+    }
+
+    private OrderSearchCriteria forUser(Long userId) {
+        return new OrderSearchCriteria(null, null, null, userId, null, null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSearch_FiltersAndWalksPages() {
+        // Setup
+        createOrders(9201L, 60);
+        OrderSearchCriteria criteria = new OrderSearchCriteria(OrderStatus.SHIPPED,
+                START.plusHours(10), START.plusHours(50), 9201L, 150.0, 400.0);
+
+        // Execute - walk every page, three orders at a time
+        List<AdminOrderRow> found = new ArrayList<>();
+        String cursor = null;
+        do {
+            Map<String, Object> page = orderSearchService.search(criteria, cursor, 3);
+            found.addAll((List<AdminOrderRow>) page.get("items"));
+            cursor = (String) page.get("nextCursor");
+        } while (cursor != null);
+
+        // Verify - SHIPPED is every 5th order from index 2; hours 10-49 and totals 150-400 leave 17, 22, 27, 32, 37
+        assertEquals(List.of("SEARCH-9201-37", "SEARCH-9201-32", "SEARCH-9201-27", "SEARCH-9201-22", "SEARCH-9201-17"),
+                found.stream().map(AdminOrderRow::orderNumber).toList());
+    }
+
+    @Test
+    public void testSearch_InvalidCursorRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> orderSearchService.search(forUser(9201L), "not-a-cursor", 10));
+    }
+
+    @Test
+    public void testExport_CsvQuotesFieldsAndIncludesEveryRow() throws Exception {
+        // Setup
+        createOrders(9202L, 12);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Execute
+        long count = orderSearchService.export(forUser(9202L), ExportFormat.CSV, out);
+
+        // Verify - header plus one record per order; the address keeps its quotes and line break
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertEquals(12, count);
+        assertTrue(csv.startsWith("id,orderNumber,userId,orderDate,status,totalAmount,shippingAddress\r\n"));
+        assertTrue(csv.contains(",SEARCH-9202-0,9202,2025-03-01T09:00,PENDING,10.0,\"Flat 0, 1 \"\"Export\"\" Street\nSpringfield\"\r\n"),
+                csv);
+        assertEquals(13, csv.split("\r\n").length);
+    }
+
+    @Test
+    public void testExport_NdjsonWritesOneObjectPerLine() throws Exception {
+        // Setup
+        createOrders(9203L, 7);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Execute
+        orderSearchService.export(forUser(9203L), ExportFormat.NDJSON, out);
+
+        // Verify - oldest first
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(7, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode order = objectMapper.readTree(lines[i]);
+            assertEquals("SEARCH-9203-" + i, order.get("orderNumber").asText());
+            assertEquals(9203L, order.get("userId").asLong());
+        }
+    }
+
+    @Test
+    public void testExport_StreamsLargeExportWithoutBuffering() throws Exception {
+        // Setup - count bytes instead of keeping them
+        createOrders(9204L, 20_000);
+        long[] bytes = {0};
+        OutputStream counting = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes[0]++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytes[0] += len;
+            }
+        };
+
+        // Execute
+        long count = orderSearchService.export(forUser(9204L), ExportFormat.CSV, counting);
+
+        // Verify
+        assertEquals(20_000, count);
+        assertTrue(bytes[0] > 20_000 * 50, "bytes written: " + bytes[0]);
+    }
+}
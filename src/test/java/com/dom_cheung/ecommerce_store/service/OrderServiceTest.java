@@ -9,7 +9,9 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +30,18 @@ public class OrderServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Spy
+    private OrderNumberGenerator orderNumberGenerator = new SnowflakeOrderNumberGenerator("ORD-", 1, Duration.ofMinutes(10));
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private OrderEventService orderEventService;
+
     @InjectMocks
     private OrderService orderService;
 
@@ -81,6 +95,7 @@ public class OrderServiceTest {
         assertEquals(userId, createdOrder.getUserId());
         assertEquals(shippingAddress, createdOrder.getShippingAddress());
         assertEquals(2, createdOrder.getItems().size());
+        assertTrue(createdOrder.getOrderNumber().startsWith("ORD-"));
 
         // Verify total calculation
         double expectedTotal = (10.99 * 2) + (20.50 * 1);
@@ -89,6 +104,7 @@ public class OrderServiceTest {
         // Verify repository calls
         verify(productRepository).findAllById(anyList());
         verify(orderRepository).save(any(Order.class));
+        verify(salesRollupService).recordOrder(createdOrder);
     }
 
     @Test
@@ -0,0 +1,107 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Not @Transactional: every status update runs in its own transaction, as it does in production.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class OrderStatusConcurrencyTest {
+
+    private static final int ORDERS = 100;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    // Try to move the order to the given status, returning whether this caller's transition was applied
+    private Callable<Boolean> transition(CountDownLatch start, String orderNumber, OrderStatus status) {
+        return () -> {
+            start.await();
+            try {
+                orderService.updateOrderStatus(orderNumber, status);
+                return true;
+            } catch (IllegalArgumentException e) {
+                // The other transition won and this one is no longer legal
+                return false;
+            }
+        };
+    }
+
+    @Test
+    public void testUpdateOrderStatus_CancelRacingShipAppliesExactlyOne() throws Exception {
+        // Setup - one unit of stock per order, all of it reserved by PROCESSING orders
+        Product product = new Product();
+        product.setName("Contended product");
+        product.setPrice(4.0);
+        product.setStock(ORDERS);
+        long productId = productRepository.save(product).getId();
+
+        List<String> orderNumbers = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = orderService.createOrder(9001L, List.of(Map.of("id", productId, "quantity", 1)), "1 Race Road");
+            orderService.updateOrderStatus(order.getOrderNumber(), OrderStatus.PROCESSING);
+            orderNumbers.add(order.getOrderNumber());
+        }
+        assertEquals(0, productRepository.findById(productId).orElseThrow().getStock());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> cancels = new ArrayList<>();
+        List<Future<Boolean>> shipments = new ArrayList<>();
+
+        // Execute - a customer cancellation and an admin shipment race on every order
+        try {
+            for (String orderNumber : orderNumbers) {
+                cancels.add(executor.submit(transition(start, orderNumber, OrderStatus.CANCELLED)));
+                shipments.add(executor.submit(transition(start, orderNumber, OrderStatus.SHIPPED)));
+            }
+            start.countDown();
+
+            // Verify - exactly one transition per order was applied, and the stored status is the winner's
+            int cancelled = 0;
+            for (int i = 0; i < ORDERS; i++) {
+                boolean cancelWon = cancels.get(i).get();
+                boolean shipWon = shipments.get(i).get();
+                assertTrue(cancelWon ^ shipWon, "order " + orderNumbers.get(i) + " cancel=" + cancelWon + " ship=" + shipWon);
+
+                Order order = orderRepository.findByOrderNumber(orderNumbers.get(i)).orElseThrow();
+                assertEquals(cancelWon ? OrderStatus.CANCELLED : OrderStatus.SHIPPED, order.getStatus());
+                if (cancelWon) {
+                    cancelled++;
+                }
+            }
+
+            // Only cancellations that actually committed gave their stock back
+            assertEquals(cancelled, productRepository.findById(productId).orElseThrow().getStock());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
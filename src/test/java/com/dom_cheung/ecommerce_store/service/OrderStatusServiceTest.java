@@ -5,9 +5,15 @@ import com.dom_cheung.ecommerce_store.model.OrderStatus;
 import com.dom_cheung.ecommerce_store.repository.OrderRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Optional;
 
@@ -20,6 +26,18 @@ public class OrderStatusServiceTest {
     @Mock
     private OrderRepository orderRepository;
 
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private OrderEventService orderEventService;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private OrderService orderService;
 
@@ -47,6 +65,7 @@ public class OrderStatusServiceTest {
         // Verify
         assertNotNull(updatedOrder);
         assertEquals(OrderStatus.PROCESSING, updatedOrder.getStatus());
+        verify(orderEventService).statusChanged(updatedOrder, OrderStatus.PENDING);
 
         // Verify repository calls
         verify(orderRepository).findByOrderNumber(orderNumber);
@@ -96,4 +115,49 @@ public class OrderStatusServiceTest {
         // Verify repository was not called for save
         verify(orderRepository, never()).save(any(Order.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUpdateOrderStatus_ConflictRetriedAgainstFreshState() {
+        // Setup - the first save loses a race with a cancellation, the retry reads the cancelled order
+        String orderNumber = "ORD-123";
+        Order processing = new Order();
+        processing.setOrderNumber(orderNumber);
+        processing.setStatus(OrderStatus.PROCESSING);
+        Order cancelled = new Order();
+        cancelled.setOrderNumber(orderNumber);
+        cancelled.setStatus(OrderStatus.CANCELLED);
+
+        when(orderRepository.findByOrderNumber(orderNumber))
+                .thenReturn(Optional.of(processing))
+                .thenReturn(Optional.of(cancelled));
+        when(orderRepository.save(any(Order.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Order.class, 1L));
+
+        // Execute & Verify - the stale SHIPPED update is re-validated and refused instead of overwriting
+        assertThrows(IllegalArgumentException.class, () -> {
+            orderService.updateOrderStatus(orderNumber, OrderStatus.SHIPPED);
+        });
+        verify(orderRepository, times(2)).findByOrderNumber(orderNumber);
+        verify(transactionTemplate, times(2)).execute(ArgumentMatchers.<TransactionCallback<Object>>any());
+    }
+
+    @Test
+    public void testUpdateOrderStatus_GivesUpAfterMaxAttempts() {
+        // Setup
+        String orderNumber = "ORD-123";
+        when(orderRepository.findByOrderNumber(orderNumber)).thenAnswer(i -> {
+            Order order = new Order();
+            order.setOrderNumber(orderNumber);
+            order.setStatus(OrderStatus.PENDING);
+            return Optional.of(order);
+        });
+        when(orderRepository.save(any(Order.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Order.class, 1L));
+
+        // Execute & Verify
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> {
+            orderService.updateOrderStatus(orderNumber, OrderStatus.PROCESSING);
+        });
+        verify(orderRepository, times(OrderService.MAX_STATUS_UPDATE_ATTEMPTS)).save(any(Order.class));
+    }
+}
@@ -0,0 +1,117 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class PendingOrderSweeperTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @InjectMocks
+    private PendingOrderSweeper sweeper = new PendingOrderSweeper(true, Duration.ofHours(48), BATCH_SIZE, 60_000);
+
+    // No time budget: one batch per run
+    @InjectMocks
+    private PendingOrderSweeper hurriedSweeper = new PendingOrderSweeper(true, Duration.ofHours(48), BATCH_SIZE, 0);
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(orderService.updateOrderStatuses(anyList(), eq(OrderStatus.CANCELLED)))
+                .thenAnswer(i -> Map.of("updated", ((List<?>) i.getArgument(0)).size()));
+    }
+
+    @Test
+    public void testSweep_CancelsStaleOrdersInBatches() {
+        // Setup
+        when(orderRepository.findOrderNumbersByStatusBefore(eq(OrderStatus.PENDING), any(), any()))
+                .thenReturn(List.of("ORD-1", "ORD-2"))
+                .thenReturn(List.of("ORD-3"));
+
+        // Execute
+        sweeper.sweep();
+
+        // Verify
+        verify(orderService).updateOrderStatuses(List.of("ORD-1", "ORD-2"), OrderStatus.CANCELLED);
+        verify(orderService).updateOrderStatuses(List.of("ORD-3"), OrderStatus.CANCELLED);
+        Map<String, Object> stats = sweeper.getStats();
+        assertEquals(3L, stats.get("lastRunSwept"));
+        assertEquals(2L, stats.get("lastRunBatches"));
+        assertEquals(3L, stats.get("totalSwept"));
+    }
+
+    @Test
+    public void testSweep_OnlyOrdersPastMaxAge() {
+        // Setup
+        when(orderRepository.findOrderNumbersByStatusBefore(any(), any(), any())).thenReturn(List.of());
+
+        // Execute
+        sweeper.sweep();
+
+        // Verify
+        verify(orderRepository).findOrderNumbersByStatusBefore(eq(OrderStatus.PENDING),
+                argThat(cutoff -> cutoff.isBefore(LocalDateTime.now().minusHours(47))), any());
+        verify(orderService, never()).updateOrderStatuses(anyList(), any());
+    }
+
+    @Test
+    public void testSweep_StopsWhenTimeBudgetIsUsed() {
+        // Setup - more stale orders remain after the first batch
+        when(orderRepository.findOrderNumbersByStatusBefore(any(), any(), any())).thenReturn(List.of("ORD-1", "ORD-2"));
+
+        // Execute
+        hurriedSweeper.sweep();
+
+        // Verify
+        verify(orderService, times(1)).updateOrderStatuses(anyList(), any());
+        assertEquals(1L, hurriedSweeper.getStats().get("budgetExhaustedRuns"));
+    }
+
+    @Test
+    public void testSweep_StopsWhenNothingCouldBeCancelled() {
+        // Setup - the stale orders moved on concurrently, so a full batch cancels nothing
+        when(orderRepository.findOrderNumbersByStatusBefore(any(), any(), any())).thenReturn(List.of("ORD-1", "ORD-2"));
+        when(orderService.updateOrderStatuses(anyList(), any())).thenReturn(Map.of("updated", 0));
+
+        // Execute
+        sweeper.sweep();
+
+        // Verify
+        verify(orderService, times(1)).updateOrderStatuses(anyList(), any());
+        assertEquals(0L, sweeper.getStats().get("lastRunSwept"));
+    }
+
+    @Test
+    public void testSweep_DisabledDoesNothing() {
+        // Setup
+        PendingOrderSweeper disabled = new PendingOrderSweeper(false, Duration.ofHours(48), BATCH_SIZE, 60_000);
+
+        // Execute
+        disabled.sweep();
+
+        // Verify
+        assertEquals(0L, disabled.getStats().get("runs"));
+    }
+}
@@ -0,0 +1,165 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.ImageStatus;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ProductImageServiceTest {
+
+    @Mock
+    private ImageAssetService imageAssetService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductCache productCache;
+
+    // Two threads, two places in the queue, three attempts 10 ms / 20 ms apart
+    @InjectMocks
+    private ProductImageService productImageService = new ProductImageService(
+            true, 2, 2, 3, Duration.ofMillis(10), Duration.ofMillis(20));
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(productRepository.updateImage(anyLong(), anyString(), anyString(), any())).thenReturn(1);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        productImageService.shutdown();
+    }
+
+    private static MockMultipartFile image(String name) {
+        return new MockMultipartFile("imageFile", name, "image/png", new byte[]{1, 2, 3});
+    }
+
+    // Wait until every upload has released its place in the queue, i.e. cleaned up after itself
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((int) productImageService.getStats().get("inProgress") > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Map<String, String> uploaded(String publicId) {
+        return Map.of("secure_url", "https://example.test/" + publicId + ".png", "public_id", publicId);
+    }
+
+    @Test
+    public void testSubmit_RetriesFailedUploadThenSetsImage() throws Exception {
+        // Setup - the first attempt fails; the product still has an earlier image
+        Product product = new Product();
+        product.setImagePublicId("earlier");
+        when(productRepository.findById(7L)).thenReturn(Optional.of(product));
+        when(imageAssetService.store(any(Path.class), eq("photo.png"), eq(ProductImageService.FOLDER)))
+                .thenThrow(new IOException("connection reset"))
+                .thenReturn(uploaded("photo"));
+        ProductImageService.StagedImage staged = productImageService.stage(image("photo.png"));
+
+        // Execute
+        productImageService.submit(7L, staged);
+
+        // Verify - the second attempt's image is written, the earlier one released and the staged file is gone
+        verify(productRepository, timeout(5000)).updateImage(7L, "https://example.test/photo.png", "photo", ImageStatus.READY);
+        verify(productCache, timeout(5000)).invalidate(7L);
+        verify(imageAssetService, timeout(5000)).release("earlier");
+        awaitIdle();
+        verify(imageAssetService, times(2)).store(any(Path.class), anyString(), anyString());
+        assertFalse(Files.exists(staged.file()));
+        assertEquals(1L, productImageService.getStats().get("retries"));
+        assertEquals(1L, productImageService.getStats().get("succeeded"));
+    }
+
+    @Test
+    public void testSubmit_MarksFailedAfterLastAttempt() throws Exception {
+        // Setup
+        when(imageAssetService.store(any(Path.class), anyString(), anyString()))
+                .thenThrow(new IOException("connection reset"));
+        ProductImageService.StagedImage staged = productImageService.stage(image("photo.png"));
+
+        // Execute
+        productImageService.submit(8L, staged);
+
+        // Verify
+        verify(productRepository, timeout(5000)).updateImageStatus(eq(8L), eq(ImageStatus.FAILED), contains("connection reset"));
+        awaitIdle();
+        verify(imageAssetService, times(3)).store(any(Path.class), anyString(), anyString());
+        verify(productRepository, never()).updateImage(anyLong(), anyString(), anyString(), any());
+        assertFalse(Files.exists(staged.file()));
+    }
+
+    @Test
+    public void testSubmit_SupersededUploadIsReleasedInsteadOfApplied() throws Exception {
+        // Setup - the first upload is still running when the second image arrives
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        when(imageAssetService.store(any(Path.class), eq("old.png"), anyString())).thenAnswer(invocation -> {
+            firstStarted.countDown();
+            releaseFirst.await(5, TimeUnit.SECONDS);
+            return uploaded("old");
+        });
+        when(imageAssetService.store(any(Path.class), eq("new.png"), anyString())).thenReturn(uploaded("new"));
+
+        // Execute
+        productImageService.submit(9L, productImageService.stage(image("old.png")));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        productImageService.submit(9L, productImageService.stage(image("new.png")));
+        verify(productRepository, timeout(5000)).updateImage(9L, "https://example.test/new.png", "new", ImageStatus.READY);
+        releaseFirst.countDown();
+
+        // Verify - only the newer image is set; the older one is released
+        verify(imageAssetService, timeout(5000)).release("old");
+        verify(productRepository, never()).updateImage(eq(9L), eq("https://example.test/old.png"), anyString(), any());
+    }
+
+    @Test
+    public void testStage_RejectedWhenQueueIsFull() throws Exception {
+        // Setup
+        ProductImageService.StagedImage first = productImageService.stage(image("a.png"));
+        ProductImageService.StagedImage second = productImageService.stage(image("b.png"));
+
+        // Execute & Verify - a place frees up once a staged image is discarded
+        assertThrows(ImageUploadQueueFullException.class, () -> productImageService.stage(image("c.png")));
+        productImageService.discard(first);
+        assertFalse(Files.exists(first.file()));
+        ProductImageService.StagedImage third = productImageService.stage(image("c.png"));
+        assertEquals(1L, productImageService.getStats().get("rejected"));
+
+        productImageService.discard(second);
+        productImageService.discard(third);
+    }
+
+    @Test
+    public void testBackoff_DoublesUpToMaximum() {
+        assertEquals(10L, productImageService.backoffMillis(1));
+        assertEquals(20L, productImageService.backoffMillis(2));
+        assertEquals(20L, productImageService.backoffMillis(3));
+        assertEquals(20L, productImageService.backoffMillis(40));
+    }
+}
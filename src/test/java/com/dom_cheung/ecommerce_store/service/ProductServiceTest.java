@@ -0,0 +1,192 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ProductServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private ProductCache productCache = new ProductCache(true, 100, Duration.ofMinutes(10));
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @InjectMocks
+    private ProductService productService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private Product product(long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setPrice(9.99);
+        return product;
+    }
+
+    @Test
+    public void testGetProductPage_ReturnsNextCursor() {
+        // Setup
+        List<Product> content = List.of(product(11L, "A"), product(12L, "B"));
+        when(productRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any()))
+                .thenReturn(new SliceImpl<>(content, PageRequest.ofSize(2), true));
+
+        // Execute
+        Map<String, Object> page = productService.getProductPage(10L, 2);
+
+        // Verify
+        assertEquals(content, page.get("items"));
+        assertEquals(2, page.get("limit"));
+        assertEquals(12L, page.get("nextCursor"));
+        verify(productRepository).findByIdGreaterThanOrderByIdAsc(10L, PageRequest.ofSize(2));
+    }
+
+    @Test
+    public void testGetProductPage_LastPageAndClampedLimit() {
+        // Setup
+        when(productRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any()))
+                .thenReturn(new SliceImpl<>(List.of(product(1L, "A")), PageRequest.ofSize(ProductService.MAX_PAGE_SIZE), false));
+
+        // Execute
+        Map<String, Object> page = productService.getProductPage(null, 100000);
+
+        // Verify
+        assertNull(page.get("nextCursor"));
+        assertEquals(ProductService.MAX_PAGE_SIZE, page.get("limit"));
+        verify(productRepository).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.ofSize(ProductService.MAX_PAGE_SIZE));
+    }
+
+    @Test
+    public void testWriteAllProducts_StreamsJsonArrayAndDetaches() throws Exception {
+        // Setup
+        Product first = product(1L, "A");
+        Product second = product(2L, "B");
+        when(productRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(first, second));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Execute
+        productService.writeAllProducts(out);
+
+        // Verify
+        JsonNode json = new ObjectMapper().readTree(out.toByteArray());
+        assertTrue(json.isArray());
+        assertEquals(2, json.size());
+        assertEquals("B", json.get(1).get("name").asText());
+        verify(entityManager).detach(first);
+        verify(entityManager).detach(second);
+    }
+
+    @Test
+    public void testGetProductById_CachedAfterFirstRead() {
+        // Setup
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, "A")));
+
+        // Execute
+        Optional<Product> first = productService.getProductById(1L);
+        Optional<Product> second = productService.getProductById(1L);
+
+        // Verify
+        assertTrue(first.isPresent());
+        assertSame(first.get(), second.get());
+        verify(productRepository, times(1)).findById(1L);
+        Map<String, Object> stats = productService.getCacheStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    public void testGetProductById_MissingProductNotCached() {
+        // Setup
+        when(productRepository.findById(7L)).thenReturn(Optional.empty());
+
+        // Execute
+        productService.getProductById(7L);
+        Optional<Product> result = productService.getProductById(7L);
+
+        // Verify
+        assertFalse(result.isPresent());
+        verify(productRepository, times(2)).findById(7L);
+    }
+
+    @Test
+    public void testSaveProduct_InvalidatesCachedCopy() {
+        // Setup
+        Product stale = product(1L, "Old name");
+        Product fresh = product(1L, "New name");
+        when(productRepository.findById(1L)).thenReturn(Optional.of(stale)).thenReturn(Optional.of(fresh));
+        when(productRepository.save(any(Product.class))).thenAnswer(i -> i.getArgument(0));
+        productService.getProductById(1L);
+
+        // Execute
+        productService.saveProduct(fresh);
+        Optional<Product> result = productService.getProductById(1L);
+
+        // Verify
+        assertEquals("New name", result.get().getName());
+        assertEquals(1L, productService.getCacheStats().get("invalidations"));
+    }
+
+    @Test
+    public void testDeleteProduct_InvalidatesCachedCopy() {
+        // Setup
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, "A"))).thenReturn(Optional.empty());
+        productService.getProductById(1L);
+
+        // Execute
+        productService.deleteProduct(1L);
+
+        // Verify
+        assertFalse(productService.getProductById(1L).isPresent());
+        verify(productRepository).deleteById(1L);
+    }
+
+    @Test
+    public void testGetProductById_CacheDisabled() {
+        // Setup
+        ProductCache disabledCache = new ProductCache(false, 100, Duration.ofMinutes(10));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, "A")));
+
+        // Execute
+        disabledCache.get(1L, productRepository::findById);
+        disabledCache.get(1L, productRepository::findById);
+
+        // Verify
+        verify(productRepository, times(2)).findById(1L);
+        assertEquals(false, disabledCache.getStats().get("enabled"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import com.dom_cheung.ecommerce_store.model.DailySales;
+import com.dom_cheung.ecommerce_store.model.Order;
+import com.dom_cheung.ecommerce_store.model.OrderItem;
+import com.dom_cheung.ecommerce_store.model.OrderStatus;
+import com.dom_cheung.ecommerce_store.model.Product;
+import com.dom_cheung.ecommerce_store.model.ProductSales;
+import com.dom_cheung.ecommerce_store.repository.OrderRepository;
+import com.dom_cheung.ecommerce_store.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same inspector property as OrderBatchInsertTest, so both tests share one application context.
+// Not @Transactional: rollups are only updated once the order transactions commit.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.dom_cheung.ecommerce_store.service.OrderBatchInsertTest$RecordingStatementInspector"
+})
+public class SalesRollupServiceTest {
+
+    // Days and products no other test writes orders for
+    private static final LocalDate DAY = LocalDate.of(2019, 6, 3);
+    private static final long PRODUCT_A = 991001L;
+    private static final long PRODUCT_B = 991002L;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private static OrderItem item(long productId, int quantity, double price) {
+        OrderItem item = new OrderItem();
+        item.setProductId(productId);
+        item.setProductName("Product " + productId);
+        item.setProductPrice(price);
+        item.setQuantity(quantity);
+        item.setSubtotal(price * quantity);
+        return item;
+    }
+
+    private void saveOrder(String orderNumber, LocalDate day, OrderStatus status, OrderItem... items) {
+        Order order = new Order();
+        order.setUserId(9301L);
+        order.setOrderNumber(orderNumber);
+        order.setOrderDate(day.atTime(12, 0));
+        order.setStatus(status);
+        order.getItems().addAll(List.of(items));
+        order.setTotalAmount(order.getItems().stream().mapToDouble(OrderItem::getSubtotal).sum());
+        orderRepository.save(order);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DailySales> days(Map<String, Object> response) {
+        return (List<DailySales>) response.get("days");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRebuild_RegeneratesRollupsFromOrderHistory() {
+        // Setup - the cancelled order on the second day must not count
+        saveOrder("ROLLUP-1", DAY, OrderStatus.DELIVERED, item(PRODUCT_A, 2, 10.0), item(PRODUCT_B, 1, 5.0));
+        saveOrder("ROLLUP-2", DAY, OrderStatus.PENDING, item(PRODUCT_A, 1, 10.0));
+        saveOrder("ROLLUP-3", DAY.plusDays(1), OrderStatus.CANCELLED, item(PRODUCT_A, 4, 10.0));
+        saveOrder("ROLLUP-4", DAY.plusDays(2), OrderStatus.SHIPPED, item(PRODUCT_B, 3, 5.0));
+
+        // Execute
+        Map<String, Object> result = salesRollupService.rebuild();
+        Map<String, Object> daily = salesRollupService.getDailySales(DAY.minusDays(1), DAY.plusDays(2));
+        Map<String, Object> productA = salesRollupService.getProductDailySales(PRODUCT_A, DAY, DAY.plusDays(2));
+        Map<String, Object> top = salesRollupService.getTopProducts(DAY, DAY.plusDays(2), 10);
+
+        // Verify - every day of the range is listed, including those without sales
+        assertTrue((int) result.get("chunks") > 0);
+        assertEquals(List.of(
+                new DailySales(DAY.minusDays(1), 0, 0.0, 0),
+                new DailySales(DAY, 2, 35.0, 4),
+                new DailySales(DAY.plusDays(1), 0, 0.0, 0),
+                new DailySales(DAY.plusDays(2), 1, 15.0, 3)), days(daily));
+        assertEquals(Map.of("orderCount", 3L, "revenue", 50.0, "unitsSold", 7L), daily.get("totals"));
+
+        assertEquals(new DailySales(DAY, 2, 30.0, 3), days(productA).get(0));
+        assertEquals(List.of(
+                new ProductSales(PRODUCT_A, 2, 30.0, 3),
+                new ProductSales(PRODUCT_B, 2, 20.0, 4)), top.get("products"));
+    }
+
+    @Test
+    public void testCheckoutAndCancellation_UpdateRollupsOnceCommitted() {
+        // Setup
+        Product product = new Product();
+        product.setName("Rollup product");
+        product.setPrice(4.0);
+        product.setStock(10);
+        long productId = productRepository.save(product).getId();
+
+        // Execute - place an order, then cancel it
+        Order order = orderService.createOrder(9302L, List.of(Map.of("id", productId, "quantity", 3)), "1 Rollup Road");
+        LocalDate day = order.getOrderDate().toLocalDate();
+        salesRollupService.flush();
+        Map<String, Object> placed = salesRollupService.getProductDailySales(productId, day, day);
+
+        orderService.updateOrderStatus(order.getOrderNumber(), OrderStatus.CANCELLED);
+        salesRollupService.flush();
+        Map<String, Object> cancelled = salesRollupService.getProductDailySales(productId, day, day);
+
+        // Verify - counted on the order's day once committed, and taken out again by the cancellation
+        assertEquals(List.of(new DailySales(day, 1, 12.0, 3)), days(placed));
+        assertEquals(List.of(new DailySales(day, 0, 0.0, 0)), days(cancelled));
+    }
+
+    @Test
+    public void testGetDailySales_InvalidRangeRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> salesRollupService.getDailySales(DAY, DAY.minusDays(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> salesRollupService.getDailySales(DAY.minusDays(SalesRollupService.MAX_RANGE_DAYS), DAY));
+    }
+}
@@ -0,0 +1,206 @@
+package com.dom_cheung.ecommerce_store.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnowflakeOrderNumberGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 500_000;
+
+    private static final Duration LEASE = Duration.ofMinutes(10);
+
+    // A fresh order_number_nodes table in its own in-memory database
+    private static JdbcTemplate nodeTable(String name) throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V7__create_order_number_nodes.sql"));
+        }
+        return new JdbcTemplate(dataSource);
+    }
+
+    private static SnowflakeOrderNumberGenerator leasing(JdbcTemplate jdbcTemplate, Duration leaseDuration) {
+        SnowflakeOrderNumberGenerator generator = new SnowflakeOrderNumberGenerator("ORD-", -1, leaseDuration);
+        ReflectionTestUtils.setField(generator, "jdbcTemplate", jdbcTemplate);
+        generator.init();
+        return generator;
+    }
+
+    @Test
+    public void testNextOrderNumber_HasPrefix() {
+        SnowflakeOrderNumberGenerator generator = new SnowflakeOrderNumberGenerator("ORD-", 3, LEASE);
+
+        String orderNumber = generator.nextOrderNumber();
+
+        assertTrue(orderNumber.matches("ORD-\\d+"));
+        assertEquals(3, generator.getNodeId());
+    }
+
+    @Test
+    public void testConstructor_RejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeOrderNumberGenerator("ORD-", SnowflakeOrderNumberGenerator.MAX_NODE_ID + 1, LEASE));
+    }
+
+    @Test
+    public void testNextId_UniqueAndMonotonicAcrossThreads() throws Exception {
+        // Two generators stand in for two application instances with different node ids
+        SnowflakeOrderNumberGenerator nodeA = new SnowflakeOrderNumberGenerator("ORD-", 1, LEASE);
+        SnowflakeOrderNumberGenerator nodeB = new SnowflakeOrderNumberGenerator("ORD-", 2, LEASE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                SnowflakeOrderNumberGenerator generator = t % 2 == 0 ? nodeA : nodeB;
+                futures.add(executor.submit(() -> {
+                    long[] ids = new long[IDS_PER_THREAD];
+                    start.await();
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            long[] all = new long[THREADS * IDS_PER_THREAD];
+            int offset = 0;
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                // Each thread must see strictly increasing ids
+                for (int i = 1; i < ids.length; i++) {
+                    assertTrue(ids[i] > ids[i - 1], "ids went backwards within a thread");
+                }
+                System.arraycopy(ids, 0, all, offset, ids.length);
+                offset += ids.length;
+            }
+
+            // No duplicates across threads or nodes
+            Arrays.sort(all);
+            for (int i = 1; i < all.length; i++) {
+                assertNotEquals(all[i - 1], all[i], "duplicate id generated");
+            }
+            assertTrue(all[0] > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInit_InstancesLeaseDistinctNodeIds() throws Exception {
+        // Setup
+        JdbcTemplate jdbcTemplate = nodeTable("leaseDistinct");
+
+        // Execute
+        SnowflakeOrderNumberGenerator first = leasing(jdbcTemplate, LEASE);
+        SnowflakeOrderNumberGenerator second = leasing(jdbcTemplate, LEASE);
+        long firstNodeId = first.getNodeId();
+        first.release();
+        SnowflakeOrderNumberGenerator restarted = leasing(jdbcTemplate, LEASE);
+
+        // Verify - a released id is handed out again; a released generator issues nothing
+        assertEquals(0, firstNodeId);
+        assertEquals(1, second.getNodeId());
+        assertEquals(0, restarted.getNodeId());
+        assertThrows(IllegalStateException.class, first::nextId);
+        assertTrue(second.nextOrderNumber().matches("ORD-\\d+"));
+    }
+
+    @Test
+    public void testRenewLease_TakenOverLeaseIsReplaced() throws Exception {
+        // Setup - the first instance's lease ran out (e.g. it stalled) and another instance took its id
+        JdbcTemplate jdbcTemplate = nodeTable("leaseTakenOver");
+        SnowflakeOrderNumberGenerator stalled = leasing(jdbcTemplate, LEASE);
+        jdbcTemplate.update("update order_number_nodes set owner = 'other-instance' where node_id = 0");
+
+        // Execute
+        stalled.renewLease();
+
+        // Verify - the stalled instance moves to a new id and leaves the other one's alone
+        assertEquals(1, stalled.getNodeId());
+        assertEquals(List.of("other-instance"), jdbcTemplate.queryForList(
+                "select owner from order_number_nodes where node_id = 0", String.class));
+    }
+
+    @Test
+    public void testInit_TakesOverExpiredLeaseWhenAllIdsAreLeased() throws Exception {
+        // Setup - every id is leased, one of them by an instance that stopped renewing
+        JdbcTemplate jdbcTemplate = nodeTable("leaseExpired");
+        for (int nodeId = 0; nodeId <= SnowflakeOrderNumberGenerator.MAX_NODE_ID; nodeId++) {
+            jdbcTemplate.update("insert into order_number_nodes (node_id, owner, lease_until) values (?, 'running', ?)",
+                    nodeId, nodeId == 7 ? "2000-01-01 00:00:00" : "2999-01-01 00:00:00");
+        }
+
+        // Execute
+        SnowflakeOrderNumberGenerator generator = leasing(jdbcTemplate, LEASE);
+
+        // Verify - and with no expired lease left, the next instance cannot start
+        assertEquals(7, generator.getNodeId());
+        assertThrows(IllegalStateException.class, () -> leasing(jdbcTemplate, LEASE));
+    }
+
+    @Test
+    public void testNextId_StopsWhenLeaseNotRenewed() throws Exception {
+        // Setup - a lease so short that it lapses at once
+        JdbcTemplate jdbcTemplate = nodeTable("leaseLapsed");
+        SnowflakeOrderNumberGenerator generator = leasing(jdbcTemplate, Duration.ofMillis(2));
+        Thread.sleep(5);
+
+        // Execute & Verify - no numbers until the lease is renewed
+        assertThrows(IllegalStateException.class, generator::nextId);
+        ReflectionTestUtils.setField(generator, "leaseDuration", LEASE);
+        generator.renewLease();
+        assertTrue(generator.nextId() > 0);
+    }
+
+    @Test
+    public void testRenewLease_NotHeldUpByBlockedScheduler() throws Exception {
+        // Setup - the application's single scheduler thread is stuck in a slow job
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        CountDownLatch unblock = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        JdbcTemplate jdbcTemplate = nodeTable("leaseRenewedAlone");
+        SnowflakeOrderNumberGenerator generator = new SnowflakeOrderNumberGenerator("ORD-", -1, Duration.ofMillis(400));
+        ReflectionTestUtils.setField(generator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(generator, "renewIntervalMillis", 50L);
+        generator.init();
+
+        try {
+            // Execute - wait well past the 200ms the first lease may be used for
+            Thread.sleep(1000);
+
+            // Verify - the lease kept being renewed, so numbers are still issued
+            assertTrue(generator.nextId() > 0);
+        } finally {
+            unblock.countDown();
+            scheduler.shutdown();
+            generator.release();
+        }
+    }
+}